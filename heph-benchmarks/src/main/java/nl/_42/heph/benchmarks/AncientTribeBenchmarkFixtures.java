@@ -0,0 +1,25 @@
+package nl._42.heph.benchmarks;
+
+import nl._42.heph.AbstractBuilder;
+import nl._42.heph.builder.AncientTribeBuildCommand;
+import nl._42.heph.domain.AncientTribe;
+import nl._42.heph.generation.BuildCommandEngine;
+
+public class AncientTribeBenchmarkFixtures extends AbstractBuilder<AncientTribe, AncientTribeBuildCommand> {
+
+    private final BuildCommandEngine engine;
+
+    public AncientTribeBenchmarkFixtures(BuildCommandEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    protected BuildCommandEngine getBuildCommandEngine() {
+        return engine;
+    }
+
+    @Override
+    public AncientTribeBuildCommand base() {
+        return blank();
+    }
+}
@@ -0,0 +1,185 @@
+package nl._42.heph.benchmarks;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import nl._42.heph.builder.AncientTribeBuildCommand;
+import nl._42.heph.domain.AncientTribe;
+import nl._42.heph.domain.Organization;
+import nl._42.heph.domain.Person;
+import nl._42.heph.generation.BuildCommandEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Measures the throughput of the builder operations which are called for every entity in a test: obtaining a BuildCommand,
+ * calling its "with" methods and constructing, copying or creating the entity. The builders are registered in a plain ApplicationContext,
+ * and entities are saved to an {@link InMemoryBeanSaver}, so the results only contain the overhead of Heph itself.
+ * Each benchmark is run for both {@link BuildCommandEngine}s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuilderBenchmark {
+
+    @Param({ "PROXY", "BYTECODE" })
+    private BuildCommandEngine engine;
+
+    private AnnotationConfigApplicationContext applicationContext;
+
+    private PersonBenchmarkFixtures personFixtures;
+    private OrganizationBenchmarkFixtures organizationFixtures;
+    private AncientTribeBenchmarkFixtures ancientTribeFixtures;
+
+    private Person personA;
+    private Person personB;
+    private Person[] contactPersonArray;
+    private List<Person> contactPersonList;
+    private List<String> legalIdentityNumbers;
+    private Organization organization;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        applicationContext = new AnnotationConfigApplicationContext();
+        applicationContext.registerBean(PersonSaver.class);
+        applicationContext.registerBean(OrganizationSaver.class);
+        applicationContext.registerBean(PersonBenchmarkFixtures.class, () -> new PersonBenchmarkFixtures(engine));
+        applicationContext.registerBean(OrganizationBenchmarkFixtures.class, () -> new OrganizationBenchmarkFixtures(engine));
+        applicationContext.registerBean(AncientTribeBenchmarkFixtures.class, () -> new AncientTribeBenchmarkFixtures(engine));
+        applicationContext.refresh();
+
+        personFixtures = applicationContext.getBean(PersonBenchmarkFixtures.class);
+        organizationFixtures = applicationContext.getBean(OrganizationBenchmarkFixtures.class);
+        ancientTribeFixtures = applicationContext.getBean(AncientTribeBenchmarkFixtures.class);
+
+        personA = personFixtures.base().withName("A").create();
+        personB = personFixtures.base().withName("B").create();
+        contactPersonArray = new Person[] { personA, personB };
+        contactPersonList = List.of(personA, personB);
+        legalIdentityNumbers = List.of("42", "24");
+        organization = organizationFixtures._42();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        applicationContext.close();
+    }
+
+    @Benchmark
+    public PersonBenchmarkBuildCommand blank() {
+        return personFixtures.blank();
+    }
+
+    @Benchmark
+    public OrganizationBenchmarkBuildCommand base() {
+        return organizationFixtures.base();
+    }
+
+    @Benchmark
+    public PersonBenchmarkBuildCommand baseChain() {
+        return personFixtures.base()
+                .withName("Henk")
+                .withOrganization(() -> organization);
+    }
+
+    @Benchmark
+    public OrganizationBenchmarkBuildCommand withSingleValue() {
+        return organizationFixtures.blank()
+                .withName("Apple");
+    }
+
+    @Benchmark
+    public OrganizationBenchmarkBuildCommand withDefaultMethod() {
+        return organizationFixtures.blank()
+                .withCustomName("Orange");
+    }
+
+    @Benchmark
+    public OrganizationBenchmarkBuildCommand withArray() {
+        return organizationFixtures.blank()
+                .withContactPersons(contactPersonArray);
+    }
+
+    @Benchmark
+    public OrganizationBenchmarkBuildCommand withCollection() {
+        return organizationFixtures.blank()
+                .withContactPersons(contactPersonList)
+                .withLegalIdentityNumbers(legalIdentityNumbers);
+    }
+
+    @Benchmark
+    public OrganizationBenchmarkBuildCommand withSupplier() {
+        return organizationFixtures.blank()
+                .withOwner(() -> personA)
+                .withContactPersons(() -> Set.of(personA, personB));
+    }
+
+    @Benchmark
+    public AncientTribeBuildCommand withPrimitiveArrays() {
+        return ancientTribeFixtures.blank()
+                .withInhabitantAges(new int[] { 29, 14, 24 })
+                .withInhabitantNames(legalIdentityNumbers)
+                .withInhabitantsHaveBeenResearched(new boolean[] { true, true, true });
+    }
+
+    @Benchmark
+    public Organization construct() {
+        return organizationFixtures.base()
+                .withContactPersons(contactPersonList)
+                .construct();
+    }
+
+    @Benchmark
+    public Organization constructWithSupplier() {
+        return organizationFixtures.base()
+                .withOwner(() -> personA)
+                .construct();
+    }
+
+    @Benchmark
+    public AncientTribe constructPrimitiveArrays() {
+        return withPrimitiveArrays().construct();
+    }
+
+    @Benchmark
+    public Organization copy() {
+        return organizationFixtures.copy(organization)
+                .construct();
+    }
+
+    @Benchmark
+    public Person create() {
+        return personFixtures.base()
+                .withOrganization(() -> organization)
+                .create();
+    }
+
+    @Benchmark
+    public List<Person> createAll() {
+        return personFixtures.createAll(10, (buildCommand) -> buildCommand.withOrganization(() -> organization));
+    }
+
+    @Benchmark
+    public Person createWithReference() {
+        // Also creates the organization of the person
+        return personFixtures.base()
+                .create();
+    }
+}
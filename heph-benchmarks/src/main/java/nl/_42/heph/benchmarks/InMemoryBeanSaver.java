@@ -0,0 +1,24 @@
+package nl._42.heph.benchmarks;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl._42.heph.BeanSaver;
+import nl._42.heph.shared.AbstractEntity;
+
+/**
+ * BeanSaver which only assigns an ID to new entities. Unlike {@link nl._42.heph.shared.MockRepository} it does not keep the saved entities,
+ * so millions of create() calls in a benchmark iteration do not fill up the heap and distort the allocation rate.
+ * @param <T> Entity type to save
+ */
+public abstract class InMemoryBeanSaver<T extends AbstractEntity> implements BeanSaver<T, Long> {
+
+    private final AtomicLong idSequence = new AtomicLong(0);
+
+    @Override
+    public T save(T entity) {
+        if (entity.getId() == null) {
+            entity.setId(idSequence.incrementAndGet());
+        }
+        return entity;
+    }
+}
@@ -0,0 +1,38 @@
+package nl._42.heph.benchmarks;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import nl._42.heph.AbstractBuildCommand;
+import nl._42.heph.domain.Organization;
+import nl._42.heph.domain.Person;
+
+public interface OrganizationBenchmarkBuildCommand extends AbstractBuildCommand<Organization, OrganizationSaver> {
+
+    @Override
+    default Organization findEntity(Organization entity) {
+        return null; // Always create a new organization, so every create() call saves an entity
+    }
+
+    OrganizationBenchmarkBuildCommand withName(String name);
+
+    default OrganizationBenchmarkBuildCommand withCustomName(String customName) {
+        getInternalEntity().setName("Custom name: " + customName);
+        return this;
+    }
+
+    OrganizationBenchmarkBuildCommand withOwner(Supplier<Person> ownerReference);
+
+    // Array -> Collection
+    OrganizationBenchmarkBuildCommand withContactPersons(Person... contactPersons);
+
+    // Collection -> Collection
+    OrganizationBenchmarkBuildCommand withContactPersons(Collection<Person> contactPersons);
+
+    // Supplier -> Collection
+    OrganizationBenchmarkBuildCommand withContactPersons(Supplier<Set<Person>> contactPersons);
+
+    // Collection -> List
+    OrganizationBenchmarkBuildCommand withLegalIdentityNumbers(Collection<String> legalIdentityNumbers);
+}
@@ -0,0 +1,30 @@
+package nl._42.heph.benchmarks;
+
+import nl._42.heph.AbstractBuilder;
+import nl._42.heph.domain.Organization;
+import nl._42.heph.generation.BuildCommandEngine;
+
+public class OrganizationBenchmarkFixtures extends AbstractBuilder<Organization, OrganizationBenchmarkBuildCommand> {
+
+    private final BuildCommandEngine engine;
+
+    public OrganizationBenchmarkFixtures(BuildCommandEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    protected BuildCommandEngine getBuildCommandEngine() {
+        return engine;
+    }
+
+    @Override
+    public OrganizationBenchmarkBuildCommand base() {
+        return blank()
+                .withName("42BV");
+    }
+
+    public Organization _42() {
+        return base()
+                .create();
+    }
+}
@@ -0,0 +1,6 @@
+package nl._42.heph.benchmarks;
+
+import nl._42.heph.domain.Organization;
+
+public class OrganizationSaver extends InMemoryBeanSaver<Organization> {
+}
@@ -0,0 +1,19 @@
+package nl._42.heph.benchmarks;
+
+import java.util.function.Supplier;
+
+import nl._42.heph.AbstractBuildCommand;
+import nl._42.heph.domain.Organization;
+import nl._42.heph.domain.Person;
+
+public interface PersonBenchmarkBuildCommand extends AbstractBuildCommand<Person, PersonSaver> {
+
+    @Override
+    default Person findEntity(Person entity) {
+        return null; // Always create a new person, so every create() call saves an entity
+    }
+
+    PersonBenchmarkBuildCommand withName(String name);
+
+    PersonBenchmarkBuildCommand withOrganization(Supplier<Organization> organizationReference);
+}
@@ -0,0 +1,31 @@
+package nl._42.heph.benchmarks;
+
+import nl._42.heph.AbstractBuilder;
+import nl._42.heph.domain.Person;
+import nl._42.heph.generation.BuildCommandEngine;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class PersonBenchmarkFixtures extends AbstractBuilder<Person, PersonBenchmarkBuildCommand> {
+
+    private final BuildCommandEngine engine;
+
+    @Autowired
+    private OrganizationBenchmarkFixtures organizationFixtures;
+
+    public PersonBenchmarkFixtures(BuildCommandEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    protected BuildCommandEngine getBuildCommandEngine() {
+        return engine;
+    }
+
+    @Override
+    public PersonBenchmarkBuildCommand base() {
+        return blank()
+                .withName("Sjaak")
+                .withOrganization(organizationFixtures::_42);
+    }
+}
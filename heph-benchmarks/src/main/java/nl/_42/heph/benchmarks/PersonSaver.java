@@ -0,0 +1,6 @@
+package nl._42.heph.benchmarks;
+
+import nl._42.heph.domain.Person;
+
+public class PersonSaver extends InMemoryBeanSaver<Person> {
+}
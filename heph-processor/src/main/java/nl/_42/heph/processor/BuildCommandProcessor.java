@@ -0,0 +1,438 @@
+package nl._42.heph.processor;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * <p>
+ *     Generates a plain Java implementation for every BuildCommand interface (an interface extending AbstractBuildCommand)
+ *     in the compiled sources. The generated class is placed next to the interface, is named after it with the
+ *     {@link #GENERATED_CLASS_SUFFIX} appended to it, extends DefaultBuildCommand and implements the interface. The
+ *     AbstractBuilder picks up the generated class when it exists and falls back to proxies otherwise.
+ * </p>
+ * <ul>
+ *     <li><b>with methods</b> without a body assign the field of the entity directly if the value can simply be assigned
+ *     (ie, it is no array, Collection or Supplier and has no EntityId annotation) and the field is accessible from the generated
+ *     class. Like DefaultBuildCommand, they never call setters. Otherwise, they call DefaultBuildCommand.withValue
+ *     with the instructions of their annotations, which have been resolved at compile time.</li>
+ *     <li><b>default methods</b> overriding a method of AbstractBuildCommand are called directly. Other default methods are
+ *     simply inherited.</li>
+ * </ul>
+ * If an interface contains a method which cannot be implemented (eg, an abstract method which is no with method), a warning is
+ * reported and no class is generated. That interface will keep using proxies.
+ */
+@SupportedAnnotationTypes("*")
+public class BuildCommandProcessor extends AbstractProcessor {
+
+    /** Suffix of the generated implementation class. Must be kept in sync with GeneratedBuildCommandFactory in Heph. */
+    static final String GENERATED_CLASS_SUFFIX = "_Heph";
+
+    private static final String WITH_PREFIX = "with";
+    private static final String ABSTRACT_BUILD_COMMAND = "nl._42.heph.AbstractBuildCommand";
+    private static final String DEFAULT_BUILD_COMMAND = "nl._42.heph.DefaultBuildCommand";
+    private static final String RESOLVE = "nl._42.heph.lazy.Resolve";
+    private static final String RESOLVE_STRATEGY = "nl._42.heph.lazy.ResolveStrategy";
+    private static final String ENTITY_FIELD = "nl._42.heph.lazy.EntityField";
+    private static final String ENTITY_ID = "nl._42.heph.lazy.EntityId";
+    private static final String DEFAULT_RESOLVE_STRATEGY = "BEFORE_CREATE";
+
+    private Elements elements;
+    private Types types;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+
+        TypeElement abstractBuildCommand = elements.getTypeElement(ABSTRACT_BUILD_COMMAND);
+        if (abstractBuildCommand == null) {
+            // Heph is not on the classpath of this compilation, so there is nothing to generate.
+            return false;
+        }
+
+        for (TypeElement buildCommand : findBuildCommandInterfaces(roundEnv.getRootElements(), abstractBuildCommand)) {
+            generate(buildCommand, abstractBuildCommand);
+        }
+
+        // We never claim any annotations, so other processors still get to see them.
+        return false;
+    }
+
+    /**
+     * Finds all (possibly nested) interfaces extending AbstractBuildCommand.
+     * @param rootElements the elements of the current round
+     * @param abstractBuildCommand the AbstractBuildCommand interface
+     * @return all BuildCommand interfaces
+     */
+    private List<TypeElement> findBuildCommandInterfaces(Set<? extends Element> rootElements, TypeElement abstractBuildCommand) {
+        List<TypeElement> buildCommands = new ArrayList<>();
+        for (TypeElement type : ElementFilter.typesIn(rootElements)) {
+            if (type.getKind() == ElementKind.INTERFACE && !type.equals(abstractBuildCommand)
+                    && types.isSubtype(types.erasure(type.asType()), types.erasure(abstractBuildCommand.asType()))) {
+                buildCommands.add(type);
+            }
+            buildCommands.addAll(findBuildCommandInterfaces(Set.copyOf(type.getEnclosedElements()), abstractBuildCommand));
+        }
+        return buildCommands;
+    }
+
+    /**
+     * Generates the implementation of a single BuildCommand interface, unless it contains methods which cannot be implemented.
+     * @param buildCommand the BuildCommand interface
+     * @param abstractBuildCommand the AbstractBuildCommand interface
+     */
+    private void generate(TypeElement buildCommand, TypeElement abstractBuildCommand) {
+        if (!buildCommand.getTypeParameters().isEmpty()) {
+            note(buildCommand, "generic BuildCommand interfaces are not supported");
+            return;
+        }
+
+        DeclaredType buildCommandType = (DeclaredType) buildCommand.asType();
+        DeclaredType abstractBuildCommandType = findSupertype(buildCommandType, abstractBuildCommand);
+        if (abstractBuildCommandType == null || abstractBuildCommandType.getTypeArguments().size() != 2) {
+            note(buildCommand, "the type arguments of AbstractBuildCommand could not be resolved");
+            return;
+        }
+        TypeMirror entityType = abstractBuildCommandType.getTypeArguments().get(0);
+        TypeMirror repositoryType = abstractBuildCommandType.getTypeArguments().get(1);
+
+        List<ExecutableElement> abstractBuildCommandMethods = ElementFilter.methodsIn(abstractBuildCommand.getEnclosedElements());
+        List<String> methods = new ArrayList<>();
+
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(buildCommand))) {
+            TypeElement declaringType = (TypeElement) method.getEnclosingElement();
+            if (declaringType.getQualifiedName().contentEquals(Object.class.getName()) || declaringType.equals(abstractBuildCommand)
+                    || method.getModifiers().contains(Modifier.STATIC) || method.getModifiers().contains(Modifier.PRIVATE)) {
+                continue;
+            }
+
+            boolean overridesAbstractBuildCommand = abstractBuildCommandMethods.stream().anyMatch(m -> elements.overrides(method, m, buildCommand));
+            ExecutableType methodType = (ExecutableType) types.asMemberOf(buildCommandType, method);
+
+            if (method.isDefault()) {
+                // DefaultBuildCommand implements all methods of AbstractBuildCommand, and a superclass method wins from a default
+                // method. So we need to redirect overridden methods to the default implementation explicitly.
+                if (overridesAbstractBuildCommand) {
+                    methods.add(generateDefaultMethodRedirect(buildCommand, method, methodType));
+                }
+            } else if (!overridesAbstractBuildCommand) {
+                String withMethod = generateWithMethod(buildCommand, method, methodType, entityType);
+                if (withMethod == null) {
+                    return;
+                }
+                methods.add(withMethod);
+            }
+        }
+
+        writeSourceFile(buildCommand, entityType, repositoryType, methods);
+    }
+
+    /**
+     * Generates an override of an AbstractBuildCommand method which calls the default implementation of the BuildCommand interface.
+     * @param buildCommand the BuildCommand interface
+     * @param method the default method
+     * @param methodType type of the method, as member of the BuildCommand interface
+     * @return source code of the method
+     */
+    private String generateDefaultMethodRedirect(TypeElement buildCommand, ExecutableElement method, ExecutableType methodType) {
+        String arguments = method.getParameters().stream().map(parameter -> parameter.getSimpleName().toString()).collect(Collectors.joining(", "));
+        String call = format("%s.super.%s(%s);", buildCommand.getQualifiedName(), method.getSimpleName(), arguments);
+        String body = methodType.getReturnType().getKind() == TypeKind.VOID ? call : "return " + call;
+        return generateMethodDeclaration(method, methodType) + " {\n        " + body + "\n    }\n";
+    }
+
+    /**
+     * Generates the implementation of an abstract with method.
+     * @param buildCommand the BuildCommand interface
+     * @param method the abstract method
+     * @param methodType type of the method, as member of the BuildCommand interface
+     * @param entityType type of the entity which is built
+     * @return source code of the method, or {@code null} if the method cannot be implemented
+     */
+    private String generateWithMethod(TypeElement buildCommand, ExecutableElement method, ExecutableType methodType, TypeMirror entityType) {
+        String methodName = method.getSimpleName().toString();
+        if (!methodName.startsWith(WITH_PREFIX) || methodName.length() == WITH_PREFIX.length() || method.getParameters().size() != 1) {
+            warn(method, format("Abstract method [%s] is no with method taking one argument, so it cannot be generated", methodName));
+            return null;
+        }
+
+        TypeMirror returnType = methodType.getReturnType();
+        boolean returnsVoid = returnType.getKind() == TypeKind.VOID;
+        if (!returnsVoid && !types.isAssignable(buildCommand.asType(), returnType)) {
+            warn(method, format("With method [%s] must return void or the BuildCommand, so it cannot be generated", methodName));
+            return null;
+        }
+
+        String parameterName = method.getParameters().get(0).getSimpleName().toString();
+        TypeMirror parameterType = methodType.getParameterTypes().get(0);
+        AnnotationMirror entityField = findAnnotation(method, ENTITY_FIELD);
+        AnnotationMirror resolve = findAnnotation(method, RESOLVE);
+        boolean entityId = findAnnotation(method, ENTITY_ID) != null;
+
+        String fieldName = entityField != null ? getAnnotationValue(entityField) : uncapitalize(methodName.substring(WITH_PREFIX.length()));
+        String resolveStrategy = resolve != null ? getAnnotationValue(resolve) : DEFAULT_RESOLVE_STRATEGY;
+
+        String statement;
+        VariableElement field = entityId ? null : findDirectField(buildCommand, entityType, fieldName, parameterType);
+        if (field != null) {
+            statement = format("getInternalEntity().%s = %s;", field.getSimpleName(), parameterName);
+        } else {
+            statement = format("withValue(\"%s\", %s, %s.%s, %s);", fieldName, parameterName, RESOLVE_STRATEGY, resolveStrategy, entityId);
+        }
+
+        String body = returnsVoid ? statement : statement + "\n        return this;";
+        return generateMethodDeclaration(method, methodType) + " {\n        " + body + "\n    }\n";
+    }
+
+    /**
+     * Looks up the field of the entity which can be assigned directly for the value of a with method. This is only possible
+     * if DefaultBuildCommand.withValue would simply assign the value, so never for arrays, Collections or Suppliers, and if the
+     * field is accessible from the generated class. Setters are never called, as they may do more than assigning the field.
+     * @param buildCommand the BuildCommand interface
+     * @param entityType type of the entity which is built
+     * @param fieldName name of the entity field to set
+     * @param valueType static type of the value
+     * @return field to assign, or {@code null} if the value must be passed through DefaultBuildCommand.withValue
+     */
+    private VariableElement findDirectField(TypeElement buildCommand, TypeMirror entityType, String fieldName, TypeMirror valueType) {
+        if (!isDirectlyAssignable(valueType) || entityType.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+
+        TypeElement entity = (TypeElement) types.asElement(entityType);
+        PackageElement generatedPackage = elements.getPackageOf(buildCommand);
+        if (!isAccessible(entity, generatedPackage)) {
+            return null;
+        }
+
+        // DefaultBuildCommand uses the first field with the name, starting at the entity class, so the same field must be assigned here
+        VariableElement field = findField(entity, fieldName);
+        if (field == null) {
+            return null;
+        }
+
+        Set<Modifier> modifiers = field.getModifiers();
+        boolean fieldAccessible = modifiers.contains(Modifier.PUBLIC)
+                || (!modifiers.contains(Modifier.PRIVATE) && elements.getPackageOf(field).equals(generatedPackage));
+        if (!fieldAccessible || modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL)
+                || !isAccessible((TypeElement) field.getEnclosingElement(), generatedPackage)) {
+            return null;
+        }
+
+        TypeMirror fieldType = types.asMemberOf((DeclaredType) entityType, field);
+        boolean assignable = types.isSameType(valueType, fieldType)
+                || (!valueType.getKind().isPrimitive() && !fieldType.getKind().isPrimitive() && types.isAssignable(valueType, fieldType));
+        return assignable ? field : null;
+    }
+
+    private boolean isAccessible(TypeElement type, PackageElement fromPackage) {
+        return type.getModifiers().contains(Modifier.PUBLIC) || elements.getPackageOf(type).equals(fromPackage);
+    }
+
+    /**
+     * Determines if a value of the given static type can never be an array, Collection or Supplier at runtime.
+     * @param valueType static type of the value
+     * @return {@code true} if the value can be assigned directly
+     */
+    private boolean isDirectlyAssignable(TypeMirror valueType) {
+        if (valueType.getKind().isPrimitive()) {
+            return true;
+        }
+        if (valueType.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+
+        TypeElement valueElement = (TypeElement) types.asElement(valueType);
+        if (valueElement.getKind() == ElementKind.ENUM) {
+            return true;
+        }
+        return valueElement.getKind() == ElementKind.CLASS
+                && !valueElement.getQualifiedName().contentEquals(Object.class.getName())
+                && !isSubtypeOf(valueType, "java.util.Collection")
+                && !isSubtypeOf(valueType, "java.util.function.Supplier");
+    }
+
+    private boolean isSubtypeOf(TypeMirror type, String qualifiedName) {
+        TypeElement element = elements.getTypeElement(qualifiedName);
+        return element != null && types.isSubtype(types.erasure(type), types.erasure(element.asType()));
+    }
+
+    private VariableElement findField(TypeElement type, String fieldName) {
+        for (TypeElement current = type; current != null; current = (TypeElement) types.asElement(current.getSuperclass())) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                if (field.getSimpleName().contentEquals(fieldName)) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Generates the public declaration of a method (without body), matching the method as seen from the BuildCommand interface.
+     * @param method the method
+     * @param methodType type of the method, as member of the BuildCommand interface
+     * @return declaration of the method
+     */
+    private String generateMethodDeclaration(ExecutableElement method, ExecutableType methodType) {
+        StringBuilder declaration = new StringBuilder("    @Override\n    public ");
+
+        if (!method.getTypeParameters().isEmpty()) {
+            declaration.append('<');
+            declaration.append(method.getTypeParameters().stream().map(this::generateTypeParameter).collect(Collectors.joining(", ")));
+            declaration.append("> ");
+        }
+
+        declaration.append(methodType.getReturnType()).append(' ').append(method.getSimpleName()).append('(');
+        List<? extends VariableElement> parameters = method.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                declaration.append(", ");
+            }
+            TypeMirror parameterType = methodType.getParameterTypes().get(i);
+            if (method.isVarArgs() && i == parameters.size() - 1) {
+                declaration.append(((ArrayType) parameterType).getComponentType()).append("...");
+            } else {
+                declaration.append(parameterType);
+            }
+            declaration.append(' ').append(parameters.get(i).getSimpleName());
+        }
+        declaration.append(')');
+
+        if (!methodType.getThrownTypes().isEmpty()) {
+            declaration.append(" throws ").append(methodType.getThrownTypes().stream().map(TypeMirror::toString).collect(Collectors.joining(", ")));
+        }
+        return declaration.toString();
+    }
+
+    private String generateTypeParameter(TypeParameterElement typeParameter) {
+        List<String> bounds = typeParameter.getBounds().stream()
+                .map(TypeMirror::toString)
+                .filter(bound -> !bound.equals(Object.class.getName()))
+                .toList();
+        return bounds.isEmpty() ? typeParameter.getSimpleName().toString() : typeParameter.getSimpleName() + " extends " + String.join(" & ", bounds);
+    }
+
+    private void writeSourceFile(TypeElement buildCommand, TypeMirror entityType, TypeMirror repositoryType, List<String> methods) {
+        PackageElement packageElement = elements.getPackageOf(buildCommand);
+        String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(buildCommand).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)).replace('$', '_') + GENERATED_CLASS_SUFFIX;
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+
+        try (PrintWriter writer = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedName, buildCommand).openWriter())) {
+            if (!packageName.isEmpty()) {
+                writer.println("package " + packageName + ";");
+                writer.println();
+            }
+            writer.println("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")");
+            writer.println(format("public class %s extends %s<%s, %s> implements %s {", simpleName, DEFAULT_BUILD_COMMAND, entityType, repositoryType,
+                    buildCommand.getQualifiedName()));
+            writer.println();
+            writer.println(format("    public %s(%s entity, java.util.function.Supplier<%s> repositorySupplier) {", simpleName, entityType, repositoryType));
+            writer.println("        super(entity, repositorySupplier);");
+            writer.println("    }");
+            for (String method : methods) {
+                writer.println();
+                writer.print(method);
+            }
+            writer.println("}");
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, format("Could not write [%s]: %s", qualifiedName, e.getMessage()), buildCommand);
+        }
+    }
+
+    /**
+     * Finds the parameterization of the given supertype in the hierarchy of a type.
+     * @param type the type to start looking
+     * @param supertype the supertype to look for
+     * @return the parameterized supertype, or {@code null} if it is not part of the hierarchy
+     */
+    private DeclaredType findSupertype(TypeMirror type, TypeElement supertype) {
+        for (TypeMirror directSupertype : types.directSupertypes(type)) {
+            if (types.asElement(directSupertype).equals(supertype)) {
+                return (DeclaredType) directSupertype;
+            }
+            DeclaredType found = findSupertype(directSupertype, supertype);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    private AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the "value" attribute of an annotation (taking its default into account) as String. Enum constants are returned by name.
+     * @param annotation the annotation
+     * @return value of the annotation
+     */
+    private String getAnnotationValue(AnnotationMirror annotation) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : elements.getElementValuesWithDefaults(annotation).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("value")) {
+                Object value = entry.getValue().getValue();
+                return value instanceof VariableElement ? ((VariableElement) value).getSimpleName().toString() : value.toString();
+            }
+        }
+        throw new IllegalStateException("Annotation " + annotation + " has no value");
+    }
+
+    private static String uncapitalize(String value) {
+        return Character.toLowerCase(value.charAt(0)) + value.substring(1);
+    }
+
+    private void note(TypeElement buildCommand, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                format("No implementation generated for [%s]: %s. Heph will use proxies instead.", buildCommand.getQualifiedName(), reason), buildCommand);
+    }
+
+    private void warn(ExecutableElement method, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                format("%s. No implementation generated for [%s]; Heph will use proxies instead.", message, ((TypeElement) method.getEnclosingElement()).getQualifiedName()),
+                method);
+    }
+}
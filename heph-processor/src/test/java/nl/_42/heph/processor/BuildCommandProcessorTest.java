@@ -0,0 +1,210 @@
+package nl._42.heph.processor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import nl._42.heph.AbstractBuildCommand;
+import nl._42.heph.generation.GeneratedBuildCommandFactory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Persistable;
+
+public class BuildCommandProcessorTest {
+
+    private static final String ANIMAL = """
+            package zoo;
+
+            import java.util.List;
+
+            import org.springframework.data.domain.Persistable;
+
+            public class Animal implements Persistable<Long> {
+
+                private Long id;
+                private String name;
+                private Long keeperId;
+                private List<String> nicknames;
+                private Animal mother;
+                String species;
+
+                public Long getId() { return id; }
+                public void setId(Long id) { this.id = id; }
+                public boolean isNew() { return id == null; }
+                public String getName() { return name; }
+                public void setName(String name) { this.name = "set:" + name; }
+                public Long getKeeperId() { return keeperId; }
+                public void setKeeperId(Long keeperId) { this.keeperId = keeperId; }
+                public List<String> getNicknames() { return nicknames; }
+                public void setNicknames(List<String> nicknames) { this.nicknames = nicknames; }
+                public Animal getMother() { return mother; }
+                public void setMother(Animal mother) { this.mother = mother; }
+                public String getSpecies() { return species; }
+                public void setSpecies(String species) { this.species = "set:" + species; }
+            }
+            """;
+
+    private static final String ANIMAL_BUILD_COMMAND = """
+            package zoo;
+
+            import java.util.function.Supplier;
+
+            import nl._42.heph.AbstractBuildCommand;
+            import nl._42.heph.NoOpBeanSaver;
+            import nl._42.heph.lazy.EntityField;
+            import nl._42.heph.lazy.EntityId;
+
+            public interface AnimalBuildCommand extends AbstractBuildCommand<Animal, NoOpBeanSaver> {
+
+                @Override
+                default Animal findEntity(Animal entity) {
+                    return null;
+                }
+
+                @Override
+                default void preProcess(Animal entity) {
+                    putValue("preProcessed", true);
+                }
+
+                AnimalBuildCommand withName(String name);
+
+                AnimalBuildCommand withSpecies(String species);
+
+                AnimalBuildCommand withNicknames(String... nicknames);
+
+                AnimalBuildCommand withMother(Supplier<Animal> mother);
+
+                @EntityField("keeperId")
+                @EntityId
+                AnimalBuildCommand withKeeper(Animal keeper);
+
+                default AnimalBuildCommand withCustomName(String name) {
+                    getInternalEntity().setName("custom:" + name);
+                    return this;
+                }
+            }
+            """;
+
+    private static final String UNSUPPORTED_BUILD_COMMAND = """
+            package zoo;
+
+            import nl._42.heph.AbstractBuildCommand;
+            import nl._42.heph.NoOpBeanSaver;
+
+            public interface UnsupportedBuildCommand extends AbstractBuildCommand<Animal, NoOpBeanSaver> {
+
+                UnsupportedBuildCommand withNameAndAge(String name, int age);
+            }
+            """;
+
+    @TempDir
+    Path workingDirectory;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void generatedBuildCommand_shouldApplyValuesAndCallDefaultMethods() throws Exception {
+        try (URLClassLoader classLoader = compile(Map.of("zoo/Animal.java", ANIMAL, "zoo/AnimalBuildCommand.java", ANIMAL_BUILD_COMMAND))) {
+            Class<AbstractBuildCommand> buildCommandClass = (Class<AbstractBuildCommand>) classLoader.loadClass("zoo.AnimalBuildCommand");
+            Class<?> entityClass = classLoader.loadClass("zoo.Animal");
+
+            GeneratedBuildCommandFactory<AbstractBuildCommand> factory = GeneratedBuildCommandFactory.forInterface(buildCommandClass);
+            assertNotNull(factory);
+
+            Persistable<Long> mother = newAnimal(entityClass, 7L);
+            Persistable<Long> keeper = newAnimal(entityClass, 42L);
+            AbstractBuildCommand buildCommand = factory.newBuildCommand(newAnimal(entityClass, null), () -> null);
+            assertFalse(Proxy.isProxyClass(buildCommand.getClass()));
+
+            assertSame(buildCommand, invoke(buildCommand, "withName", String.class, "Simba"));
+            invoke(buildCommand, "withSpecies", String.class, "Lion");
+            invoke(buildCommand, "withNicknames", String[].class, (Object) new String[] { "Lion", "King" });
+            invoke(buildCommand, "withNicknames", String[].class, (Object) new String[] { "Cub" });
+            invoke(buildCommand, "withMother", Supplier.class, (Supplier<?>) () -> mother);
+            invoke(buildCommand, "withKeeper", entityClass, keeper);
+
+            Object animal = buildCommand.create();
+            // Like the proxies, the generated class assigns the fields and never calls the setters
+            assertEquals("Simba", get(animal, "getName"));
+            assertEquals("Lion", get(animal, "getSpecies"));
+
+            // Accessible fields are assigned without reflection, others through DefaultBuildCommand.withValue
+            String source = Files.readString(workingDirectory.resolve("classes/zoo/AnimalBuildCommand" + BuildCommandProcessor.GENERATED_CLASS_SUFFIX + ".java"));
+            assertTrue(source.contains("getInternalEntity().species = species;"), source);
+            assertTrue(source.contains("withValue(\"name\", name,"), source);
+            assertArrayEquals(new String[] { "Lion", "King", "Cub" }, ((List<?>) get(animal, "getNicknames")).toArray());
+            assertSame(mother, get(animal, "getMother"));
+            assertEquals(42L, get(animal, "getKeeperId"));
+            assertEquals(Boolean.TRUE, buildCommand.getValue("preProcessed"));
+
+            invoke(buildCommand, "withCustomName", String.class, "Nala");
+            assertEquals("set:custom:Nala", get(animal, "getName"));
+        }
+    }
+
+    @Test
+    public void unsupportedMethod_shouldNotGenerateImplementation() throws Exception {
+        try (URLClassLoader classLoader = compile(Map.of("zoo/Animal.java", ANIMAL, "zoo/UnsupportedBuildCommand.java", UNSUPPORTED_BUILD_COMMAND))) {
+            assertNotNull(classLoader.loadClass("zoo.UnsupportedBuildCommand"));
+            assertNull(classLoader.getResource("zoo/UnsupportedBuildCommand" + BuildCommandProcessor.GENERATED_CLASS_SUFFIX + ".class"));
+        }
+    }
+
+    private URLClassLoader compile(Map<String, String> sources) throws IOException {
+        Path sourceDirectory = Files.createDirectories(workingDirectory.resolve("src"));
+        Path outputDirectory = Files.createDirectories(workingDirectory.resolve("classes"));
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            Path file = sourceDirectory.resolve(source.getKey());
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, source.getValue());
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StringWriter output = new StringWriter();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(output, fileManager, null,
+                    List.of("-classpath", System.getProperty("java.class.path"), "-d", outputDirectory.toString(), "-s", outputDirectory.toString()),
+                    null, fileManager.getJavaFileObjectsFromPaths(sources.keySet().stream().map(sourceDirectory::resolve).toList()));
+            task.setProcessors(List.of(new BuildCommandProcessor()));
+            assertTrue(task.call(), output::toString);
+        }
+
+        return new URLClassLoader(new URL[] { outputDirectory.toUri().toURL() }, getClass().getClassLoader());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Persistable<Long> newAnimal(Class<?> entityClass, Long id) throws Exception {
+        Persistable<Long> animal = (Persistable<Long>) entityClass.getConstructor().newInstance();
+        entityClass.getMethod("setId", Long.class).invoke(animal, id);
+        return animal;
+    }
+
+    private static Object invoke(Object target, String methodName, Class<?> parameterType, Object argument) throws Exception {
+        Method method = target.getClass().getMethod(methodName, parameterType);
+        return method.invoke(target, argument);
+    }
+
+    private static Object get(Object target, String getterName) throws Exception {
+        return target.getClass().getMethod(getterName).invoke(target);
+    }
+}
@@ -1,6 +1,7 @@
 package nl._42.heph;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.function.Supplier;
 
 import nl._42.heph.lazy.LazyEntity;
@@ -57,6 +58,26 @@ public interface AbstractBuildCommand<T extends Persistable, R extends Repositor
      */
     T findEntity(T entity);
 
+    /**
+     * Method that may be overridden by an extending class to look up the pre-existing entities of multiple
+     * BuildCommands at once, for example with a single <code>IN</code> query. This method is called when several
+     * entities are created together (see {@link AbstractBuilder#createAll(java.util.Collection)}).
+     * By default, findEntity is called for every entity. It is not required to override this method.
+     * @param entities the entities to look for
+     * @return for every entity, at the same position, the pre-existing entity if found, or else null
+     */
+    List<T> findEntities(List<T> entities);
+
+    /**
+     * Method that may be overridden by an extending class to enable the {@link FindEntityCache} for this BuildCommand.
+     * It must return the values of the entity which determine the result of {@code findEntity}, for example
+     * <code>return entity.getName();</code> or <code>return List.of(entity.getName(), entity.getOrganizationId());</code>.
+     * The returned key must implement equals and hashCode. It is not required to override this method.
+     * @param entity the entity to look for
+     * @return key of the entity in the cache, or null to always call findEntity
+     */
+    Object findEntityKey(T entity);
+
     /**
      * Exposes the internal entity. Note that this method is used by the
      * extending class to set values on the encapsulated entity.
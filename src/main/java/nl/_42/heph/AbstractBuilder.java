@@ -3,37 +3,49 @@ package nl._42.heph;
 import static java.lang.String.format;
 
 import java.io.Serializable;
-import java.lang.ref.WeakReference;
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
-import io.beanmapper.BeanMapper;
 import nl._42.heph.generation.BuildCommandAdvice;
+import nl._42.heph.generation.BuildCommandEngine;
+import nl._42.heph.generation.BuildCommandFactory;
 import nl._42.heph.generation.BuildCommandPointcut;
+import nl._42.heph.generation.BuildCommandProxyFactory;
+import nl._42.heph.generation.BytecodeBuildCommandFactory;
+import nl._42.heph.generation.CopyDepth;
+import nl._42.heph.generation.EntityCopier;
+import nl._42.heph.generation.EntityInstantiator;
+import nl._42.heph.generation.FieldAccessor;
+import nl._42.heph.generation.GeneratedBuildCommandFactory;
+import nl._42.heph.generation.NaturalKey;
+import nl._42.heph.generation.PropertyAccessor;
+import nl._42.heph.generation.WithMethodDescriptor;
+import nl._42.heph.lazy.ReferenceResolutionPlan;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.aop.framework.ProxyFactory;
-import org.springframework.aop.support.DefaultPointcutAdvisor;
-import org.springframework.aop.target.SingletonTargetSource;
-import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.beans.factory.NoUniqueBeanDefinitionException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cglib.proxy.Enhancer;
-import org.springframework.cglib.proxy.MethodInterceptor;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.GenericTypeResolver;
 import org.springframework.data.domain.Persistable;
+import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
-import org.springframework.util.ReflectionUtils;
 
 /**
  * <p>
@@ -47,8 +59,8 @@ import org.springframework.util.ReflectionUtils;
  *     immediately.</li>
  *     <li><b>update</b>; rewraps the entity in a BuildCommand, making its BuildCommand's
  *     methods available.</li>
- *     <li><b>copy</b>; tries to make a clean copy of the entity (ie, new instance) and reset
- *     its ID to null.</li>
+ *     <li><b>copy</b>; makes a clean copy of the entity (ie, new instance) without
+ *     its ID.</li>
  * </ul>
  * @param <T> the type of the entity which is wrapped in the BuildCommand
  * @param <BC> the type of the BuildCommand
@@ -58,25 +70,34 @@ public abstract class AbstractBuilder<T extends Persistable, BC extends Abstract
     /** The set of BuilderConstructors for this Builder */
     private BuilderConstructors<T, BC> builderConstructors;
 
-    /** The set of methods of {@link AbstractBuildCommand} to redirect to a custom implementation (if overridden only) */
-    private static final List<Method> ABSTRACT_BUILD_COMMAND_METHODS = Arrays.asList(AbstractBuildCommand.class.getDeclaredMethods());
+    /** The repository resolved for the BuildCommands of this Builder, see {@link #buildRepositorySupplier(Class)} */
+    private volatile ResolvedRepository<T> resolvedRepository;
+
+    /** The cache resolved for the BuildCommands of this Builder, see {@link #buildFindEntityCacheConnector(Class)} */
+    private volatile ResolvedFindEntityCache resolvedFindEntityCache;
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractBuilder.class);
 
-    /** Class name of the optional BeanMapper for copying entity */
-    private static final String BEANMAPPER_CLASS_NAME = "io.beanmapper.BeanMapper";
+    /** Class name of the optional Hibernate utilities, which are used to unwrap lazy loaded entities in {@link #copy(Persistable)} */
+    private static final String HIBERNATE_CLASS_NAME = "org.hibernate.Hibernate";
 
-    /**
-     * BeanMapper is used when the copy function is invoked. It will attempt to make a clear
-     * copy. Be aware that non-traditional getters/setters may hamper the working of the copy
-     * method. This BeanMapper instance is wrapped to avoid a runtime crash if BeanMapper is not on the classpath.
-     */
-    private WeakReference<io.beanmapper.BeanMapper> beanMapper;
+    /** Class names of the optional Hibernate and Spring ORM classes, which are used to enable JDBC batching in {@link #createAll(Collection)} */
+    private static final String HIBERNATE_SESSION_CLASS_NAME = "org.hibernate.Session";
+    private static final String ENTITY_MANAGER_FACTORY_UTILS_CLASS_NAME = "org.springframework.orm.jpa.EntityManagerFactoryUtils";
+    private static final String JDBC_BATCH_BEAN_SAVER_CLASS_NAME = "nl._42.heph.JdbcBatchBeanSaver";
+
+    /** Class name of the optional JPA API, which is used to find the subclasses of an entity in {@link #warmUp()} */
+    private static final String JPA_CLASS_NAME = "jakarta.persistence.EntityManagerFactory";
+
+    /** Name of the method which enables the {@link FindEntityCache} for a BuildCommand */
+    private static final String FIND_ENTITY_KEY_METHOD_NAME = "findEntityKey";
+
+    /** Default number of inserts sent to the database at once by {@link #createAll(Collection)} */
+    private static final int DEFAULT_JDBC_BATCH_SIZE = 50;
 
     /**
      * ApplicationContext is used to:
      * - Automatically assign a repository when the constructors() function is invoked for the first time.
-     * - Automatically wire the BeanMapper when the copy() function is invoked for the first time (to make this library work without BeanMapper on classpath)
      */
     @Autowired
     private ApplicationContext applicationContext;
@@ -137,199 +158,511 @@ public abstract class AbstractBuilder<T extends Persistable, BC extends Abstract
     }
 
     /**
-     * Takes an existing entity, copies it using BeanMapper (be aware that this presumes
-     * normal getters/setters to be in place; if this is not the case, this will imperil
-     * the use of copy), sets the ID field of the copied entity to null and provides it
-     * wrapped in a new BuildCommand. Useful if an object has been customized and its
-     * siblings need only small changes.
+     * Takes an existing entity, copies its fields into a new entity (see {@link EntityCopier}),
+     * except for its ID and version, and provides it wrapped in a new BuildCommand. Collections,
+     * maps and arrays are copied as well, unless {@link #getCopyDepth()} is overridden.
+     * Useful if an object has been customized and its siblings need only small changes.
      * @param entity the entity that must be copied and wrapped in a new BuildCommand
      * @return BuildCommand wrapping the copied entity
      */
     public BC copy(T entity) {
-        if (!ClassUtils.isPresent(BEANMAPPER_CLASS_NAME, applicationContext.getClassLoader())) {
-            throw new UnsupportedOperationException("The copy feature requires the io.beanmapper dependency to be added to your project. Please include it and then try again.");
+        return update(constructors().getEntityCopier().apply(entity));
+    }
+
+    /**
+     * <p>
+     *     Creates the entities of multiple BuildCommands at once. For every BuildCommand, the before-find references are resolved.
+     *     The pre-existing entities are then looked up with a single call to {@link AbstractBuildCommand#findEntities(List)}. The entities which were not found are
+     *     then prepared (resolving their before-create references and calling the preProcess), saved with a single {@code saveAll} call
+     *     on their repository and finally post-processed, in the order of the BuildCommands.
+     * </p>
+     * <p>
+     *     If Hibernate is used, the saves are run in one transaction with JDBC batching enabled on its session (see {@link #getJdbcBatchSize()}).
+     *     Note that Hibernate cannot batch the inserts of entities which use an identity column to generate their IDs.
+     *     Since the entities are saved at the same time, the BuildCommands of one call do not find each other's entity.
+     *     Like separate {@code create()} calls, every BuildCommand resolves its references in a create chain of its own (see {@link ReferenceResolutionPlan}),
+     *     unless {@code createAll} is called within a chain already.
+     * </p>
+     * @param buildCommands BuildCommands obtained from this builder, for example through {@link #base()}
+     * @return the found or created entities, in the order of the BuildCommands
+     */
+    public List<T> createAll(Collection<BC> buildCommands) {
+        List<T> entities = new ArrayList<>(buildCommands.size());
+        List<PendingSave<T>> pendingSaves = new ArrayList<>();
+
+        List<DefaultBuildCommand<T, ?>> commands = buildCommands.stream().map(this::unwrap).toList();
+        // Like separate create() calls, every BuildCommand gets a create chain of its own, unless createAll is called within a chain already.
+        // Otherwise, a supplier which is a single instance (such as a static method reference) would be shared by all entities.
+        commands.forEach(command -> command.useReferenceResolutionPlan(ReferenceResolutionPlan.currentOrNew()));
+        List<T> found = DefaultBuildCommand.findAll(commands);
+
+        for (int i = 0; i < commands.size(); i++) {
+            if (found.get(i) == null) {
+                DefaultBuildCommand<T, ?> command = commands.get(i);
+                pendingSaves.add(new PendingSave<>(i, command, command.prepareSave()));
+            }
+            entities.add(found.get(i));
         }
 
-        if (beanMapper == null || beanMapper.get() == null) {
-            beanMapper = new WeakReference<>(applicationContext.getBean(BeanMapper.class));
+        // Normally all BuildCommands share the same repository, unless getRepository() has been overridden.
+        Map<Repository<?, ?>, List<PendingSave<T>>> pendingSavesByRepository = new LinkedHashMap<>();
+        pendingSaves.forEach(pendingSave -> pendingSavesByRepository.computeIfAbsent(pendingSave.command().getRepository(), (repository) -> new ArrayList<>()).add(pendingSave));
+
+        runInBatch(() -> pendingSavesByRepository.forEach((repository, saves) -> {
+            List<T> saved = saveAll(repository, saves.stream().map(PendingSave::entity).toList());
+            for (int i = 0; i < saves.size(); i++) {
+                entities.set(saves.get(i).index(), saved.get(i));
+            }
+        }));
+
+        pendingSaves.forEach(pendingSave -> entities.set(pendingSave.index(), pendingSave.command().completeSave(entities.get(pendingSave.index()))));
+        return entities;
+    }
+
+    /**
+     * Creates a number of entities at once, starting each of them from {@link #base()}. See {@link #createAll(Collection)}.
+     * @param count Number of entities to create
+     * @param customizer Applies the values of a single entity to its BuildCommand
+     * @return the found or created entities
+     */
+    public List<T> createAll(int count, Consumer<BC> customizer) {
+        List<BC> buildCommands = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BC buildCommand = base();
+            customizer.accept(buildCommand);
+            buildCommands.add(buildCommand);
         }
+        return createAll(buildCommands);
+    }
 
-        T copy = Objects.requireNonNull(beanMapper.get(), "Error instantiating BeanMapper. Please make sure a valid BeanMapper bean has been declared.")
-                .map(entity, constructors().getEntityConstructor().get());
+    /**
+     * Returns the number of inserts which are sent to the database at once by {@link #createAll(Collection)}, if Hibernate is used.
+     * Override this method to use a different batch size.
+     * @return the batch size, 50 by default
+     */
+    protected int getJdbcBatchSize() {
+        return DEFAULT_JDBC_BATCH_SIZE;
+    }
 
-        nullifyIdField(copy);
-        return update(copy);
+    /**
+     * <p>
+     *     Returns the number of lazy references (supplied values) of a BuildCommand which may be resolved at the same time. If more than one,
+     *     the suppliers of the references which are resolved at the same moment (before the find, or before the create) are called concurrently on virtual threads.
+     *     The resolved values are still applied to the entity one by one, in the same order as when resolved sequentially.
+     * </p>
+     * <p>
+     *     Only enable this if the suppliers are independent of each other and do not depend on the current thread, for example because they build entities
+     *     through a {@link BeanSaver} or another datasource. Entities saved through JPA must be saved in the transaction of the current thread,
+     *     and the {@link FindEntityCache} and {@link FixtureSession} are bound to the current thread as well.
+     * </p>
+     * @return the maximum number of references resolved at once, 1 (sequential resolution) by default
+     */
+    protected int getReferenceParallelism() {
+        return 1;
     }
 
     /**
-     * Set the id field of the given entity to null.
-     * @param entity entity
+     * <p>
+     *     Returns the allocator which assigns the identifiers of new entities right before they are saved, so the database does not have to generate them
+     *     while inserting. Without identity columns, Hibernate can send the inserts of {@link #createAll(Collection)} in JDBC batches.
+     *     Only return an allocator for entities with assigned identifiers, whose {@code isNew()} does not depend on the identifier (see {@link IdAllocator}).
+     * </p>
+     * <p>
+     *     This method is called once, when the first BuildCommand of this builder is created.
+     * </p>
+     * @return the allocator, or {@code null} (by default) to leave the identifiers to the repository
      */
-    private void nullifyIdField(T entity) {
-        Field field = findIdFieldInHierarchy(entity.getClass());
-        field.setAccessible(true);
-        try {
-            field.set(entity, null);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException("Could not modify id field. ", e);
+    protected IdAllocator getIdAllocator() {
+        return null;
+    }
+
+    /**
+     * <p>
+     *     Returns how far {@link #copy(Persistable)} copies the entity. By default, collections, maps and arrays are copied into new instances,
+     *     which JPA requires for collections owned by the entity. Builders of entities without such collections can return {@link CopyDepth#SHALLOW}
+     *     to share them with the original entity instead.
+     * </p>
+     * <p>
+     *     This method is called once, when the first BuildCommand of this builder is created.
+     * </p>
+     * @return the depth of copies, {@link CopyDepth#COLLECTIONS} by default
+     */
+    protected CopyDepth getCopyDepth() {
+        return CopyDepth.COLLECTIONS;
+    }
+
+    /**
+     * Returns the base implementation of a BuildCommand, which contains the steps of the create.
+     * @param buildCommand BuildCommand obtained from this builder
+     * @return the base implementation
+     */
+    @SuppressWarnings("unchecked")
+    private DefaultBuildCommand<T, ?> unwrap(BC buildCommand) {
+        return unwrapBuildCommand(buildCommand);
+    }
+
+    /**
+     * Returns the {@link DefaultBuildCommand} of a BuildCommand obtained from any builder.
+     * @param buildCommand BuildCommand obtained from a builder
+     * @param <T> Type of the entity
+     * @return the BuildCommand itself if it extends DefaultBuildCommand, or else the DefaultBuildCommand to which the proxy passes its calls
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Persistable> DefaultBuildCommand<T, ?> unwrapBuildCommand(AbstractBuildCommand<T, ?> buildCommand) {
+        if (buildCommand instanceof DefaultBuildCommand) {
+            return (DefaultBuildCommand<T, ?>) buildCommand;
         }
+        if (Proxy.isProxyClass(buildCommand.getClass()) && Proxy.getInvocationHandler(buildCommand) instanceof BuildCommandAdvice advice) {
+            return (DefaultBuildCommand<T, ?>) advice.getBuildCommand();
+        }
+        throw new IllegalArgumentException(format("BuildCommand of type [%s] has not been obtained from a builder", buildCommand.getClass().getName()));
     }
 
     /**
-     * Looks up the id field in the object hierarchy.
-     * This is done because getDeclaredFields only
-     * returns private fields of the exact class
-     * you're calling it on, but the id field may
-     * be arbitrary class levels deep. So we
-     * recurse until we find it or if we've reached
-     * Object.class and we know we're done.
-     *
-     * If it cannot be found in the hierarchy
-     * we throw an exception.
-     *
-     * @param entityClass class to start looking
-     * @return id field
+     * Runs the saves of {@link #createAll(Collection)}, with JDBC batching enabled if Hibernate is used.
+     * @param saves Saves to run
      */
-    private Field findIdFieldInHierarchy(Class<?> entityClass) {
-        try {
-            return entityClass.getDeclaredField("id");
-        } catch (NoSuchFieldException e) {
-            /*
-             * If we don't find the field we look
-             * further up the hierarchy, if we
-             * didn't reach object yet.
-             * If we did, we'll rethrow the exception.
-             */
-            Class<?> superClass = entityClass.getSuperclass();
-            if (superClass != Object.class) {
-                return findIdFieldInHierarchy(superClass);
-            } else {
-                throw new RuntimeException("Cannot find id field in the hierarchy.", e);
+    private void runInBatch(Runnable saves) {
+        if (applicationContext != null
+                && ClassUtils.isPresent(HIBERNATE_SESSION_CLASS_NAME, applicationContext.getClassLoader())
+                && ClassUtils.isPresent(ENTITY_MANAGER_FACTORY_UTILS_CLASS_NAME, applicationContext.getClassLoader())) {
+            HibernateBatchTransaction.execute(applicationContext, getJdbcBatchSize(), saves);
+        } else {
+            saves.run();
+        }
+    }
+
+    /**
+     * Saves the entities using the repository. If there is no repository, the entities are returned as-is.
+     * @param repository Repository of the entities
+     * @param entities Entities to save
+     * @return the saved entities, in the same order
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<T> saveAll(Repository<?, ?> repository, List<T> entities) {
+        if (repository instanceof CrudRepository) {
+            List<T> saved = new ArrayList<>(entities.size());
+            ((CrudRepository<T, ?>) repository).saveAll(entities).forEach(saved::add);
+            return saved;
+        } else if (repository instanceof BeanSaver) {
+            return ((BeanSaver<T, ?>) repository).saveAll(entities);
+        } else if (repository instanceof ReactiveCrudRepository) {
+            return ReactiveCreation.saveAllAndWait((ReactiveCrudRepository<T, ?>) repository, entities);
+        }
+        return entities;
+    }
+
+    /**
+     * Performs all setup of this builder which is otherwise done lazily, on the first call to {@link #blank()}: resolving its generic types,
+     * generating the BuildCommand implementation, compiling the accessors of the fields (and properties) affected by the "with" methods and looking up the repository.
+     * Fails if a "with" method cannot be mapped to a field of the entity or of one of its subclasses known to JPA. Used by {@link BuilderWarmUp},
+     * which calls it on the target of a proxied builder.
+     */
+    void warmUp() {
+        Class<?>[] genericTypes = resolveGenericTypes();
+        Class<?> entityClass = genericTypes[0];
+        Class<?> buildCommandClass = genericTypes[1];
+        constructors();
+
+        for (Method method : buildCommandClass.getMethods()) {
+            if (!Modifier.isAbstract(method.getModifiers()) || method.getDeclaringClass() == AbstractBuildCommand.class) {
+                continue;
+            }
+
+            if (!method.getName().startsWith(BuildCommandPointcut.WITH_PREFIX) || method.getParameterCount() != 1) {
+                throw new IllegalStateException(format("Method [%s] of buildCommand [%s] cannot be implemented: Expected a with method taking one argument",
+                        method.getName(), buildCommandClass.getName()));
             }
+
+            WithMethodDescriptor descriptor = WithMethodDescriptor.forMethod(buildCommandClass, method);
+            if (descriptor.getAccessor() == null) {
+                // The field may be declared by a subclass of the entity, in which case it is looked up in the actual entity when the method is called
+                if (!mayBeDeclaredBySubclass(entityClass, descriptor.getFieldName())) {
+                    throw new IllegalStateException(format("Method [%s] of buildCommand [%s] cannot be implemented: Field [%s] is not present in the entity class or its superclasses",
+                            method.getName(), buildCommandClass.getName(), descriptor.getFieldName()));
+                }
+            } else if (Supplier.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                // Supplied values are applied through the getter and setter of the field.
+                PropertyAccessor.forProperty(entityClass, descriptor.getFieldName());
+            }
+        }
+
+        buildRepositorySupplier(buildCommandClass).get();
+    }
+
+    /**
+     * Determines if a field which is not present in the entity class may be declared by one of its subclasses. The subclasses are only known for
+     * entities managed by JPA. For other entity classes, the field is assumed to be declared by a subclass.
+     * @param entityClass Class of the entity
+     * @param fieldName Name of the field
+     * @return {@code false} if none of the known subclasses declares the field
+     */
+    private boolean mayBeDeclaredBySubclass(Class<?> entityClass, String fieldName) {
+        if (applicationContext == null || !ClassUtils.isPresent(JPA_CLASS_NAME, applicationContext.getClassLoader())) {
+            return true;
         }
+        List<Class<?>> subclasses = JpaEntitySubclasses.of(applicationContext, entityClass);
+        return subclasses == null || subclasses.stream().anyMatch(subclass -> FieldAccessor.forField(subclass, fieldName) != null);
+    }
+
+    /**
+     * Returns the engine which implements the BuildCommand interface of this builder at runtime. Override this method to use
+     * {@link BuildCommandEngine#BYTECODE}, which generates a single class per BuildCommand interface instead of a chain of proxies.
+     * This setting is ignored if an implementation has been generated at compile time by the heph-processor.
+     * @return the engine to use, {@link BuildCommandEngine#PROXY} by default
+     */
+    protected BuildCommandEngine getBuildCommandEngine() {
+        return BuildCommandEngine.PROXY;
     }
 
     /**
      * Generates an instance of builderConstructors suitable for the custom implementation of this class and its BuildCommand.
      * The constructor set needs three methods, which do the following:
-     * i) constructor for copy/update: Instantiates the buildCommand (using its no-args constructor) with the linked entity
-     * ii) constructor for blank/base: Instantiates the buildCommand (using its no-args constructor) with the supplied entity
-     * iii) constructor for the entity: Instantiates the entity (using its no-args constructor).
+     * i) constructor for copy/update: Instantiates the buildCommand (using its {@link BuildCommandFactory}) with the linked entity
+     * ii) constructor for blank/base: Instantiates the buildCommand (using its {@link BuildCommandFactory}) with the supplied entity
+     * iii) constructor for the entity: Instantiates the entity (using its no-args constructor, compiled by {@link EntityInstantiator}).
      * @return Builder constructor for the entity type and build command type of this class.
      */
     @SuppressWarnings("unchecked")
     private BuilderConstructors<T, BC> generateBuilderConstructors() {
         // We resolve the generic class types T and BC.
-        Class<?>[] genericTypes = GenericTypeResolver.resolveTypeArguments(getClass(), AbstractBuilder.class);
-        Assert.isTrue(genericTypes != null && genericTypes.length == 2, "The AbstractBuilder class must contain exactly two class-level generic types");
-
+        Class<?>[] genericTypes = resolveGenericTypes();
         Class<?> entityClass = genericTypes[0];
-        Class<?> buildCommandClass = genericTypes[1];
+        Class<BC> buildCommandClass = (Class<BC>) genericTypes[1];
+
+        BuildCommandFactory<BC> factory = resolveBuildCommandFactory(buildCommandClass);
+        Supplier<Repository<T, ? extends Serializable>> repositorySupplier = buildRepositorySupplier(buildCommandClass);
+
+        // BuildCommands which define the key of their entity are connected to their natural key and the FindEntityCache, if one has been declared.
+        UnaryOperator<BC> findEntityCacheConnector = buildFindEntityCacheConnector(buildCommandClass);
+
+        // BuildCommands of builders which allow it resolve their references concurrently, and get their identifiers from an allocator.
+        Function<BC, BC> connector = findEntityCacheConnector.andThen(buildReferenceResolutionConnector()).andThen(buildIdAssignmentConnector(entityClass));
 
         // Function 1: Returns a new BuildCommand from an Entity.
-        Function<T, BC> directEntityBuilderFunction = (entity -> instantiateBuildCommand(buildCommandClass, entity));
+        Function<T, BC> directEntityBuilderFunction = (entity -> connector.apply(factory.newBuildCommand(entity, repositorySupplier)));
 
         // Function 2: Returns a new BuildCommand from a supplied Entity.
-        Function<Supplier<T>, BC> lazySupplyingEntityBuilderFunction = (entity -> instantiateBuildCommand(buildCommandClass, entity.get()));
+        Function<Supplier<T>, BC> lazySupplyingEntityBuilderFunction = (entity -> connector.apply(factory.newBuildCommand(entity.get(), repositorySupplier)));
 
         // Function 3: Returns a new Entity
-        Supplier<T> entitySupplyingFunction = () -> (T) BeanUtils.instantiateClass(entityClass);
+        Supplier<T> entitySupplyingFunction = EntityInstantiator.forClass((Class<T>) entityClass);
+
+        // Function 4: Returns a new Entity with the state of another
+        UnaryOperator<T> entityCopyingFunction = buildEntityCopier(entityClass, entitySupplyingFunction);
 
-        return new BuilderConstructors<>(directEntityBuilderFunction, lazySupplyingEntityBuilderFunction, entitySupplyingFunction);
+        return new BuilderConstructors<>(directEntityBuilderFunction, lazySupplyingEntityBuilderFunction, entitySupplyingFunction, entityCopyingFunction);
     }
 
     /**
-     * Instantiates a BuildCommand given its class and an initial Entity
-     * This is done by looking at the no-args constructor (either present in {@link AbstractBuildCommand} or overridden in your own BuildCommand)
-     * @param buildCommandClass Class of the custom BuildCommand interface to instantiate
-     * @param entity Entity to set within the "entity" field of the default BuildCommand implementation
-     * @return Instantiated BuildCommand for the given Entity
+     * Builds the function which copies entities, using the copy plan of the entity class. Lazy loaded entities are unwrapped first if Hibernate is used,
+     * because the fields of a Hibernate proxy are never initialized.
+     * @param entityClass Class of the entity
+     * @param entitySupplier Supplier of new entities
+     * @return function which returns a copy of the entity
      */
-    @SuppressWarnings("unchecked")
-    private BC instantiateBuildCommand(Class<?> buildCommandClass, T entity) {
-        Object[] buildCommandReference = new Object[1];
-
-        // We currently need two kinds of proxies to have a working BuildCommand:
-        // The 1st proxy (CGLib) is required to intercept all methods of the DefaultBuildCommandClass itself and redirect overridden methods to the BuildCommand interface of the user.
-        // The 2nd proxy (Spring AOP) is required to intercept the "with" methods of the custom BuildCommand interface created by the user.
-        Enhancer enhancer = new Enhancer();
-        enhancer.setSuperclass(DefaultBuildCommand.class);
-        enhancer.setCallback((MethodInterceptor) (obj, method, args, proxy) -> {
-            // If any of the methods in DefaultBuildCommand is part of AbstractBuildCommand interface and has been overridden in the user's implementation,
-            // pass the call back to the AOP proxy instance so the actual implementation can be executed.
-            for (Method m : ABSTRACT_BUILD_COMMAND_METHODS) {
-                if (m.getName().equals(method.getName()) && m.getParameterCount() == method.getParameterCount() && m.getReturnType().equals(method.getReturnType())) {
-                    Method implementation = ReflectionUtils.findMethod(buildCommandClass, method.getName(), method.getParameterTypes());
-
-                    if (implementation != null && implementation.isDefault()) {
-                        return ReflectionUtils.invokeMethod(implementation, buildCommandReference[0], args);
-                    }
-                }
+    private UnaryOperator<T> buildEntityCopier(Class<?> entityClass, Supplier<T> entitySupplier) {
+        EntityCopier copier = EntityCopier.forClass(entityClass);
+        CopyDepth depth = getCopyDepth();
+        boolean unproxy = ClassUtils.isPresent(HIBERNATE_CLASS_NAME, applicationContext != null ? applicationContext.getClassLoader() : null);
+
+        return entity -> {
+            T copy = entitySupplier.get();
+            copier.copy(unproxy ? HibernateProxies.unproxy(entity) : entity, copy, depth);
+            return copy;
+        };
+    }
+
+    /**
+     * @return the generic types of this builder: the entity class and the BuildCommand interface
+     */
+    private Class<?>[] resolveGenericTypes() {
+        Class<?>[] genericTypes = GenericTypeResolver.resolveTypeArguments(getClass(), AbstractBuilder.class);
+        Assert.isTrue(genericTypes != null && genericTypes.length == 2, "The AbstractBuilder class must contain exactly two class-level generic types");
+        return genericTypes;
+    }
+
+    /**
+     * Resolves the factory which instantiates BuildCommands of the given type. An implementation generated at compile time
+     * is preferred. Otherwise, we fall back to the {@link #getBuildCommandEngine() runtime engine} of this builder, whose setup is
+     * shared by all builders of the same BuildCommand interface.
+     * @param buildCommandClass Class of the custom BuildCommand interface
+     * @return factory for the BuildCommand interface
+     */
+    private BuildCommandFactory<BC> resolveBuildCommandFactory(Class<BC> buildCommandClass) {
+        BuildCommandFactory<BC> generatedFactory = GeneratedBuildCommandFactory.forInterface(buildCommandClass);
+        if (generatedFactory != null) {
+            return generatedFactory;
+        }
+
+        return switch (getBuildCommandEngine()) {
+            case PROXY -> BuildCommandProxyFactory.forInterface(buildCommandClass);
+            case BYTECODE -> BytecodeBuildCommandFactory.forInterface(buildCommandClass);
+        };
+    }
+
+    /**
+     * Checks whether the BuildCommand interface overrides {@link AbstractBuildCommand#findEntityKey(Persistable)}, which enables the {@link FindEntityCache}.
+     * @param buildCommandClass Class of the custom BuildCommand interface
+     * @return true if findEntityKey has a default implementation
+     */
+    private boolean definesFindEntityKey(Class<?> buildCommandClass) {
+        return Arrays.stream(buildCommandClass.getMethods())
+                .anyMatch(method -> method.getName().equals(FIND_ENTITY_KEY_METHOD_NAME) && method.getParameterCount() == 1 && method.isDefault());
+    }
+
+    /**
+     * Builds a function which connects new BuildCommands to the natural key of their entity (see {@link FixtureKey}) and the {@link FindEntityCache}
+     * of the ApplicationContext. Like the repository, the cache is looked up once per builder, until the ApplicationContext is refreshed.
+     * If the BuildCommand interface declares no natural key and does not override findEntityKey, the BuildCommands are returned as-is.
+     * @param buildCommandClass Class of the custom BuildCommand interface
+     * @return function which returns the connected BuildCommand
+     */
+    private UnaryOperator<BC> buildFindEntityCacheConnector(Class<?> buildCommandClass) {
+        NaturalKey naturalKey = NaturalKey.forBuildCommand(buildCommandClass);
+        if (naturalKey.isEmpty() && !definesFindEntityKey(buildCommandClass)) {
+            return UnaryOperator.identity();
+        }
+
+        Class<?> builderClass = getClass();
+        Supplier<FindEntityCache> findEntityCacheSupplier = () -> {
+            if (applicationContext == null) {
+                return null;
             }
 
-            return proxy.invokeSuper(obj, args);
+            ResolvedFindEntityCache resolved = resolvedFindEntityCache;
+            if (resolved == null || resolved.contextStartupDate() != applicationContext.getStartupDate()) {
+                resolved = new ResolvedFindEntityCache(applicationContext.getStartupDate(), applicationContext.getBeanProvider(FindEntityCache.class).getIfAvailable());
+                resolvedFindEntityCache = resolved;
+            }
+            return resolved.findEntityCache();
+        };
 
-        });
+        return buildCommand -> {
+            DefaultBuildCommand<T, ?> command = unwrap(buildCommand);
+            if (!naturalKey.isEmpty()) {
+                command.useNaturalKey(naturalKey);
+            }
+            command.useFindEntityCache(builderClass, findEntityCacheSupplier);
+            return buildCommand;
+        };
+    }
 
-        Supplier<Repository<T, ? extends Serializable>> repositorySupplier = buildRepositorySupplier(buildCommandClass);
-        DefaultBuildCommand defaultBuildCommand = (DefaultBuildCommand) enhancer.create(new Class[] {Persistable.class, Supplier.class}, new Object[] {entity, repositorySupplier});
-
-        // At this stage, we have a reference buildCommand implementation which can forward calls to overridden methods in the user's implementation.
-        // However, it is not yet backed by the user's implementation.
-        // Below, we join it to the user's implementation, delegating all "with" methods to the "withValue" method of the base instance.
-        BuildCommandPointcut pointcut = new BuildCommandPointcut();
-        BuildCommandAdvice advice = new BuildCommandAdvice(defaultBuildCommand);
-        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(pointcut, advice);
-
-        ProxyFactory proxyFactory = new ProxyFactory();
-        proxyFactory.setTargetSource(new SingletonTargetSource(defaultBuildCommand));
-        proxyFactory.addInterface(buildCommandClass);
-        proxyFactory.addAdvisor(advisor);
-        BC buildCommand = (BC) proxyFactory.getProxy();
-        advice.setProxy(buildCommand);
-
-        // We need to store a reference to this buildCommand to redirect overridden methods called directly in DefaultBuildCommand to the user's implementation.
-        buildCommandReference[0] = buildCommand;
-
-        return buildCommand;
+    /**
+     * Builds a function which lets new BuildCommands resolve their references concurrently, if {@link #getReferenceParallelism()} is more than one.
+     * Otherwise, the BuildCommands are returned as-is.
+     * @return function which returns the connected BuildCommand
+     */
+    private UnaryOperator<BC> buildReferenceResolutionConnector() {
+        int parallelism = getReferenceParallelism();
+        if (parallelism <= 1) {
+            return UnaryOperator.identity();
+        }
+
+        ParallelReferenceResolution parallelReferenceResolution = new ParallelReferenceResolution(parallelism);
+        return buildCommand -> {
+            unwrap(buildCommand).useParallelReferenceResolution(parallelReferenceResolution);
+            return buildCommand;
+        };
+    }
+
+    /**
+     * Builds a function which lets new BuildCommands assign the identifiers of their entities, if {@link #getIdAllocator()} returns an allocator.
+     * Otherwise, the BuildCommands are returned as-is.
+     * @param entityClass Class of the entity
+     * @return function which returns the connected BuildCommand
+     */
+    private UnaryOperator<BC> buildIdAssignmentConnector(Class<?> entityClass) {
+        IdAllocator idAllocator = getIdAllocator();
+        if (idAllocator == null) {
+            return UnaryOperator.identity();
+        }
+
+        IdAssignment idAssignment = new IdAssignment(idAllocator, entityClass);
+        return buildCommand -> {
+            unwrap(buildCommand).useIdAssignment(idAssignment);
+            return buildCommand;
+        };
     }
 
     /**
      * Constructs a {@link Supplier} which can return a JpaRepository for the given repository type in the buildCommand.
      * If a Repository is available, it is returned when retrieving the value.
      * If no Repository (or no Spring context) is available, the supplier function returns {@code null}.
+     * The repository (or its absence) is only looked up once per builder, until the ApplicationContext is refreshed.
      * @param buildCommandClass Class of the buildCommand. This contains the generic type of the repository we are going to retrieve.
      * @return Repository if it exists, or {@code null}
      */
-    @SuppressWarnings("unchecked")
     private Supplier<Repository<T, ? extends Serializable>> buildRepositorySupplier(Class<?> buildCommandClass) {
         return () -> {
             if (applicationContext == null) {
                 return null;
             }
 
-            // In most cases, the "Repositories" class is used to obtain a repository.
-            // However, you can have 2 repositories for the same entity: One in the production code, and another in the test code, containing a method to identify the uniqueness of the fixture.
-            // In some cases, the Repositories class returns the wrong repository type, so by using applicationContext.getBean we ensure the correct repository type is returned.
-            Class<?>[] buildCommandTypes = GenericTypeResolver.resolveTypeArguments(buildCommandClass, AbstractBuildCommand.class);
-            Assert.isTrue(buildCommandTypes != null && buildCommandTypes.length == 2, "The buildCommand class must have 2 generic types");
-            Class<?> repositoryType = buildCommandTypes[1];
-
-            Repository<T, ? extends Serializable> repository = null;
-
-            try {
-                repository = (Repository<T, ? extends Serializable>) applicationContext.getBean(repositoryType);
-            } catch (NoUniqueBeanDefinitionException e) {
-                // Multiple repositories exist and a top-level repository was requested. In this case, the user needs to remove the duplicate repository or request the most-specific instance.
-                throw new MultipleRepositoriesExistException(format("Multiple repositories of (or extending) the type [%s] were found. Please specify the repository with the most specific type or remove the duplicate repository", repositoryType.getName()));
-            } catch (NoSuchBeanDefinitionException ignored) {
-                if (repositoryType != NoOpBeanSaver.class) {
-                    logger.info("Repository of the type [{}] could not be instantiated, continuing without persistence support...", repositoryType.getName());
-                }
-                // This should rarely happen if not using the NoOpBeanSaver, but it is possible if the repository is for example annotated with @NoRepositoryBean.
+            // A refresh of the ApplicationContext resets its startup date, so the repository is looked up again after a refresh.
+            ResolvedRepository<T> resolved = resolvedRepository;
+            if (resolved == null || resolved.contextStartupDate() != applicationContext.getStartupDate()) {
+                resolved = new ResolvedRepository<>(applicationContext.getStartupDate(), lookupRepository(buildCommandClass));
+                resolvedRepository = resolved;
             }
-
-            return repository;
+            return resolved.repository();
         };
     }
+
+    /**
+     * Looks up the repository for the given repository type in the buildCommand.
+     * @param buildCommandClass Class of the buildCommand. This contains the generic type of the repository we are going to retrieve.
+     * @return Repository if it exists, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    private Repository<T, ? extends Serializable> lookupRepository(Class<?> buildCommandClass) {
+        // In most cases, the "Repositories" class is used to obtain a repository.
+        // However, you can have 2 repositories for the same entity: One in the production code, and another in the test code, containing a method to identify the uniqueness of the fixture.
+        // In some cases, the Repositories class returns the wrong repository type, so by using applicationContext.getBean we ensure the correct repository type is returned.
+        Class<?>[] buildCommandTypes = GenericTypeResolver.resolveTypeArguments(buildCommandClass, AbstractBuildCommand.class);
+        Assert.isTrue(buildCommandTypes != null && buildCommandTypes.length == 2, "The buildCommand class must have 2 generic types");
+        Class<?> repositoryType = buildCommandTypes[1];
+
+        if (JDBC_BATCH_BEAN_SAVER_CLASS_NAME.equals(repositoryType.getName())) {
+            // The saver is specific to the entity of this builder, so it is created here instead of being looked up as a bean
+            return (Repository<T, ? extends Serializable>) JdbcBatchBeanSaver.forEntity(applicationContext, buildCommandTypes[0], getJdbcBatchSize());
+        }
+
+        Repository<T, ? extends Serializable> repository = null;
+
+        try {
+            repository = (Repository<T, ? extends Serializable>) applicationContext.getBean(repositoryType);
+        } catch (NoUniqueBeanDefinitionException e) {
+            // Multiple repositories exist and a top-level repository was requested. In this case, the user needs to remove the duplicate repository or request the most-specific instance.
+            throw new MultipleRepositoriesExistException(format("Multiple repositories of (or extending) the type [%s] were found. Please specify the repository with the most specific type or remove the duplicate repository", repositoryType.getName()));
+        } catch (NoSuchBeanDefinitionException ignored) {
+            if (repositoryType != NoOpBeanSaver.class) {
+                logger.info("Repository of the type [{}] could not be instantiated, continuing without persistence support...", repositoryType.getName());
+            }
+            // This should rarely happen if not using the NoOpBeanSaver, but it is possible if the repository is for example annotated with @NoRepositoryBean.
+        }
+
+        return repository;
+    }
+
+    /**
+     * Repository of a builder, or {@code null} if it has none, as resolved in the ApplicationContext with the given startup date.
+     */
+    private record ResolvedRepository<T extends Persistable>(long contextStartupDate, Repository<T, ? extends Serializable> repository) {
+    }
+
+    /**
+     * An entity of {@link #createAll(Collection)} which has been prepared, but not saved yet.
+     * @param index Position of the entity in the result
+     * @param command BuildCommand of the entity
+     * @param entity The prepared entity
+     */
+    private record PendingSave<T extends Persistable>(int index, DefaultBuildCommand<T, ?> command, T entity) {
+    }
+
+    /**
+     * FindEntityCache of a builder, or {@code null} if none has been declared, as resolved in the ApplicationContext with the given startup date.
+     */
+    private record ResolvedFindEntityCache(long contextStartupDate, FindEntityCache findEntityCache) {
+    }
 }
@@ -1,5 +1,9 @@
 package nl._42.heph;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.repository.NoRepositoryBean;
 import org.springframework.data.repository.Repository;
 
@@ -8,6 +12,7 @@ import org.springframework.data.repository.Repository;
  * This is useful if you want to build an entity for which no Spring repository is available.
  * You may specify how to handle saving of this entity in your implementation.
  * If the entity cannot be persisted at all, use {@link NoOpBeanSaver} as repository type in your BuildCommand.
+ * To insert the entity with plain JDBC instead of through JPA, use {@link JdbcBatchBeanSaver} as repository type.
  * Note: This class extends from Spring's repository class to allow usage of bounded generics in {@link AbstractBuildCommand}
  * @param <T> Entity Type
  * @param <ID> Identifier type of the entity
@@ -21,6 +26,18 @@ public interface BeanSaver<T, ID> extends Repository<T, ID> {
      * @return Persisted entity
      */
     T save(T entity);
-}
-
 
+    /**
+     * Persists the passed entities and returns them, in the same order. This is called when multiple entities are created at once
+     * (see {@link AbstractBuilder#createAll(java.util.Collection)}). By default, every entity is saved with {@link #save(Object)}.
+     * @param entities Entities to persist
+     * @return Persisted entities
+     */
+    default List<T> saveAll(Collection<T> entities) {
+        List<T> saved = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            saved.add(save(entity));
+        }
+        return saved;
+    }
+}
@@ -2,13 +2,14 @@ package nl._42.heph;
 
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 import org.springframework.data.domain.Persistable;
 
 /**
  * <p>
  *     Supplies a set of constructors for the AbstractBuilder to use. The following
- *     three constructors are expected:
+ *     constructors are expected:
  * </p>
  * <ul>
  *     <li><b>BuildCommand constructor with Entity</b>; the constructor for the BuildCommand
@@ -16,6 +17,7 @@ import org.springframework.data.domain.Persistable;
  *     <li><b>Buildcommand constructor with Entity Supplier</b> the constructor for the BuildCommand
  *     used by the base call</li>
  *     <li><b>Entity constructor</b>; the constructor for the entity itself</li>
+ *     <li><b>Entity copier</b>; creates a new entity with the state of another, used by the copy call</li>
  * </ul>
  * @param <T> type of the entity, must a be Persistable
  * @param <BC> type of the BuildCommand that will be an inner class of the Builder
@@ -28,6 +30,8 @@ class BuilderConstructors<T extends Persistable, BC extends AbstractBuildCommand
     private final Function<Supplier<T>, BC> constructorTakingSupplier;
     /** the constructor for the entity itself */
     private final Supplier<T> entityConstructor;
+    /** the copier of the entity used by the copy call */
+    private final UnaryOperator<T> entityCopier;
 
     /**
      * During construction, all functions are passed. The AbstractBuilder uses these
@@ -35,14 +39,17 @@ class BuilderConstructors<T extends Persistable, BC extends AbstractBuildCommand
      * @param constructorTakingEntity BuildCommand constructor Function taking the entity
      * @param constructorTakingSupplier BuildCommand constructor Function taking the entity Supplier
      * @param entityConstructor Entity constructor
+     * @param entityCopier Entity copier
      */
     BuilderConstructors(
             Function<T, BC> constructorTakingEntity,
             Function<Supplier<T>, BC> constructorTakingSupplier,
-            Supplier<T> entityConstructor) {
+            Supplier<T> entityConstructor,
+            UnaryOperator<T> entityCopier) {
         this.constructorTakingEntity = constructorTakingEntity;
         this.constructorTakingSupplier = constructorTakingSupplier;
         this.entityConstructor = entityConstructor;
+        this.entityCopier = entityCopier;
     }
 
     Function<T, BC> getConstructorTakingEntity() {
@@ -56,4 +63,8 @@ class BuilderConstructors<T extends Persistable, BC extends AbstractBuildCommand
     Supplier<T> getEntityConstructor() {
         return entityConstructor;
     }
+
+    UnaryOperator<T> getEntityCopier() {
+        return entityCopier;
+    }
 }
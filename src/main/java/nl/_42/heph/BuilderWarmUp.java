@@ -0,0 +1,113 @@
+package nl._42.heph;
+
+import static java.lang.String.format;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+
+/**
+ * <p>
+ *     Prepares all builders in the ApplicationContext as soon as all singletons have been created, instead of on their first use.
+ *     This moves the generation of the BuildCommand implementations, the compilation of field accessors and the repository lookups
+ *     to the startup of the ApplicationContext, and reports invalid "with" methods before any test runs.
+ * </p>
+ * <p>
+ *     The warm-up is opt-in. To enable it, declare it as a bean in the (test) configuration:
+ * </p>
+ * <pre>
+ * &#64;Bean
+ * public BuilderWarmUp builderWarmUp() {
+ *     return new BuilderWarmUp(true);
+ * }
+ * </pre>
+ */
+public class BuilderWarmUp implements SmartInitializingSingleton, ApplicationContextAware {
+
+    private static final Logger logger = LoggerFactory.getLogger(BuilderWarmUp.class);
+
+    /** Whether the builders are warmed up in parallel */
+    private final boolean parallel;
+
+    private ApplicationContext applicationContext;
+
+    /** Time taken by the last warm-up */
+    private Duration duration;
+
+    /**
+     * Creates a warm-up which prepares the builders one by one.
+     */
+    public BuilderWarmUp() {
+        this(false);
+    }
+
+    /**
+     * @param parallel Whether the builders must be prepared in parallel, using the common fork-join pool
+     */
+    public BuilderWarmUp(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
+
+    /**
+     * Warms up all builders in the ApplicationContext.
+     * @throws IllegalStateException if any of the builders could not be prepared, listing all failures
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        Collection<AbstractBuilder> builders = applicationContext.getBeansOfType(AbstractBuilder.class).values();
+        long start = System.nanoTime();
+
+        List<RuntimeException> failures = Collections.synchronizedList(new ArrayList<>());
+        (parallel ? builders.parallelStream() : builders.stream()).forEach(builder -> {
+            try {
+                unwrap(builder).warmUp();
+            } catch (RuntimeException e) {
+                failures.add(new IllegalStateException(format("Could not warm up builder [%s]: %s", builder.getClass().getName(), e.getMessage()), e));
+            }
+        });
+
+        duration = Duration.ofNanos(System.nanoTime() - start);
+        if (!failures.isEmpty()) {
+            IllegalStateException exception = new IllegalStateException(failures.stream().map(Throwable::getMessage).collect(Collectors.joining("\n")));
+            failures.forEach(exception::addSuppressed);
+            throw exception;
+        }
+
+        logger.info("Warmed up {} builders in {} ms", builders.size(), duration.toMillis());
+    }
+
+    /**
+     * Returns the builder behind an AOP proxy (for example of a {@code @Transactional} builder). The proxy itself is a CGLIB subclass
+     * without the state of the builder, so warming it up would leave the actual builder untouched.
+     */
+    private static AbstractBuilder<?, ?> unwrap(AbstractBuilder<?, ?> builder) {
+        AbstractBuilder<?, ?> current = builder;
+        while (AopProxyUtils.getSingletonTarget(current) instanceof AbstractBuilder<?, ?> target) {
+            current = target;
+        }
+        return current;
+    }
+
+    /**
+     * @return Time taken by the last warm-up, or {@code null} if the builders have not been warmed up yet
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+}
@@ -2,30 +2,31 @@ package nl._42.heph;
 
 import static java.lang.String.format;
 
-import java.beans.IntrospectionException;
-import java.beans.PropertyDescriptor;
 import java.io.Serializable;
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+import nl._42.heph.generation.FieldAccessor;
+import nl._42.heph.generation.NaturalKey;
+import nl._42.heph.generation.PropertyAccessor;
+import nl._42.heph.generation.WithMethodDescriptor;
 import nl._42.heph.lazy.EntityField;
 import nl._42.heph.lazy.EntityId;
 import nl._42.heph.lazy.LazyEntity;
 import nl._42.heph.lazy.LazyEntityId;
 import nl._42.heph.lazy.LazyEntityReference;
+import nl._42.heph.lazy.ReferenceResolutionPlan;
 import nl._42.heph.lazy.Resolve;
 import nl._42.heph.lazy.ResolveStrategy;
 
@@ -33,8 +34,9 @@ import org.springframework.data.domain.Persistable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.QueryByExampleExecutor;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.data.repository.support.Repositories;
-import org.springframework.util.ReflectionUtils;
 
 /**
  * DefaultBuildCommand serves as the backing implementation for all created BuildCommands.
@@ -42,7 +44,7 @@ import org.springframework.util.ReflectionUtils;
  * @param <T> Type of the entity to build
  * @param <R> Repository class of the repository for the entity.
  */
-public class DefaultBuildCommand<T extends Persistable, R extends Repository<T, ? extends Serializable>> implements AbstractBuildCommand<T, R> {
+public class DefaultBuildCommand<T extends Persistable, R extends Repository<? extends Persistable, ? extends Serializable>> implements AbstractBuildCommand<T, R> {
 
     /** the entity which is wrapped by the BuildCommand */
     private final T entity;
@@ -59,13 +61,34 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
     /** Once we have looked up the default repository, we store it here to prevent having to lookup the repository every time it is accessed */
     private R repository;
 
+    /** Class of the builder which created this BuildCommand, used to cache its entity in the {@link FindEntityCache} */
+    private Class<?> builderClass;
+
+    /** Supplies the {@link FindEntityCache}, if this BuildCommand overrides {@link #findEntityKey(Persistable)} */
+    private Supplier<FindEntityCache> findEntityCacheSupplier;
+
+    /** Natural key of the entity, if declared with {@link FixtureKey} */
+    private NaturalKey naturalKey;
+
+    /** Key of the entity in the {@link FindEntityCache}, as determined by the last find */
+    private Object findEntityKey;
+
+    /** Resolves the lazy references concurrently, if enabled by the builder. Otherwise, they are resolved one by one. */
+    private ParallelReferenceResolution parallelReferenceResolution;
+
+    /** Assigns the identifier of a new entity before it is saved, if enabled by the builder */
+    private IdAssignment idAssignment;
+
+    /** Create chain of this BuildCommand, if it is created by {@link AbstractBuilder#createAll(Collection)}. Otherwise, the chain of the current thread is used. */
+    private ReferenceResolutionPlan referenceResolutionPlan;
+
     /**
      * all the references which need to be resolved BEFORE a findEntity is executed, eg
      * when part of said method's parameters. Ie, early resolution.
      */
-    private final List<LazyEntity> executeBeforeFind = new ArrayList<>();
+    private final Deque<LazyEntity> executeBeforeFind = new ArrayDeque<>();
     /** all the references which are solved right before creation/construction (ie, late) */
-    private final List<LazyEntity> executeBeforeCreate = new ArrayList<>();
+    private final Deque<LazyEntity> executeBeforeCreate = new ArrayDeque<>();
     /**
      * if true, states that no attempt will be made to find an already existing entity.
      * This mode is enabled when a copy or update has been called.
@@ -117,13 +140,83 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
      * Helper method for resolving references. It takes care both of the
      * before-find and the before-create batches. After references have
      * been resolved, the list will be emptied, to prevent accidental reruns.
+     * References sharing a supplier with references resolved earlier in the same create chain
+     * reuse its entity (see {@link ReferenceResolutionPlan}).
      * @param references the references that need to be resolved.
      */
-    private void resolveReferences(List<LazyEntity> references) {
-        references.forEach(LazyEntity::resolve);
+    private void resolveReferences(Collection<LazyEntity> references) {
+        if (references.isEmpty()) {
+            return;
+        }
+
+        withinCreateChain(() -> {
+            if (parallelReferenceResolution != null) {
+                parallelReferenceResolution.resolve(references);
+            } else {
+                references.forEach(LazyEntity::resolve);
+            }
+            return null;
+        });
         references.clear();
     }
 
+    /**
+     * Runs an action within the create chain of this BuildCommand, if it has been given one, or else within the chain of the current thread.
+     * @param action the action which resolves references
+     * @param <V> type of the result of the action
+     * @return the result of the action
+     */
+    private <V> V withinCreateChain(Supplier<V> action) {
+        return referenceResolutionPlan != null ? referenceResolutionPlan.within(action) : ReferenceResolutionPlan.execute(action);
+    }
+
+    /**
+     * Lets the references be resolved in the given create chain, instead of the chain of the current thread.
+     * Called by {@link AbstractBuilder#createAll(Collection)}, which creates the entities of several BuildCommands at once.
+     * @param referenceResolutionPlan the create chain to use
+     */
+    void useReferenceResolutionPlan(ReferenceResolutionPlan referenceResolutionPlan) {
+        this.referenceResolutionPlan = referenceResolutionPlan;
+    }
+
+    /**
+     * Lets the identifier of the entity be assigned before it is saved. Called by the builder if it overrides {@link AbstractBuilder#getIdAllocator()}.
+     * @param idAssignment the assignment to use
+     */
+    void useIdAssignment(IdAssignment idAssignment) {
+        this.idAssignment = idAssignment;
+    }
+
+    /**
+     * Removes the before-find references, so they can be resolved by the caller instead (see {@link ReactiveBuildCommand#createMono()}).
+     * @return the references, in the order in which they must be resolved
+     */
+    List<LazyEntity> takeBeforeFindReferences() {
+        return takeReferences(executeBeforeFind);
+    }
+
+    /**
+     * Removes the before-create references, so they can be resolved by the caller instead (see {@link ReactiveBuildCommand#createMono()}).
+     * @return the references, in the order in which they must be resolved
+     */
+    List<LazyEntity> takeBeforeCreateReferences() {
+        return takeReferences(executeBeforeCreate);
+    }
+
+    private static List<LazyEntity> takeReferences(Deque<LazyEntity> references) {
+        List<LazyEntity> taken = new ArrayList<>(references);
+        references.clear();
+        return taken;
+    }
+
+    /**
+     * Lets the lazy references be resolved concurrently. Called by the builder if it overrides {@link AbstractBuilder#getReferenceParallelism()}.
+     * @param parallelReferenceResolution the resolution to use
+     */
+    void useParallelReferenceResolution(ParallelReferenceResolution parallelReferenceResolution) {
+        this.parallelReferenceResolution = parallelReferenceResolution;
+    }
+
     /**
      * References added with this method are resolved before the find() method is called. This
      * effectively means that the entity can be part of a search query. Note that new
@@ -132,7 +225,7 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
      * @param lazyEntity the reference which needs to be resolved before a find
      */
     public void addBeforeFindReference(LazyEntity lazyEntity) {
-        executeBeforeFind.add(0, lazyEntity);
+        executeBeforeFind.addFirst(lazyEntity);
     }
 
     /**
@@ -144,7 +237,7 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
      * @param lazyEntity the reference which needs to be resolved before a construct/create
      */
     public void addBeforeCreateReference(LazyEntity lazyEntity) {
-        executeBeforeCreate.add(0, lazyEntity);
+        executeBeforeCreate.addFirst(lazyEntity);
     }
 
     /**
@@ -213,15 +306,49 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
      * in the context of tests. If, for whatever reason, this is not possible, this
      * method just has to implement a <code>return null</code>. In that case, no
      * reuse takes place.
-     * Since you are obliged to override this method, the default implementation will throw an {@link FindEntityMethodNotImplementedException}.
+     * If the natural key of the entity has been declared with {@link FixtureKey}, the default implementation finds the entity by its key.
+     * Otherwise, you are obliged to override this method, and the default implementation will throw an {@link FindEntityMethodNotImplementedException}.
      * @param entity the entity to look for
      * @return the pre-existing entity if found, or else null
      */
     public T findEntity(T entity) {
+        if (naturalKey != null) {
+            return findByNaturalKey(entity);
+        }
         throw new FindEntityMethodNotImplementedException(
                 "Please override the 'findEntity()' method in your BuildCommand interface by using a default implementation.");
     }
 
+    /**
+     * Looks up the pre-existing entities of multiple BuildCommands at once. This is called when several entities of the same type
+     * are created together (see {@link AbstractBuilder#createAll(Collection)}). The default implementation calls {@link #findEntity(Persistable)}
+     * for every entity; override it to find all entities with a single query.
+     * @param entities the entities to look for
+     * @return for every entity, at the same position, the pre-existing entity if found, or else null
+     */
+    public List<T> findEntities(List<T> entities) {
+        List<T> found = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            found.add(findEntity(entity));
+        }
+        return found;
+    }
+
+    /**
+     * Finds the entity with the same natural key, using the repository as {@link QueryByExampleExecutor}.
+     * @param entity the entity to look for
+     * @return the pre-existing entity if found, or else null
+     */
+    @SuppressWarnings("unchecked")
+    private T findByNaturalKey(T entity) {
+        R repository = getRepository();
+        if (!(repository instanceof QueryByExampleExecutor)) {
+            throw new IllegalStateException(format("Could not find entity of class [%s] by its @FixtureKey fields %s: Repository [%s] does not implement QueryByExampleExecutor. "
+                    + "Please override the 'findEntity()' method in your BuildCommand interface instead.", entity.getClass().getName(), naturalKey.getFieldNames(), repository.getClass().getName()));
+        }
+        return ((QueryByExampleExecutor<T>) repository).findOne(naturalKey.toExample(entity)).orElse(null);
+    }
+
     /**
      * Takes care to see if a pre-existing entity exists. If it does, it will be
      * returned, instead of a new one being created. Resolves all the before-find
@@ -231,14 +358,176 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
      * @return the pre-existing entity if found, or else null
      */
     public T find() {
+        if (!prepareFind()) {
+            return null;
+        }
+
+        T cached = findCachedEntity();
+        if (cached != null) {
+            return cached;
+        }
+
+        T pending = findPendingEntity();
+        if (pending != null) {
+            return pending;
+        }
+
+        T found = findEntity(getInternalEntity());
+        cacheEntity(found);
+        return found;
+    }
+
+    /**
+     * Finds the pre-existing entities of multiple BuildCommands of the same builder at once. This performs the same steps as {@link #find()}
+     * for each BuildCommand, except that the entities which are not cached are looked up with a single call to {@link #findEntities(List)}.
+     * @param commands the BuildCommands to find the entities of
+     * @param <T> Type of the entity
+     * @return for every BuildCommand, the pre-existing entity, or null
+     */
+    static <T extends Persistable> List<T> findAll(List<DefaultBuildCommand<T, ?>> commands) {
+        // The entities are saved immediately, so the entities they refer to must have been saved as well
+        FixtureSession session = FixtureSession.current();
+        if (session != null) {
+            session.flush();
+        }
+
+        List<T> found = new ArrayList<>(Collections.nCopies(commands.size(), null));
+        List<Integer> lookupIndexes = new ArrayList<>();
+        List<T> lookups = new ArrayList<>();
+
+        for (int i = 0; i < commands.size(); i++) {
+            DefaultBuildCommand<T, ?> command = commands.get(i);
+            if (command.prepareFind()) {
+                T cached = command.findCachedEntity();
+                if (cached != null) {
+                    found.set(i, cached);
+                } else {
+                    lookupIndexes.add(i);
+                    lookups.add(command.getInternalEntity());
+                }
+            }
+        }
+
+        if (lookups.isEmpty()) {
+            return found;
+        }
+
+        DefaultBuildCommand<T, ?> firstCommand = commands.get(lookupIndexes.get(0));
+        List<T> results = firstCommand.findEntities(lookups);
+        if (results == null || results.size() != lookups.size()) {
+            throw new IllegalStateException(format("Method findEntities of buildCommand [%s] must return one result for each of the %d entities, but returned %s",
+                    firstCommand.getClass().getName(), lookups.size(), results == null ? "null" : results.size() + " results"));
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            int index = lookupIndexes.get(i);
+            found.set(index, results.get(i));
+            commands.get(index).cacheEntity(results.get(i));
+        }
+        return found;
+    }
+
+    /**
+     * Resolves the before-find references and determines whether a pre-existing entity must be looked up.
+     * @return false if the entity has been rewrapped as a BuildCommand, or no repository exists
+     */
+    private boolean prepareFind() {
         resolveBeforeFindReferences();
-        if (updating) {
+        return !updating && getRepository() != null;
+    }
+
+    /**
+     * Looks up the entity in the {@link FindEntityCache}, if it has been enabled for this BuildCommand.
+     * @return the cached entity, or null
+     */
+    private T findCachedEntity() {
+        FindEntityCache findEntityCache = getFindEntityCache();
+        if (findEntityCache == null) {
+            return null;
+        }
+
+        findEntityKey = findEntityKey(getInternalEntity());
+        return findEntityKey != null ? findEntityCache.get(builderClass, findEntityKey) : null;
+    }
+
+    /**
+     * Looks up the entity among the entities which have been created within the {@link FixtureSession} of the current thread, but not saved yet.
+     * This requires the entity to have a key (see {@link #findEntityKey(Persistable)}). Otherwise, the pending entities are saved first,
+     * so findEntity can find them in the database.
+     * @return the pending entity, or null
+     */
+    private T findPendingEntity() {
+        FixtureSession session = FixtureSession.current();
+        if (session == null || session.getPendingCount() == 0) {
             return null;
         }
-        if (getRepository() == null) {
+
+        Object key = builderClass != null ? findEntityKey(getInternalEntity()) : null;
+        if (key == null) {
+            session.flush();
             return null;
         }
-        return findEntity(getInternalEntity());
+        return session.findPending(builderClass, key);
+    }
+
+    /**
+     * Returns the values of the entity which determine the result of findEntity, to cache the entity in the {@link FindEntityCache}.
+     * By default, this is the natural key of the entity (see {@link FixtureKey}). Without natural key, the entity is not cached.
+     * @param entity the entity to look for
+     * @return the values of the natural key, or null if none has been declared
+     */
+    public Object findEntityKey(T entity) {
+        return naturalKey != null ? naturalKey.valueOf(entity) : null;
+    }
+
+    /**
+     * Lets the default implementations of {@link #findEntity(Persistable)} and {@link #findEntityKey(Persistable)} use the natural key of the entity.
+     * Called by the builder if the BuildCommand interface declares a {@link FixtureKey}.
+     * @param naturalKey the natural key of the entity
+     */
+    void useNaturalKey(NaturalKey naturalKey) {
+        this.naturalKey = naturalKey;
+    }
+
+    /**
+     * @return the natural key of the entity, or null if none has been declared with {@link FixtureKey}
+     */
+    NaturalKey getNaturalKey() {
+        return naturalKey;
+    }
+
+    /**
+     * @return whether the entity has been rewrapped as a BuildCommand (by a copy or update), in which case no pre-existing entity is looked up
+     */
+    boolean isUpdating() {
+        return updating;
+    }
+
+    /**
+     * Enables the {@link FindEntityCache} for this BuildCommand. Called by the builder if the BuildCommand overrides {@link #findEntityKey(Persistable)}.
+     * @param builderClass Class of the builder which created this BuildCommand
+     * @param findEntityCacheSupplier Supplies the cache, or {@code null} if none has been declared
+     */
+    void useFindEntityCache(Class<?> builderClass, Supplier<FindEntityCache> findEntityCacheSupplier) {
+        this.builderClass = builderClass;
+        this.findEntityCacheSupplier = findEntityCacheSupplier;
+    }
+
+    private FindEntityCache getFindEntityCache() {
+        return findEntityCacheSupplier != null ? findEntityCacheSupplier.get() : null;
+    }
+
+    /**
+     * Caches an entity which has just been found or created, so the next find with the same key returns it.
+     * @param entity the found or created entity, or null
+     */
+    private void cacheEntity(T entity) {
+        if (findEntityKey != null) {
+            FindEntityCache findEntityCache = getFindEntityCache();
+            if (findEntityCache != null) {
+                findEntityCache.put(builderClass, findEntityKey, entity);
+            }
+        }
     }
 
     /**
@@ -256,7 +545,7 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
      */
     @SuppressWarnings("unchecked")
     private T save() {
-        T preProcessed = performPreProcessing(entity);
+        T preProcessed = assignId(performPreProcessing(entity));
         T saved = entity;
 
         R repository = getRepository();
@@ -264,11 +553,44 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
             saved = ((CrudRepository<T, ?>) repository).save(preProcessed);
         } else if (repository instanceof BeanSaver) {
             saved = ((BeanSaver<T, ?>) repository).save(preProcessed);
+        } else if (repository instanceof ReactiveCrudRepository) {
+            saved = ReactiveCreation.saveAndWait((ReactiveCrudRepository<T, ?>) repository, preProcessed);
         }
 
         return performPostProcessing(saved);
     }
 
+    /**
+     * First half of a save which is performed as part of a batch (see {@link AbstractBuilder#createAll(Collection)}):
+     * resolves the before-create references and calls the preProcess. The entity is not saved.
+     * @return the pre-processed entity, which must be passed to the repository
+     */
+    T prepareSave() {
+        return withinCreateChain(() -> assignId(performPreProcessing(entity)));
+    }
+
+    /**
+     * Assigns an identifier to the entity which is about to be saved, if the builder has an {@link IdAllocator}.
+     * @param entity the pre-processed entity
+     * @return the entity
+     */
+    private T assignId(T entity) {
+        if (idAssignment != null) {
+            idAssignment.assign(entity);
+        }
+        return entity;
+    }
+
+    /**
+     * Second half of a save which is performed as part of a batch: calls the postProcess on the entity returned by the repository.
+     * @param saved the entity as returned by the repository, or the prepared entity if there is no repository
+     * @return the post-processed entity
+     */
+    T completeSave(T saved) {
+        cacheEntity(saved);
+        return withinCreateChain(() -> performPostProcessing(saved));
+    }
+
     /**
      * Determines whether to use <code>save</code> if a repository is present, or
      * <code>construct</code> if not.
@@ -284,8 +606,10 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
      * @return wrapped entity with resolved references.
      */
     public T construct() {
-        resolveBeforeFindReferences();
-        return internalConstruct();
+        return ReferenceResolutionPlan.execute(() -> {
+            resolveBeforeFindReferences();
+            return internalConstruct();
+        });
     }
 
     /**
@@ -295,9 +619,27 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
      * @return the created entity
      */
     public T create() {
+        return ReferenceResolutionPlan.execute(this::findOrCreate);
+    }
+
+    /**
+     * Performs the create, within the create chain of the current thread.
+     * @return the found or created entity
+     */
+    private T findOrCreate() {
         T entity = find();
         if (entity == null) {
+            FixtureSession session = FixtureSession.current();
+            if (session != null && getRepository() != null && !updating) {
+                // The entity is saved (and post-processed) when the session is flushed. The key is determined at the same point as in find().
+                Object key = builderClass != null ? findEntityKey(getInternalEntity()) : null;
+                entity = prepareSave();
+                session.register(this, builderClass, key, entity);
+                return entity;
+            }
+
             entity = constructOrSave();
+            cacheEntity(entity);
         }
         return entity;
     }
@@ -327,16 +669,47 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
      */
     public AbstractBuildCommand<T, R> withValue(String fieldName, Object fieldValue, Resolve resolveAnnotation, EntityField entityFieldAnnotation,
             EntityId entityIdAnnotation) {
-        Field field = getAccessibleField(fieldName, entityFieldAnnotation);
+        // A supplied value can be handled in 2 ways: before persisting (beforeCreate) or before initial lookup (beforeFind).
+        // We use the Resolve annotation to determine this (default if absent: beforeCreate).
+        ResolveStrategy resolveStrategy = resolveAnnotation != null ? resolveAnnotation.value() : ResolveStrategy.BEFORE_CREATE;
+        String realFieldName = entityFieldAnnotation != null ? entityFieldAnnotation.value() : fieldName;
+        return withValue(realFieldName, fieldValue, resolveStrategy, entityIdAnnotation != null);
+    }
+
+    /**
+     * Applies a dynamic value to the entity stored within this instance. Unlike {@link #withValue(String, Object, Resolve, EntityField, EntityId)},
+     * the instructions of the annotations must already have been resolved. This variant is used by generated BuildCommand implementations.
+     * @param fieldName Name of the field to set (the value of the {@link EntityField} annotation, if present)
+     * @param fieldValue Value to set in the field
+     * @param resolveStrategy Moment to resolve a {@link LazyEntity}, see {@link Resolve}
+     * @param entityId Whether the database ID of the fieldValue must be used instead of the actual object, see {@link EntityId}
+     * @return Current instance of the buildCommand, with the value applied to the builder's entity.
+     */
+    public AbstractBuildCommand<T, R> withValue(String fieldName, Object fieldValue, ResolveStrategy resolveStrategy, boolean entityId) {
+        return applyValue(getFieldAccessor(fieldName), fieldValue, resolveStrategy, entityId);
+    }
 
+    /**
+     * Applies a dynamic value to the entity stored within this instance, as described by the {@link WithMethodDescriptor} of the called "with" method.
+     * This variant is used by the BuildCommand proxies, so the field and the annotations don't need to be resolved for every call.
+     * @param descriptor Descriptor of the called "with" method
+     * @param fieldValue Value to set in the field
+     * @return Current instance of the buildCommand, with the value applied to the builder's entity.
+     */
+    public AbstractBuildCommand<T, R> withValue(WithMethodDescriptor descriptor, Object fieldValue) {
+        FieldAccessor field = descriptor.getAccessor() != null ? descriptor.getAccessor() : getFieldAccessor(descriptor.getFieldName());
+        return applyValue(field, fieldValue, descriptor.getResolveStrategy(), descriptor.isEntityId());
+    }
+
+    private AbstractBuildCommand<T, R> applyValue(FieldAccessor field, Object fieldValue, ResolveStrategy resolveStrategy, boolean entityId) {
         if (fieldValue != null && fieldValue.getClass().isArray()) {
             return setArrayValue(field, fieldValue);
         } else if (fieldValue instanceof Collection) {
             return setCollectionValue(field, (Collection) fieldValue);
         } else if (fieldValue instanceof Supplier) {
-            return handleSuppliedValue(field, (Supplier) fieldValue, resolveAnnotation, entityIdAnnotation);
+            return handleSuppliedValue(field, (Supplier) fieldValue, resolveStrategy, entityId);
         } else {
-            return setOtherValue(field, fieldValue, entityIdAnnotation);
+            return setOtherValue(field, fieldValue, entityId);
         }
     }
 
@@ -350,33 +723,33 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
      * @return Current instance of the buildCommand, with the value applied to the builder's entity.
      */
     @SuppressWarnings("unchecked")
-    private AbstractBuildCommand<T, R> setArrayValue(Field field, Object inputValues) {
+    private AbstractBuildCommand<T, R> setArrayValue(FieldAccessor field, Object inputValues) {
         Class<?> targetType = field.getType();
 
         // Array -> Array
         if (targetType.isArray()) {
             // Primitive-type arrays are not an instance of Object[], so therefore we see the array as a regular Object.
-            Object destinationArray = ReflectionUtils.getField(field, entity);
+            Object destinationArray = field.get(entity);
 
             if (destinationArray == null) {
                 destinationArray = copyArray(inputValues, Array.getLength(inputValues));
-                ReflectionUtils.setField(field, entity, destinationArray);
+                field.set(entity, destinationArray);
             } else {
                 int originalLength = Array.getLength(destinationArray);
                 int inputLength = Array.getLength(inputValues);
                 destinationArray = copyArray(destinationArray,
                         originalLength + inputLength); // Increase the size of the new array to match current + new values in total.
-                ReflectionUtils.setField(field, entity, destinationArray);
+                field.set(entity, destinationArray);
                 //noinspection SuspiciousSystemArraycopy method can only be called with array class and destination will always be some sort of array.
                 System.arraycopy(inputValues, 0, destinationArray, originalLength,
                         inputLength); // Native-copy the passed array to the end of the already-existing array.
             }
         } else if (Collection.class.isAssignableFrom(targetType)) { // Array -> Collection
-            Collection current = (Collection) ReflectionUtils.getField(field, entity);
+            Collection current = (Collection) field.get(entity);
 
             if (current == null) {
                 current = createCollection(targetType); // Create empty collection of the right type
-                ReflectionUtils.setField(field, entity, current);
+                field.set(entity, current);
             }
 
             if (inputValues instanceof Object[]) {
@@ -386,7 +759,7 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
             }
         } else {
             throw new IllegalArgumentException(
-                    format("Attempted to set array value into non-array / collection field [%s] of [%s]", field.getName(), entity.getClass().getName()));
+                    format("Attempted to set array value into non-array / collection field [%s] of [%s]", field.getField().getName(), entity.getClass().getName()));
         }
 
         return this;
@@ -402,31 +775,31 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
      * @return Current instance of the buildCommand, with the value applied to the builder's entity.
      */
     @SuppressWarnings("unchecked")
-    private AbstractBuildCommand<T, R> setCollectionValue(Field field, Collection inputValues) {
+    private AbstractBuildCommand<T, R> setCollectionValue(FieldAccessor field, Collection inputValues) {
         Class<?> targetType = field.getType();
 
         // Collection -> Array
         if (targetType.isArray()) {
             setArrayValue(field, inputValues);
         } else if (Collection.class.isAssignableFrom(targetType)) { // Collection -> Collection
-            Collection current = (Collection) ReflectionUtils.getField(field, entity);
+            Collection current = (Collection) field.get(entity);
 
             if (current == null) {
                 current = createCollection(targetType); // Create empty collection of the right type
-                ReflectionUtils.setField(field, entity, current);
+                field.set(entity, current);
             }
 
             current.addAll(inputValues);
         } else {
             throw new IllegalArgumentException(
-                    format("Attempted to set collection value into non-array / collection field [%s] of [%s]", field.getName(), entity.getClass().getName()));
+                    format("Attempted to set collection value into non-array / collection field [%s] of [%s]", field.getField().getName(), entity.getClass().getName()));
         }
 
         return this;
     }
 
-    private void setArrayValue(Field field, Collection inputValues) {
-        Object[] originalValues = (Object[]) ReflectionUtils.getField(field, entity);
+    private void setArrayValue(FieldAccessor field, Collection inputValues) {
+        Object[] originalValues = (Object[]) field.get(entity);
 
         int arraySize = getArraySize(inputValues, originalValues);
 
@@ -447,7 +820,7 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
             i++;
         }
 
-        ReflectionUtils.setField(field, entity, newArray);
+        field.set(entity, newArray);
     }
 
     private int getArraySize(Collection inputValues, Object[] destinationArray) {
@@ -466,25 +839,17 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
      * - Process value before lookup (destination is an identifier)
      * @param field Field to place the value in (either points to a Hibernate-mapped object or to an identifier)
      * @param suppliedValue Value to place in the field (always an object)
-     * @param resolveAnnotation Optional instruction to resolve the value either before lookup or before creation (default: before creation)
-     * @param entityIdAnnotation Optional instruction to resolve only the ID of the value, not the value itself.
+     * @param resolveStrategy Instruction to resolve the value either before lookup or before creation
+     * @param entityId Instruction to resolve only the ID of the value, not the value itself.
      * @return Current instance of the buildCommand, with the value applied to the builder's entity.
      */
-    private AbstractBuildCommand<T, R> handleSuppliedValue(Field field, Supplier<?> suppliedValue, Resolve resolveAnnotation, EntityId entityIdAnnotation) {
-        // A supplied value can be handled in 2 ways: before persisting (beforeCreate) or before initial lookup (beforeFind).
-        // We use the Resolve annotation to determine this (default if absent: beforeCreate).
-        ResolveStrategy strategy = ResolveStrategy.BEFORE_CREATE;
-
-        if (resolveAnnotation != null) {
-            strategy = resolveAnnotation.value();
-        }
-
-        switch (strategy) {
+    private AbstractBuildCommand<T, R> handleSuppliedValue(FieldAccessor field, Supplier<?> suppliedValue, ResolveStrategy resolveStrategy, boolean entityId) {
+        switch (resolveStrategy) {
         case BEFORE_CREATE:
-            addBeforeCreateReference(buildLazyEntity(field, suppliedValue, entityIdAnnotation));
+            addBeforeCreateReference(buildLazyEntity(field, suppliedValue, entityId));
             break;
         case BEFORE_FIND:
-            addBeforeFindReference(buildLazyEntity(field, suppliedValue, entityIdAnnotation));
+            addBeforeFindReference(buildLazyEntity(field, suppliedValue, entityId));
             break;
         }
 
@@ -496,40 +861,32 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
      * This is done by simply copying the passed value to the field of the class.
      * @param field Field to place the value in
      * @param fieldValue New value to place in the field
+     * @param entityId Whether the ID of the passed value must be placed in the field, rather than the value itself
      * @return Current instance of the buildCommand, with the value applied to the builder's entity.
      */
-    private AbstractBuildCommand<T, R> setOtherValue(Field field, Object fieldValue, EntityId entityIdAnnotation) {
-        if (entityIdAnnotation == null || !(fieldValue instanceof Persistable)) {
-            ReflectionUtils.setField(field, entity, fieldValue);
+    private AbstractBuildCommand<T, R> setOtherValue(FieldAccessor field, Object fieldValue, boolean entityId) {
+        if (!entityId || !(fieldValue instanceof Persistable)) {
+            field.set(entity, fieldValue);
         } else {
-            ReflectionUtils.setField(field, entity, ((Persistable) fieldValue).getId());
+            field.set(entity, ((Persistable) fieldValue).getId());
         }
 
         return this;
     }
 
     /**
-     * Returns an accessible field, which can always be modified
-     * @param defaultFieldName Determined name of the field to obtain of the entity class
-     * @param entityFieldAnnotation Optional annotation to specify a different name of the field to obtain
-     * @return Accessible field for the given name. If a field with this name does not exist, an {@link IllegalArgumentException} is thrown.
+     * Returns the accessor of a field, which can always be read and modified
+     * @param realFieldName Name of the field to obtain of the entity class
+     * @return Accessor for the given field name. If a field with this name does not exist, an {@link IllegalArgumentException} is thrown.
      */
-    private Field getAccessibleField(String defaultFieldName, EntityField entityFieldAnnotation) {
-        String realFieldName;
-        if (entityFieldAnnotation != null) {
-            realFieldName = entityFieldAnnotation.value();
-        } else {
-            realFieldName = defaultFieldName;
-        }
-
-        Field field = ReflectionUtils.findField(entity.getClass(), realFieldName);
+    private FieldAccessor getFieldAccessor(String realFieldName) {
+        FieldAccessor field = FieldAccessor.forField(entity.getClass(), realFieldName);
 
         if (field == null) {
             throw new IllegalArgumentException(format("Could not set value for entity class [%s]: Field [%s] is not present in the class or its superclasses!",
                     entity.getClass().getName(), realFieldName));
         }
 
-        ReflectionUtils.makeAccessible(field);
         return field;
     }
 
@@ -538,55 +895,31 @@ public class DefaultBuildCommand<T extends Persistable, R extends Repository<T,
      * This can either be a {@link LazyEntityReference}, or a {@link LazyEntityId}, depending on the entityId annotation being present.
      * @param destinationField Field to place the value in
      * @param suppliedValue Value to be placed in the field
-     * @param entityIdAnnotation Optional annotation to indicate we want to return a {@link LazyEntityId}. The default is {@link LazyEntityReference}.
+     * @param entityId Whether we want to return a {@link LazyEntityId}. The default is {@link LazyEntityReference}.
      * @return LazyEntity of the right type
      */
     @SuppressWarnings("unchecked")
-    private LazyEntity buildLazyEntity(Field destinationField, Supplier<?> suppliedValue, EntityId entityIdAnnotation) {
-        PropertyDescriptor pd;
-
-        try {
-            pd = new PropertyDescriptor(destinationField.getName(), entity.getClass());
-        } catch (IntrospectionException e) {
-            throw new IllegalStateException(format("Failed to apply lazy value to [%s]: ", entity.getClass().getName()), e);
-        }
-
-        // We look up the getter and the setter of the field, and pass these to the LazyEntity instance so it can safely set the values to the entity.
-        Supplier<?> valueGetter = null;
-        Consumer<?> valueSetter = null;
-
-        // We look up the getter and the setter of the field, and pass these to the LazyEntity instance so it can safely set the values to the entity.
-        if (pd.getReadMethod() != null) {
-            valueGetter = () -> invokeOnEntityWithHandledExceptions(pd.getReadMethod(),
-                    () -> "Failed to call method [%s] to get value from object of class [%s]");
-        }
-
-        if (pd.getWriteMethod() != null) {
-            valueSetter = (value) -> invokeOnEntityWithHandledExceptions(pd.getWriteMethod(),
-                    () -> "Failed to call method [%s] to apply value to object of class [%s]", value);
-        }
+    private LazyEntity buildLazyEntity(FieldAccessor destinationField, Supplier<?> suppliedValue, boolean entityId) {
+        // The LazyEntity instance uses the getter and the setter of the field, so it can safely set the values to the entity.
+        PropertyAccessor accessor = PropertyAccessor.forProperty(entity.getClass(), destinationField.getField().getName());
 
         // If an entityId annotation is present, then we map the destination field to the ID of the passed object.
-        if (entityIdAnnotation != null) {
-            return new LazyEntityId<>((Supplier) valueGetter, valueSetter, (Supplier) suppliedValue);
+        if (entityId) {
+            return new LazyEntityId<>(entity, accessor, (Supplier) suppliedValue, DefaultBuildCommand::savePending);
         } else {
-            //noinspection CastCanBeRemovedNarrowingVariableType -> Not possible, would supply incorrect type if entity has EntityId and destination field is not Persistable.
-            return new LazyEntityReference<>((Supplier<Persistable>) valueGetter, (Consumer<Persistable>) valueSetter, (Supplier<Persistable>) suppliedValue);
+            return new LazyEntityReference<>(entity, accessor, (Supplier<Persistable>) suppliedValue);
         }
     }
 
     /**
-     * Invokes the passed method on the entity. As this is a dangerous operation, it is required to specify a formatted exception message to explain what has gone wrong.
-     * @param methodToInvoke Method to invoke on the entity class
-     * @param exceptionMessage Exception message if the method cannot be invoked using the given parameters
-     * @param args Parameters of the method.
-     * @return Result of the invoked method, or {@code null} if it is a void method.
+     * Saves the entity if it has been created within the {@link FixtureSession} of the current thread, but has not been saved yet,
+     * as it only gets its ID when it is saved.
+     * @param entity the entity whose ID is about to be referred to
      */
-    private Object invokeOnEntityWithHandledExceptions(Method methodToInvoke, Supplier<String> exceptionMessage, Object... args) {
-        try {
-            return methodToInvoke.invoke(entity, args);
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-            throw new IllegalArgumentException(format(exceptionMessage.get(), methodToInvoke.getName(), entity.getClass().getName()), e);
+    private static void savePending(Persistable entity) {
+        FixtureSession session = FixtureSession.current();
+        if (session != null && session.isPending(entity)) {
+            session.flush();
         }
     }
 
@@ -0,0 +1,122 @@
+package nl._42.heph;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * <p>
+ *     Remembers the entities found or created by the builders within the current transaction, so repeated {@code create()} calls
+ *     of the same fixture return the entity without calling {@code findEntity} (and thereby querying the database) again.
+ *     The entities are cached by builder and by the key returned from {@link AbstractBuildCommand#findEntityKey}, which must
+ *     contain all values that {@code findEntity} depends on. Only BuildCommands which override {@code findEntityKey} are cached.
+ *     The cache of a transaction is discarded when the transaction commits or rolls back. Outside of a transaction, nothing is cached.
+ * </p>
+ * <p>
+ *     The cache is opt-in. To enable it, declare it as a bean in the (test) configuration:
+ * </p>
+ * <pre>
+ * &#64;Bean
+ * public FindEntityCache findEntityCache() {
+ *     return new FindEntityCache();
+ * }
+ * </pre>
+ */
+public class FindEntityCache {
+
+    /** Number of lookups answered from the cache */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** Number of lookups which had to call findEntity */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Returns the cached entity of a builder. Lookups within a transaction are counted as hit or miss.
+     * @param builderClass Class of the builder which builds the entity
+     * @param key Values of the entity which determine the result of findEntity
+     * @param <T> Type of the entity
+     * @return the cached entity, or {@code null} if it has not been cached or no transaction is active
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Class<?> builderClass, Object key) {
+        Map<CacheKey, Object> entities = getEntities();
+        if (entities == null) {
+            return null;
+        }
+
+        T entity = (T) entities.get(new CacheKey(builderClass, key));
+        if (entity != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return entity;
+    }
+
+    /**
+     * Caches an entity which has just been found or created, so it is returned by the next lookup with the same key.
+     * Nothing is cached if no transaction is active.
+     * @param builderClass Class of the builder which built the entity
+     * @param key Values of the entity which determine the result of findEntity
+     * @param entity The found or created entity
+     */
+    public void put(Class<?> builderClass, Object key, Object entity) {
+        Map<CacheKey, Object> entities = getEntities();
+        if (entities != null && entity != null) {
+            entities.put(new CacheKey(builderClass, key), entity);
+        }
+    }
+
+    /**
+     * Returns the entities cached in the current transaction. The first time this is called within a transaction,
+     * an empty cache is bound to it, which is unbound again when the transaction completes.
+     * @return the cached entities, or {@code null} if no transaction is active
+     */
+    @SuppressWarnings("unchecked")
+    private Map<CacheKey, Object> getEntities() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+
+        Map<CacheKey, Object> entities = (Map<CacheKey, Object>) TransactionSynchronizationManager.getResource(this);
+        if (entities == null) {
+            entities = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, entities);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(FindEntityCache.this);
+                }
+            });
+        }
+        return entities;
+    }
+
+    /**
+     * @return Number of lookups answered from the cache since the creation of the cache, or the last {@link #resetCounters()}
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of lookups which had to call findEntity since the creation of the cache, or the last {@link #resetCounters()}
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Sets the hit and miss counters back to zero.
+     */
+    public void resetCounters() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    private record CacheKey(Class<?> builderClass, Object key) {
+    }
+}
@@ -0,0 +1,25 @@
+package nl._42.heph;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ *     Declares the natural key of an entity: the field(s) by which an existing entity is found. Place the annotation on the "with" methods
+ *     of a BuildCommand interface, or on the fields of the entity. If multiple fields are annotated, the entity is found by all of them.
+ * </p>
+ * <p>
+ *     A BuildCommand with a natural key does not need to override {@code findEntity}: the entity is looked up through the
+ *     {@link org.springframework.data.repository.query.QueryByExampleExecutor} of its repository (which every JpaRepository is).
+ *     The natural key also enables the {@link FindEntityCache}, so an entity which was found or created before within the same transaction is
+ *     returned from memory.
+ * </p>
+ */
+@Target({ ElementType.METHOD, ElementType.FIELD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface FixtureKey {
+}
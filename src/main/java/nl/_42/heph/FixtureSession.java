@@ -0,0 +1,178 @@
+package nl._42.heph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.data.domain.Persistable;
+import org.springframework.data.repository.Repository;
+
+/**
+ * <p>
+ *     Defers the saves of the builders until the session is flushed. While a session is open on the current thread, {@code create()} only
+ *     registers the new entity (after its {@code preProcess}) and returns it without saving it. Entities which are created again before the flush
+ *     are found among the pending entities in memory, by the key returned from {@link AbstractBuildCommand#findEntityKey} (such as the {@link FixtureKey}).
+ *     The pending entities are saved in the order in which they were created when {@link #flush()} is called, or when the session is closed.
+ *     Consecutive entities of the same repository are saved with a single {@code saveAll} call. Their {@code postProcess} is called after they are saved.
+ * </p>
+ * <p>
+ *     The session flushes by itself when the pending entities must be visible in the database: before {@code findEntity} is called for an entity without key,
+ *     before entities are created with {@link AbstractBuilder#createAll(java.util.Collection)}, and when the id of a pending entity is needed
+ *     (see {@link nl._42.heph.lazy.EntityId}). Open the session within a transaction to save all entities with a single flush of the persistence context:
+ * </p>
+ * <pre>
+ * try (FixtureSession session = FixtureSession.open()) {
+ *     organizationFixtures.banana();
+ *     organizationFixtures.pie();
+ * }
+ * </pre>
+ */
+public final class FixtureSession implements AutoCloseable {
+
+    private static final ThreadLocal<FixtureSession> CURRENT = new ThreadLocal<>();
+
+    /** Entities which have been created but not saved, in order of creation */
+    private final List<PendingEntity<?>> pendingEntities = new ArrayList<>();
+
+    /** The pending entities with a key, by builder and key */
+    private final Map<PendingKey, Object> pendingEntitiesByKey = new HashMap<>();
+
+    /** The pending entities, by identity */
+    private final Set<Object> pendingEntitySet = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /** Number of flushes which saved at least one entity */
+    private int flushCount;
+
+    private FixtureSession() {
+    }
+
+    /**
+     * Opens a session on the current thread. The session must be closed on the same thread.
+     * @return the session. If a session is already open on the current thread, an {@link IllegalStateException} is thrown.
+     */
+    public static FixtureSession open() {
+        if (CURRENT.get() != null) {
+            throw new IllegalStateException("A FixtureSession is already open on the current thread");
+        }
+        FixtureSession session = new FixtureSession();
+        CURRENT.set(session);
+        return session;
+    }
+
+    /**
+     * @return the session which is open on the current thread, or {@code null}
+     */
+    public static FixtureSession current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Registers an entity which has been created, to be saved by the next flush.
+     * @param command BuildCommand of the entity, which saves it and calls its postProcess
+     * @param builderClass Class of the builder of the entity, or {@code null} if the entity has no key
+     * @param key Key of the entity (see {@link AbstractBuildCommand#findEntityKey}), or {@code null}
+     * @param entity The pre-processed entity
+     * @param <T> Type of the entity
+     */
+    <T extends Persistable> void register(DefaultBuildCommand<T, ?> command, Class<?> builderClass, Object key, T entity) {
+        pendingEntities.add(new PendingEntity<>(command, entity));
+        pendingEntitySet.add(entity);
+        if (key != null) {
+            pendingEntitiesByKey.put(new PendingKey(builderClass, key), entity);
+        }
+    }
+
+    /**
+     * Returns the pending entity of a builder with the given key.
+     * @param builderClass Class of the builder of the entity
+     * @param key Key of the entity
+     * @param <T> Type of the entity
+     * @return the pending entity, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    <T> T findPending(Class<?> builderClass, Object key) {
+        return (T) pendingEntitiesByKey.get(new PendingKey(builderClass, key));
+    }
+
+    /**
+     * @param entity Entity to check
+     * @return Whether the entity has been created within this session, but has not been saved yet
+     */
+    public boolean isPending(Object entity) {
+        return pendingEntitySet.contains(entity);
+    }
+
+    /**
+     * @return Number of entities which have been created but not saved yet
+     */
+    public int getPendingCount() {
+        return pendingEntities.size();
+    }
+
+    /**
+     * @return Number of flushes which saved at least one entity
+     */
+    public int getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * Saves the pending entities in the order in which they were created, and calls their postProcess.
+     * Entities created by a postProcess are saved by the same flush.
+     */
+    public void flush() {
+        if (pendingEntities.isEmpty()) {
+            return;
+        }
+        flushCount++;
+
+        while (!pendingEntities.isEmpty()) {
+            List<PendingEntity<?>> flushed = new ArrayList<>(pendingEntities);
+            pendingEntities.clear();
+            pendingEntitiesByKey.clear();
+            pendingEntitySet.clear();
+
+            int start = 0;
+            while (start < flushed.size()) {
+                Repository<?, ?> repository = flushed.get(start).command().getRepository();
+                int end = start + 1;
+                while (end < flushed.size() && flushed.get(end).command().getRepository() == repository) {
+                    end++;
+                }
+                save(repository, flushed.subList(start, end));
+                start = end;
+            }
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void save(Repository<?, ?> repository, List<PendingEntity<?>> pending) {
+        List entities = pending.stream().map(PendingEntity::entity).toList();
+        List saved = AbstractBuilder.saveAll(repository, entities);
+        for (int i = 0; i < pending.size(); i++) {
+            ((DefaultBuildCommand) pending.get(i).command()).completeSave((Persistable) saved.get(i));
+        }
+    }
+
+    /**
+     * Flushes the pending entities and closes the session. If the flush fails, the session is closed regardless.
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    private record PendingEntity<T extends Persistable>(DefaultBuildCommand<T, ?> command, T entity) {
+    }
+
+    private record PendingKey(Class<?> builderClass, Object key) {
+    }
+}
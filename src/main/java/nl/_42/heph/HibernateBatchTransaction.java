@@ -0,0 +1,53 @@
+package nl._42.heph;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.Session;
+import org.springframework.context.ApplicationContext;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the saves of {@link AbstractBuilder#createAll(java.util.Collection)} in a single transaction, with JDBC batching enabled on its Hibernate session.
+ * This class refers to Hibernate and Spring ORM, so it may only be used when both are on the classpath.
+ */
+final class HibernateBatchTransaction {
+
+    private HibernateBatchTransaction() {
+    }
+
+    /**
+     * Runs the saves. If an outer transaction is active, the saves join it. The inserts are flushed before the original batch size of the session is restored,
+     * so they are batched regardless of when the transaction commits. Without a transaction manager or Hibernate session, the saves are run as-is.
+     * @param applicationContext ApplicationContext containing the EntityManagerFactory and the transaction manager
+     * @param batchSize Number of statements to send to the database at once
+     * @param saves Saves to run
+     */
+    static void execute(ApplicationContext applicationContext, int batchSize, Runnable saves) {
+        PlatformTransactionManager transactionManager = applicationContext.getBeanProvider(PlatformTransactionManager.class).getIfUnique();
+        EntityManagerFactory entityManagerFactory = applicationContext.getBeanProvider(EntityManagerFactory.class).getIfUnique();
+        if (transactionManager == null || entityManagerFactory == null) {
+            saves.run();
+            return;
+        }
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+            if (entityManager == null || !(entityManager.getDelegate() instanceof Session session)) {
+                saves.run();
+                return;
+            }
+
+            Integer previousBatchSize = session.getJdbcBatchSize();
+            session.setJdbcBatchSize(batchSize);
+            try {
+                saves.run();
+                entityManager.flush();
+            } finally {
+                session.setJdbcBatchSize(previousBatchSize);
+            }
+        });
+    }
+}
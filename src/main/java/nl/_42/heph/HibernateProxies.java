@@ -0,0 +1,24 @@
+package nl._42.heph;
+
+import org.hibernate.Hibernate;
+
+/**
+ * Unwraps lazy loaded entities for {@link AbstractBuilder#copy(org.springframework.data.domain.Persistable)}.
+ * This class refers to Hibernate, so it may only be used when Hibernate is on the classpath.
+ */
+final class HibernateProxies {
+
+    private HibernateProxies() {
+    }
+
+    /**
+     * Returns the entity behind a Hibernate proxy, initializing it if needed.
+     * @param entity the entity, which may be a proxy
+     * @param <T> Type of the entity
+     * @return the actual entity, or the entity itself if it is not a proxy
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T unproxy(T entity) {
+        return (T) Hibernate.unproxy(entity);
+    }
+}
@@ -0,0 +1,26 @@
+package nl._42.heph;
+
+/**
+ * <p>
+ *     Assigns the identifiers of new entities before they are saved, instead of letting the database generate them while inserting.
+ *     Without identity columns or a sequence call per entity, the inserts of many entities can be sent in JDBC batches.
+ *     Builders opt in by overriding {@link AbstractBuilder#getIdAllocator()}.
+ * </p>
+ * <p>
+ *     Only use it for entities with assigned identifiers (without {@code @GeneratedValue}), whose {@link org.springframework.data.domain.Persistable#isNew()}
+ *     does not depend on the identifier alone. Otherwise, the entity would be merged instead of inserted.
+ *     Heph verifies that the entity still reports to be new after its identifier has been assigned.
+ * </p>
+ * @see SequenceIdAllocator
+ * @see RangeIdAllocator
+ */
+public interface IdAllocator {
+
+    /**
+     * Reserves the next identifier for an entity.
+     * @param entityClass Class of the entity
+     * @return the identifier, which has not been handed out before for this class
+     */
+    long nextId(Class<?> entityClass);
+
+}
@@ -0,0 +1,74 @@
+package nl._42.heph;
+
+import static java.lang.String.format;
+
+import java.lang.reflect.Field;
+
+import nl._42.heph.generation.EntityCopier;
+import nl._42.heph.generation.FieldAccessor;
+
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Assigns identifiers from an {@link IdAllocator} to the new entities of a builder, right before they are saved.
+ */
+final class IdAssignment {
+
+    private final IdAllocator idAllocator;
+
+    private final Class<?> entityClass;
+
+    private final FieldAccessor idField;
+
+    /**
+     * @param idAllocator Allocator of the identifiers
+     * @param entityClass Class of the entities of the builder
+     */
+    IdAssignment(IdAllocator idAllocator, Class<?> entityClass) {
+        this.idAllocator = idAllocator;
+        this.entityClass = entityClass;
+
+        // The same identifier field as the one left out when entities are copied: the field annotated with @Id, or else the field named "id"
+        Field field = EntityCopier.forClass(entityClass).getIdField();
+        if (field == null) {
+            throw new IllegalStateException(format("Entity [%s] has no identifier field to assign identifiers to", entityClass.getName()));
+        }
+        this.idField = FieldAccessor.forField(entityClass, field.getName());
+
+        Class<?> idType = idField.getType();
+        if (idType != Long.class && idType != long.class && idType != Integer.class && idType != int.class) {
+            throw new IllegalStateException(format("Identifier of entity [%s] is of type [%s]. Only Long and Integer identifiers can be allocated",
+                    entityClass.getName(), idType.getName()));
+        }
+    }
+
+    /**
+     * Assigns the next identifier to the entity, unless it already has one. A primitive identifier of {@code 0} counts as unassigned, like Hibernate
+     * considers it unsaved.
+     * @param entity the entity which is about to be saved
+     */
+    void assign(Persistable<?> entity) {
+        if (hasId(entity)) {
+            return;
+        }
+
+        long id = idAllocator.nextId(entityClass);
+        Class<?> idType = idField.getType();
+        idField.set(entity, idType == Long.class || idType == long.class ? (Object) id : (Object) Math.toIntExact(id));
+
+        // A repository would merge the entity, instead of inserting it
+        if (!entity.isNew()) {
+            throw new IllegalStateException(format("Entity [%s] no longer reports to be new after its identifier has been assigned. "
+                    + "Please let isNew() depend on whether the entity has been persisted (for example by a transient flag set on @PostPersist and @PostLoad) instead of on its identifier",
+                    entityClass.getName()));
+        }
+    }
+
+    private boolean hasId(Persistable<?> entity) {
+        Object id = idField.get(entity);
+        if (idField.getType().isPrimitive()) {
+            return ((Number) id).longValue() != 0;
+        }
+        return id != null;
+    }
+}
@@ -0,0 +1,265 @@
+package nl._42.heph;
+
+import static java.lang.String.format;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.internal.Versioning;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.metamodel.mapping.AttributeMapping;
+import org.hibernate.metamodel.mapping.JdbcMapping;
+import org.hibernate.metamodel.mapping.ModelPart;
+import org.hibernate.metamodel.mapping.PluralAttributeMapping;
+import org.hibernate.metamodel.mapping.SelectableMapping;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.Persistable;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+
+/**
+ * <p>
+ *     {@link BeanSaver} which inserts entities with plain JDBC, bypassing the persistence context of JPA. This avoids the cost of dirty checking,
+ *     a growing persistence context and merging, which makes it suitable for fixtures which are created in large numbers.
+ *     The insert statement is derived once from the Hibernate mapping of the entity. Entities saved at once (see {@link AbstractBuilder#createAll(Collection)})
+ *     are inserted with JDBC batches. Identifiers generated by the database (identity columns) are set on the entities afterwards.
+ * </p>
+ * <p>
+ *     To use it, declare it as repository type of a BuildCommand; no bean has to be defined. As the saver cannot query the database,
+ *     the BuildCommand must override {@code findEntity}:
+ * </p>
+ * <pre>
+ * public interface PersonBuildCommand extends AbstractBuildCommand&lt;Person, JdbcBatchBeanSaver&lt;Person&gt;&gt; {
+ *
+ *     &#64;Override
+ *     default Person findEntity(Person entity) {
+ *         return null;
+ *     }
+ * }
+ * </pre>
+ * <p>
+ *     Only entities stored in a single table without inheritance are supported, whose identifiers are either generated by an identity column or assigned
+ *     before saving. Collections with their own table (such as element collections) are not inserted, so entities with such collections are rejected.
+ *     The saved entities are not attached to the persistence context. Existing entities (which are not {@link Persistable#isNew() new}, such as those passed
+ *     to {@link AbstractBuilder#update(Persistable)}) cannot be updated and are rejected. A {@code @Version} attribute without value is given its initial version,
+ *     like Hibernate does, so the entities can be updated through JPA later on.
+ * </p>
+ * <p>
+ *     As the entities bypass JPA, its lifecycle callbacks (such as {@code @PrePersist} methods and entity listeners, including those of Spring Data auditing)
+ *     are not called. Set the values they would set in the BuildCommand or its {@code preProcess} instead.
+ *     This class refers to Hibernate and Spring ORM, so it may only be used when both are on the classpath.
+ * </p>
+ * @param <T> Entity Type
+ */
+public class JdbcBatchBeanSaver<T extends Persistable<?>> implements BeanSaver<T, Serializable> {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final SessionFactoryImplementor sessionFactory;
+    private final EntityPersister persister;
+    private final int batchSize;
+
+    /** Whether the identifier is generated by the database while inserting */
+    private final boolean generatedIdentifier;
+
+    /** Columns of the insert statement, in order */
+    private final List<SelectableMapping> columns = new ArrayList<>();
+
+    private final String insertSql;
+
+    /**
+     * Derives the insert statement of an entity from its mapping.
+     * @param entityClass Class of the entity
+     * @param jdbcTemplate Used to run the inserts
+     * @param entityManagerFactory EntityManagerFactory which contains the mapping of the entity. Must be backed by Hibernate.
+     * @param batchSize Number of inserts to send to the database at once
+     */
+    public JdbcBatchBeanSaver(Class<T> entityClass, JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory, int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.persister = sessionFactory.getMappingMetamodel().getEntityDescriptor(entityClass);
+        this.batchSize = batchSize;
+        this.generatedIdentifier = persister.getGenerator() != null && persister.getGenerator().generatedOnExecution();
+
+        if (persister.getTableNames().length != 1 || persister.isInherited() || persister.hasSubclasses()) {
+            throw new IllegalStateException(format("Entity [%s] is stored in multiple tables, which is not supported by JdbcBatchBeanSaver", entityClass.getName()));
+        }
+        if (!generatedIdentifier) {
+            persister.getIdentifierMapping().forEachSelectable((index, selectable) -> columns.add(selectable));
+        }
+        for (int i = 0; i < persister.getNumberOfAttributeMappings(); i++) {
+            AttributeMapping attribute = persister.getAttributeMapping(i);
+            if (attribute instanceof PluralAttributeMapping collection && !collection.getCollectionDescriptor().isInverse()) {
+                throw new IllegalStateException(format("Property [%s] of entity [%s] is a collection with its own table, which is not supported by JdbcBatchBeanSaver",
+                        attribute.getAttributeName(), entityClass.getName()));
+            }
+            attribute.forEachSelectable((index, selectable) -> {
+                if (isInsertable(selectable)) {
+                    columns.add(selectable);
+                }
+            });
+        }
+
+        this.insertSql = format("INSERT INTO %s (%s) VALUES (%s)", persister.getTableName(),
+                String.join(", ", columns.stream().map(SelectableMapping::getSelectionExpression).toList()),
+                String.join(", ", Collections.nCopies(columns.size(), "?")));
+    }
+
+    /**
+     * Creates the saver of an entity, using the JdbcTemplate (or else the DataSource) and the EntityManagerFactory of the ApplicationContext.
+     * @param applicationContext ApplicationContext to get the beans from
+     * @param entityClass Class of the entity
+     * @param batchSize Number of inserts to send to the database at once
+     * @return the saver
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static JdbcBatchBeanSaver<?> forEntity(ApplicationContext applicationContext, Class<?> entityClass, int batchSize) {
+        JdbcTemplate jdbcTemplate = applicationContext.getBeanProvider(JdbcTemplate.class)
+                .getIfUnique(() -> new JdbcTemplate(applicationContext.getBean(DataSource.class)));
+        return new JdbcBatchBeanSaver(entityClass, jdbcTemplate, applicationContext.getBean(EntityManagerFactory.class), batchSize);
+    }
+
+    private static boolean isInsertable(SelectableMapping selectable) {
+        return selectable.isInsertable() && !selectable.isFormula();
+    }
+
+    @Override
+    public T save(T entity) {
+        insert(List.of(entity));
+        return entity;
+    }
+
+    @Override
+    public List<T> saveAll(Collection<T> entities) {
+        List<T> saved = List.copyOf(entities);
+        for (int start = 0; start < saved.size(); start += batchSize) {
+            insert(saved.subList(start, Math.min(start + batchSize, saved.size())));
+        }
+        return saved;
+    }
+
+    private void insert(List<T> entities) {
+        // Inserting an existing entity would write a duplicate row (or violate its primary key), where JPA would have merged it
+        for (T entity : entities) {
+            if (!entity.isNew()) {
+                throw new IllegalStateException(format("Entity [%s] with id [%s] already exists. JdbcBatchBeanSaver can only insert new entities, not update them",
+                        entity.getClass().getName(), entity.getId()));
+            }
+        }
+
+        // Entities saved through JPA within the same transaction (such as the referenced entities) must be inserted before the rows which refer to them
+        EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        if (entityManager != null) {
+            entityManager.flush();
+        }
+
+        // The session is only used to convert the values of the entity to their column values, so it never acquires a connection
+        try (StatelessSession statelessSession = sessionFactory.openStatelessSession()) {
+            SharedSessionContractImplementor session = (SharedSessionContractImplementor) statelessSession;
+            List<Object[]> rows = new ArrayList<>(entities.size());
+            for (T entity : entities) {
+                rows.add(toRow(entity, session));
+            }
+
+            BatchPreparedStatementSetter setter = new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement statement, int index) throws SQLException {
+                    Object[] row = rows.get(index);
+                    for (int i = 0; i < row.length; i++) {
+                        bind(statement, i, row[i], session);
+                    }
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return rows.size();
+                }
+            };
+
+            if (generatedIdentifier) {
+                KeyHolder keyHolder = new GeneratedKeyHolder();
+                String[] identifierColumns = { persister.getIdentifierMapping().getSelectable(0).getSelectionExpression() };
+                jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(insertSql, identifierColumns), setter, keyHolder);
+                applyGeneratedIdentifiers(entities, keyHolder.getKeyList(), session);
+            } else {
+                jdbcTemplate.batchUpdate(insertSql, setter);
+            }
+        }
+    }
+
+    private Object[] toRow(T entity, SharedSessionContractImplementor session) {
+        Object[] row = new Object[columns.size()];
+        int[] column = { 0 };
+        ModelPart.JdbcValueConsumer consumer = (valueIndex, value, selectable) -> {
+            if (isInsertable(selectable)) {
+                row[column[0]++] = value;
+            }
+        };
+
+        if (!generatedIdentifier) {
+            Object identifier = persister.getIdentifier(entity, session);
+            if (identifier == null) {
+                throw new IllegalStateException(format("Entity [%s] has no identifier. JdbcBatchBeanSaver only supports identifiers which are generated by an identity column or assigned before saving",
+                        entity.getClass().getName()));
+            }
+            persister.getIdentifierMapping().breakDownJdbcValues(identifier, consumer, session);
+        }
+        if (persister.isVersioned()) {
+            seedVersion(entity, session);
+        }
+        for (int i = 0; i < persister.getNumberOfAttributeMappings(); i++) {
+            AttributeMapping attribute = persister.getAttributeMapping(i);
+            if (!(attribute instanceof PluralAttributeMapping)) {
+                attribute.breakDownJdbcValues(attribute.getValue(entity), consumer, session);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Sets the initial version on an entity which has none, like Hibernate does when persisting it. Otherwise, the version column would be
+     * {@code NULL} and a later update through JPA would fail its optimistic locking check.
+     */
+    private void seedVersion(T entity, SharedSessionContractImplementor session) {
+        int versionProperty = persister.getVersionProperty();
+        if (Versioning.isNullInitialVersion(persister.getValue(entity, versionProperty))) {
+            persister.setValue(entity, versionProperty, Versioning.seed(persister.getVersionMapping(), session));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void bind(PreparedStatement statement, int index, Object value, SharedSessionContractImplementor session) throws SQLException {
+        JdbcMapping jdbcMapping = columns.get(index).getJdbcMapping();
+        jdbcMapping.getJdbcValueBinder().bind(statement, value, index + 1, session);
+    }
+
+    private void applyGeneratedIdentifiers(List<T> entities, List<Map<String, Object>> keys, SharedSessionContractImplementor session) {
+        if (keys.size() != entities.size()) {
+            throw new IllegalStateException(format("Expected %d generated identifiers for entity [%s], but the database returned %d",
+                    entities.size(), persister.getEntityName(), keys.size()));
+        }
+        for (int i = 0; i < entities.size(); i++) {
+            Object key = keys.get(i).values().iterator().next();
+            Object identifier = persister.getIdentifierMapping().getJavaType().wrap(key, session);
+            persister.setIdentifier(entities.get(i), identifier, session);
+        }
+    }
+}
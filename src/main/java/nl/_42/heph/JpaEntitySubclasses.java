@@ -0,0 +1,40 @@
+package nl._42.heph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.ManagedType;
+
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Looks up the subclasses of an entity class which are known to the EntityManagerFactories of an ApplicationContext. Used by {@link AbstractBuilder#warmUp()}
+ * to accept "with" methods of fields which are only declared by a subclass of the entity. This class refers to JPA, so it may only be used when it is on the classpath.
+ */
+final class JpaEntitySubclasses {
+
+    private JpaEntitySubclasses() {
+    }
+
+    /**
+     * @param applicationContext ApplicationContext containing the EntityManagerFactories
+     * @param entityClass Class of the entity
+     * @return the managed subclasses of the entity class, or {@code null} if the entity class is not managed, so its subclasses are unknown
+     */
+    static List<Class<?>> of(ApplicationContext applicationContext, Class<?> entityClass) {
+        boolean managed = false;
+        List<Class<?>> subclasses = new ArrayList<>();
+        for (EntityManagerFactory entityManagerFactory : applicationContext.getBeansOfType(EntityManagerFactory.class).values()) {
+            for (ManagedType<?> managedType : entityManagerFactory.getMetamodel().getManagedTypes()) {
+                Class<?> javaType = managedType.getJavaType();
+                if (javaType == entityClass) {
+                    managed = true;
+                } else if (javaType != null && entityClass.isAssignableFrom(javaType)) {
+                    subclasses.add(javaType);
+                }
+            }
+        }
+        return managed ? subclasses : null;
+    }
+}
@@ -0,0 +1,80 @@
+package nl._42.heph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import nl._42.heph.lazy.LazyEntity;
+import nl._42.heph.lazy.ReferenceResolutionPlan;
+
+/**
+ * Resolves the lazy references of a BuildCommand concurrently, on virtual threads. Only the references themselves (the suppliers) are called concurrently:
+ * the resolved values are applied to the entity on the calling thread, in the same order as a sequential resolution would.
+ * The references are resolved within the create chain of the calling thread, so references with the same supplier are still only called once.
+ * Used by builders which override {@link AbstractBuilder#getReferenceParallelism()}.
+ */
+final class ParallelReferenceResolution {
+
+    /** Maximum number of references resolved at the same time */
+    private final int parallelism;
+
+    ParallelReferenceResolution(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Resolves the references. If resolving one of them fails, its exception is rethrown after the values of the references before it have been applied.
+     * The references after it are cancelled, so their suppliers are interrupted instead of continuing in the background.
+     * @param references the references to resolve, in the order in which their values must be applied
+     */
+    void resolve(Collection<LazyEntity> references) {
+        if (references.size() < 2) {
+            references.forEach(LazyEntity::resolve);
+            return;
+        }
+
+        ReferenceResolutionPlan plan = ReferenceResolutionPlan.current();
+        Semaphore permits = new Semaphore(parallelism);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        boolean resolved = false;
+        try {
+            List<Future<Runnable>> fetches = new ArrayList<>(references.size());
+            for (LazyEntity reference : references) {
+                fetches.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return plan != null ? plan.within(reference::fetch) : reference.fetch();
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (Future<Runnable> fetch : fetches) {
+                fetch.get().run();
+            }
+            resolved = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while resolving references", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Failed to resolve reference", e.getCause());
+        } finally {
+            if (resolved) {
+                executor.shutdown();
+            } else {
+                // Interrupts the suppliers which are still running or waiting for a permit, as their values will never be applied
+                executor.shutdownNow();
+            }
+        }
+    }
+}
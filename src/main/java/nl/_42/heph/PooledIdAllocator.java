@@ -0,0 +1,63 @@
+package nl._42.heph;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link IdAllocator} which reserves the identifiers of an entity class in blocks, so only one reservation is needed for a block of entities.
+ * The identifiers of a block are handed out one by one; when it has been used up, the next block is reserved.
+ */
+public abstract class PooledIdAllocator implements IdAllocator {
+
+    /** The blocks currently in use, by entity class */
+    private final Map<Class<?>, Block> blocks = new ConcurrentHashMap<>();
+
+    private final int blockSize;
+
+    /**
+     * @param blockSize Number of identifiers reserved at once
+     */
+    protected PooledIdAllocator(int blockSize) {
+        Assert.isTrue(blockSize > 0, "The block size must be positive");
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public long nextId(Class<?> entityClass) {
+        Block block = blocks.computeIfAbsent(entityClass, (type) -> new Block());
+        synchronized (block) {
+            if (block.next == block.end) {
+                block.next = reserveBlock(entityClass, blockSize);
+                block.end = block.next + blockSize;
+            }
+            return block.next++;
+        }
+    }
+
+    /**
+     * Reserves a block of identifiers for an entity class. The identifiers may not be handed out by any other reservation.
+     * @param entityClass Class of the entity
+     * @param blockSize Number of identifiers to reserve
+     * @return the first identifier of the block. The block consists of this identifier and the following {@code blockSize - 1} identifiers.
+     */
+    protected abstract long reserveBlock(Class<?> entityClass, int blockSize);
+
+    /**
+     * @return Number of identifiers reserved at once
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * The remaining identifiers of a block: from {@code next} (inclusive) to {@code end} (exclusive).
+     */
+    private static final class Block {
+
+        private long next;
+
+        private long end;
+    }
+}
@@ -0,0 +1,52 @@
+package nl._42.heph;
+
+import static java.lang.String.format;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ *     {@link IdAllocator} which hands out the identifiers of each entity class from a fixed range, in memory, without querying the database.
+ *     The range must not overlap with identifiers which are assigned otherwise. When tests run in multiple forks against a shared database,
+ *     give every fork its own range, for example based on the fork number of Surefire (passed as system property {@code fork.number}):
+ * </p>
+ * <pre>
+ * &#64;Bean
+ * public RangeIdAllocator idAllocator() {
+ *     long forkNumber = Long.getLong("fork.number", 1);
+ *     return new RangeIdAllocator(forkNumber * 1_000_000, (forkNumber + 1) * 1_000_000);
+ * }
+ * </pre>
+ */
+public class RangeIdAllocator implements IdAllocator {
+
+    /** The next identifier, by entity class */
+    private final Map<Class<?>, AtomicLong> nextIds = new ConcurrentHashMap<>();
+
+    private final long start;
+
+    private final long end;
+
+    /**
+     * @param start First identifier of the range (inclusive)
+     * @param end End of the range (exclusive)
+     */
+    public RangeIdAllocator(long start, long end) {
+        Assert.isTrue(start < end, "The start of the range must be before its end");
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public long nextId(Class<?> entityClass) {
+        long id = nextIds.computeIfAbsent(entityClass, (type) -> new AtomicLong(start)).getAndIncrement();
+        if (id >= end) {
+            throw new IllegalStateException(format("All identifiers from %d to %d have been handed out for entity [%s]", start, end, entityClass.getName()));
+        }
+        return id;
+    }
+}
@@ -0,0 +1,73 @@
+package nl._42.heph;
+
+import java.io.Serializable;
+
+import org.springframework.data.domain.Persistable;
+import org.springframework.data.repository.query.ReactiveQueryByExampleExecutor;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ *     BuildCommand of an entity which is saved through a {@link ReactiveCrudRepository}, such as a Spring Data R2DBC repository.
+ *     Besides the blocking {@link #create()}, which waits for the repository, it offers {@link #createMono()}, which performs the same steps
+ *     without blocking the subscribing thread:
+ * </p>
+ * <pre>
+ * public interface TeamBuildCommand extends ReactiveBuildCommand&lt;Team, TeamRepository&gt; {
+ *
+ *     &#64;Override
+ *     default Mono&lt;Team&gt; findEntityMono(Team entity) {
+ *         return getRepository().findByName(entity.getName());
+ *     }
+ *
+ *     TeamBuildCommand withName(String name);
+ * }
+ * </pre>
+ * <p>
+ *     Using this interface requires Project Reactor on the classpath.
+ * </p>
+ * @param <T> Entity Type
+ * @param <R> Reactive repository of the entity
+ */
+public interface ReactiveBuildCommand<T extends Persistable, R extends ReactiveCrudRepository<T, ? extends Serializable>> extends AbstractBuildCommand<T, R> {
+
+    /**
+     * Reactive counterpart of {@link #findEntity(Persistable)}, which is used by {@link #createMono()} to look up a pre-existing entity.
+     * If the natural key of the entity has been declared with {@link FixtureKey}, the default implementation finds the entity by its key,
+     * using the repository as {@link ReactiveQueryByExampleExecutor}. Otherwise, this method must be overridden; return an empty Mono to disable reuse.
+     * @param entity the entity to look for
+     * @return the pre-existing entity, or an empty Mono
+     */
+    default Mono<T> findEntityMono(T entity) {
+        return ReactiveCreation.findByNaturalKey(this, entity);
+    }
+
+    /**
+     * Looks up the pre-existing entity for the blocking {@link #create()}, by waiting for {@link #findEntityMono(Persistable)}.
+     * @param entity the entity to look for
+     * @return the pre-existing entity if found, or else null
+     */
+    @Override
+    default T findEntity(T entity) {
+        return findEntityMono(entity).block();
+    }
+
+    /**
+     * <p>
+     *     Reactive counterpart of {@link #create()}. When subscribed, the before-find references are resolved, the pre-existing entity is looked up
+     *     with {@link #findEntityMono(Persistable)} and, if it is not found, the before-create references are resolved and the entity is saved
+     *     with {@link ReactiveCrudRepository#save(Object)}. The pre- and post-processing take place as with {@link #create()}.
+     * </p>
+     * <p>
+     *     The suppliers of the references are called concurrently on the bounded elastic scheduler, so they may block (for example by calling
+     *     {@code create()} of another builder) without tying up the event loop. Their values are applied to the entity in the same order as
+     *     {@link #create()} would. The {@link FindEntityCache} and the {@link FixtureSession}, which are bound to the current thread, are not used.
+     * </p>
+     * @return the found or created entity
+     */
+    default Mono<T> createMono() {
+        return ReactiveCreation.create(this);
+    }
+}
@@ -0,0 +1,121 @@
+package nl._42.heph;
+
+import static java.lang.String.format;
+
+import java.util.List;
+
+import nl._42.heph.generation.NaturalKey;
+import nl._42.heph.lazy.LazyEntity;
+import nl._42.heph.lazy.ReferenceResolutionPlan;
+
+import org.springframework.data.domain.Persistable;
+import org.springframework.data.repository.query.ReactiveQueryByExampleExecutor;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Performs the steps of a create for entities with a {@link ReactiveCrudRepository}. This class refers to Project Reactor,
+ * so it may only be loaded when a reactive repository (and thereby Reactor) is in use.
+ */
+final class ReactiveCreation {
+
+    private ReactiveCreation() {
+    }
+
+    /**
+     * Creates the entity of a BuildCommand, see {@link ReactiveBuildCommand#createMono()}.
+     * @param buildCommand BuildCommand obtained from a builder
+     * @param <T> Type of the entity
+     * @return the found or created entity
+     */
+    static <T extends Persistable> Mono<T> create(ReactiveBuildCommand<T, ?> buildCommand) {
+        DefaultBuildCommand<T, ?> command = AbstractBuilder.unwrapBuildCommand(buildCommand);
+        return Mono.defer(() -> {
+            ReferenceResolutionPlan plan = ReferenceResolutionPlan.currentOrNew();
+            return resolve(command.takeBeforeFindReferences(), plan)
+                    .then(Mono.defer(() -> find(buildCommand, command)))
+                    .switchIfEmpty(Mono.defer(() -> resolve(command.takeBeforeCreateReferences(), plan).then(save(buildCommand, command))));
+        });
+    }
+
+    private static <T extends Persistable> Mono<T> find(ReactiveBuildCommand<T, ?> buildCommand, DefaultBuildCommand<T, ?> command) {
+        if (command.isUpdating() || buildCommand.getRepository() == null) {
+            return Mono.empty();
+        }
+        return buildCommand.findEntityMono(command.getInternalEntity());
+    }
+
+    /**
+     * Saves the entity. The pre- and post-processing may block (for example by creating other entities), so they take place on the bounded elastic scheduler.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Persistable> Mono<T> save(ReactiveBuildCommand<T, ?> buildCommand, DefaultBuildCommand<T, ?> command) {
+        ReactiveCrudRepository<T, ?> repository = buildCommand.getRepository();
+        return Mono.fromCallable(command::prepareSave)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(entity -> repository != null ? repository.save(entity) : Mono.just(entity))
+                .publishOn(Schedulers.boundedElastic())
+                .map(command::completeSave);
+    }
+
+    /**
+     * Calls the suppliers of the references concurrently within the create chain, and applies their values in the order of the references.
+     */
+    private static Mono<Void> resolve(List<LazyEntity> references, ReferenceResolutionPlan plan) {
+        if (references.isEmpty()) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(references)
+                .flatMapSequential(reference -> Mono.fromCallable(() -> plan.within(reference::fetch)).subscribeOn(Schedulers.boundedElastic()))
+                .doOnNext(Runnable::run)
+                .then();
+    }
+
+    /**
+     * Finds the entity with the same natural key, see {@link ReactiveBuildCommand#findEntityMono(Persistable)}.
+     * @param buildCommand BuildCommand obtained from a builder
+     * @param entity the entity to look for
+     * @param <T> Type of the entity
+     * @return the pre-existing entity, or an empty Mono
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Persistable> Mono<T> findByNaturalKey(ReactiveBuildCommand<T, ?> buildCommand, T entity) {
+        NaturalKey naturalKey = AbstractBuilder.unwrapBuildCommand(buildCommand).getNaturalKey();
+        if (naturalKey == null) {
+            return Mono.error(new FindEntityMethodNotImplementedException(
+                    "Please override the 'findEntityMono()' method in your BuildCommand interface by using a default implementation."));
+        }
+
+        ReactiveCrudRepository<T, ?> repository = buildCommand.getRepository();
+        if (!(repository instanceof ReactiveQueryByExampleExecutor)) {
+            return Mono.error(new IllegalStateException(format("Could not find entity of class [%s] by its @FixtureKey fields %s: Repository [%s] does not implement ReactiveQueryByExampleExecutor. "
+                    + "Please override the 'findEntityMono()' method in your BuildCommand interface instead.", entity.getClass().getName(), naturalKey.getFieldNames(), repository.getClass().getName())));
+        }
+        return ((ReactiveQueryByExampleExecutor<T>) repository).findOne(naturalKey.toExample(entity));
+    }
+
+    /**
+     * Saves an entity through a reactive repository and waits for the result, for the blocking {@code create()}.
+     * @param repository the repository of the entity
+     * @param entity the entity to save
+     * @param <T> Type of the entity
+     * @return the saved entity
+     */
+    static <T> T saveAndWait(ReactiveCrudRepository<T, ?> repository, T entity) {
+        return repository.save(entity).block();
+    }
+
+    /**
+     * Saves entities through a reactive repository and waits for the result, for the blocking {@link AbstractBuilder#createAll(java.util.Collection)}.
+     * @param repository the repository of the entities
+     * @param entities the entities to save
+     * @param <T> Type of the entity
+     * @return the saved entities, in the same order
+     */
+    static <T> List<T> saveAllAndWait(ReactiveCrudRepository<T, ?> repository, List<T> entities) {
+        return repository.saveAll(entities).collectList().block();
+    }
+}
@@ -4,48 +4,84 @@ import static java.lang.String.format;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import nl._42.heph.DefaultBuildCommand;
-import nl._42.heph.lazy.EntityField;
-import nl._42.heph.lazy.EntityId;
-import nl._42.heph.lazy.Resolve;
 
-import org.aopalliance.intercept.MethodInterceptor;
-import org.aopalliance.intercept.MethodInvocation;
-import org.springframework.util.Assert;
-import org.springframework.util.StringUtils;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.util.ReflectionUtils;
 
 /**
- * AOP advice which handles called interface methods as following:
+ * Invocation handler of the BuildCommand proxy, which handles called interface methods as following:
  * - If the method is "default", i.e. has a custom implementation, call the original implementation.
- * - If the method starts with "with", resolve the affected field name and pass the call through the base implementation (DefaultBuildCommand).
+ * - If the method starts with "with", pass the call through the base implementation (DefaultBuildCommand), along with the {@link WithMethodDescriptor} of the method.
+ * - Any other method is invoked on the base implementation directly.
  */
-public class BuildCommandAdvice implements MethodInterceptor {
+public class BuildCommandAdvice implements InvocationHandler {
 
-    private final DefaultBuildCommand<?, ?> buildCommand;
+    /** Determines which methods are handled by this advice, rather than passed on to the base implementation */
+    private static final BuildCommandPointcut POINTCUT = new BuildCommandPointcut();
+
+    /** Arguments passed to a default method without parameters */
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    /** Method handles of the default methods which have been called before, by method */
+    private static final Map<Method, MethodHandle> DEFAULT_METHOD_HANDLES = new ConcurrentHashMap<>();
 
-    private Object proxy;
+    /** The custom BuildCommand interface implemented by the proxy */
+    private final Class<?> buildCommandClass;
+
+    private final DefaultBuildCommand<?, ?> buildCommand;
 
-    public BuildCommandAdvice(DefaultBuildCommand<?, ?> buildCommand) {
+    public BuildCommandAdvice(Class<?> buildCommandClass, DefaultBuildCommand<?, ?> buildCommand) {
+        this.buildCommandClass = buildCommandClass;
         this.buildCommand = buildCommand;
     }
 
-    // We need to store a reference of the proxied class (with this Advice within it) to allow calling original methods in case of default interface method implementations
-    public void setProxy(Object proxy) {
-        Assert.notNull(proxy, "Proxied instance cannot be null");
-        this.proxy = proxy;
+    /**
+     * @return the base implementation to which the calls on the proxy are passed on
+     */
+    public DefaultBuildCommand<?, ?> getBuildCommand() {
+        return buildCommand;
     }
 
     @Override
-    public Object invoke(MethodInvocation invocation) throws Throwable {
-        final Method method = invocation.getMethod();
-        final Object[] args = invocation.getArguments();
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (ReflectionUtils.isEqualsMethod(method)) {
+            return proxy == args[0];
+        } else if (ReflectionUtils.isHashCodeMethod(method)) {
+            return System.identityHashCode(proxy);
+        }
+
+        Object result = POINTCUT.matches(method, buildCommand.getClass())
+                ? invokeAdvised(proxy, method, args)
+                : AopUtils.invokeJoinpointUsingReflection(buildCommand, method, args);
 
+        // The base implementation returns itself from its "with" methods. In that case, we return the proxy instead so calls can be chained.
+        if (result == buildCommand && method.getReturnType().isInstance(proxy)) {
+            return proxy;
+        }
+        return result;
+    }
+
+    /**
+     * Handles a method which is matched by the {@link BuildCommandPointcut}.
+     * @param proxy the BuildCommand proxy on which the method was called
+     * @param method the called method
+     * @param args the arguments of the call, or {@code null} if there are none
+     * @return result of the method
+     * @throws Throwable when the called method throws
+     */
+    private Object invokeAdvised(Object proxy, Method method, Object[] args) throws Throwable {
         // If the called method is a default method (a.k.a. has a custom implementation), call the original method definition.
         if (method.isDefault()) {
-            MethodHandle handle = getMethodHandle(method);
-            return handle.bindTo(proxy).invokeWithArguments(args);
+            MethodHandle handle = DEFAULT_METHOD_HANDLES.computeIfAbsent(method, BuildCommandAdvice::getMethodHandle);
+            // The arguments must be passed with their exact static type, which a conditional expression would widen to Object.
+            Object[] arguments = args == null ? NO_ARGUMENTS : args;
+            return (Object) handle.invokeExact(proxy, arguments);
         } else {
             // Otherwise, set the generated field value to the internal entity.
             if (args == null || args.length == 0) {
@@ -55,12 +91,7 @@ public class BuildCommandAdvice implements MethodInterceptor {
             }
 
             if (args.length == 1) {
-                Object argumentValue = args[0];
-                String fieldName = getAffectedFieldName(method);
-                Resolve resolveAnnotation = method.getAnnotation(Resolve.class);
-                EntityField entityFieldAnnotation = method.getAnnotation(EntityField.class);
-                EntityId entityIdAnnotation = method.getAnnotation(EntityId.class);
-                return buildCommand.withValue(fieldName, argumentValue, resolveAnnotation, entityFieldAnnotation, entityIdAnnotation);
+                return buildCommand.withValue(WithMethodDescriptor.forMethod(buildCommandClass, method), args[0]);
             }
 
             throw new IllegalArgumentException(
@@ -69,21 +100,12 @@ public class BuildCommandAdvice implements MethodInterceptor {
         }
     }
 
-    /**
-     * Returns the field name to set in the entity of a "with method".
-     * Example: Method name = "withFirstName". Property name is then "firstName".
-     * @param method Method to set property
-     * @return Field name
-     */
-    private String getAffectedFieldName(final Method method) {
-        String fieldName = method.getName().substring(BuildCommandPointcut.WITH_PREFIX.length());
-        return StringUtils.uncapitalize(fieldName);
-    }
-
     /**
      * Returns a method handle to execute a default interface method.
      * This is required to directly execute the method in the proxied superclass of the DefaultBuildCommand (see https://cs.au.dk/~mis/dOvs/jvmspec/ref--33.html).
      * If the method were not to be directly executed, we would end up in an infinite loop between the proxied instance and this advice class.
+     * The handle is adapted to the type (Object proxy, Object[] args)Object, so it can be called with {@link MethodHandle#invokeExact} without
+     * wrapping the arguments again. Since this is expensive, handles are only created once per method (see {@link #DEFAULT_METHOD_HANDLES}).
      * @param method Method to get the method handle for
      * @return Method handle.
      */
@@ -92,7 +114,9 @@ public class BuildCommandAdvice implements MethodInterceptor {
 
         try {
             MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(declaringClass, MethodHandles.lookup());
-            return lookup.unreflectSpecial(method, declaringClass);
+            MethodHandle handle = lookup.unreflectSpecial(method, declaringClass);
+            return handle.asType(handle.type().generic())
+                    .asSpreader(Object[].class, method.getParameterCount());
         } catch (IllegalAccessException e) {
             throw new IllegalStateException("Could not retrieve method handle. Is the BuildCommand placed in a public interface?", e);
         }
@@ -0,0 +1,20 @@
+package nl._42.heph.generation;
+
+/**
+ * Engines which implement BuildCommand interfaces at runtime. These are only used for BuildCommand interfaces
+ * without an implementation generated at compile time (see {@link GeneratedBuildCommandFactory}).
+ */
+public enum BuildCommandEngine {
+
+    /**
+     * Wraps a CGLib subclass of {@link nl._42.heph.DefaultBuildCommand} in a JDK proxy implementing the BuildCommand interface.
+     * Every call goes through both proxy layers. See {@link BuildCommandProxyFactory}.
+     */
+    PROXY,
+
+    /**
+     * Generates a single class per BuildCommand interface, which extends {@link nl._42.heph.DefaultBuildCommand} and implements
+     * the interface. All methods are bound statically. See {@link BytecodeBuildCommandFactory}.
+     */
+    BYTECODE
+}
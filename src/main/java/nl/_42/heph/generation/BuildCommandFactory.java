@@ -0,0 +1,25 @@
+package nl._42.heph.generation;
+
+import java.util.function.Supplier;
+
+import nl._42.heph.AbstractBuildCommand;
+
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Creates instances of a single BuildCommand interface. The {@link nl._42.heph.AbstractBuilder} uses a
+ * {@link GeneratedBuildCommandFactory} if an implementation was generated at compile time, or a
+ * {@link BuildCommandProxyFactory} otherwise.
+ * @param <BC> the type of the BuildCommand
+ */
+public interface BuildCommandFactory<BC extends AbstractBuildCommand> {
+
+    /**
+     * Instantiates a BuildCommand wrapping the given entity.
+     * @param entity Entity to set within the "entity" field of the default BuildCommand implementation
+     * @param repositorySupplier Function which can return the repository for the entity
+     * @return Instantiated BuildCommand for the given Entity
+     */
+    BC newBuildCommand(Persistable entity, Supplier<?> repositorySupplier);
+
+}
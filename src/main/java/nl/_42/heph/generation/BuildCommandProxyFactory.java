@@ -0,0 +1,150 @@
+package nl._42.heph.generation;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import nl._42.heph.AbstractBuildCommand;
+import nl._42.heph.DefaultBuildCommand;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.cglib.proxy.CallbackFilter;
+import org.springframework.cglib.proxy.Enhancer;
+import org.springframework.cglib.proxy.Factory;
+import org.springframework.cglib.proxy.MethodInterceptor;
+import org.springframework.cglib.proxy.NoOp;
+import org.springframework.data.domain.Persistable;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Creates BuildCommand instances for a single BuildCommand interface.
+ * All expensive setup (generating the CGLib subclass of {@link DefaultBuildCommand}, deciding which of its methods to redirect and resolving its constructor) is done once per interface,
+ * so creating a new BuildCommand only costs the allocation of the backing instance and its proxy.
+ * Use {@link #forInterface(Class)} to obtain the (cached) factory of a BuildCommand interface.
+ * @param <BC> the type of the BuildCommand
+ */
+public final class BuildCommandProxyFactory<BC extends AbstractBuildCommand> implements BuildCommandFactory<BC> {
+
+    /** The set of methods of {@link AbstractBuildCommand} to redirect to a custom implementation (if overridden only) */
+    private static final List<Method> ABSTRACT_BUILD_COMMAND_METHODS = Arrays.asList(AbstractBuildCommand.class.getDeclaredMethods());
+
+    /** Index of the callback which calls the method of {@link DefaultBuildCommand} directly */
+    private static final int DIRECT_CALLBACK = 0;
+
+    /** Index of the callback which redirects the method to the user's implementation */
+    private static final int REDIRECTING_CALLBACK = 1;
+
+    /** Factories which have been created before, by BuildCommand interface */
+    private static final Map<Class<?>, BuildCommandProxyFactory<?>> FACTORIES = new ConcurrentHashMap<>();
+
+    /** The custom BuildCommand interface of the user */
+    private final Class<BC> buildCommandClass;
+
+    /** Interfaces implemented by the generated proxies */
+    private final Class<?>[] proxiedInterfaces;
+
+    /** Constructor of the generated CGLib subclass of {@link DefaultBuildCommand} */
+    private final Constructor<? extends DefaultBuildCommand> defaultBuildCommandConstructor;
+
+    /**
+     * Methods of {@link DefaultBuildCommand} which have been overridden by a default method in the BuildCommand interface, mapped to that default method.
+     * The generated subclass only intercepts these methods; all other methods are called directly.
+     */
+    private final Map<Method, Method> redirectedMethods = new HashMap<>();
+
+    private BuildCommandProxyFactory(Class<BC> buildCommandClass) {
+        this.buildCommandClass = buildCommandClass;
+        this.proxiedInterfaces = new Class<?>[] { buildCommandClass };
+        this.defaultBuildCommandConstructor = generateDefaultBuildCommandConstructor();
+    }
+
+    /**
+     * Returns the factory for the given BuildCommand interface. The factory is created the first time it is requested and reused afterwards.
+     * @param buildCommandClass Class of the custom BuildCommand interface
+     * @param <BC> the type of the BuildCommand
+     * @return factory for the given BuildCommand interface
+     */
+    @SuppressWarnings("unchecked")
+    public static <BC extends AbstractBuildCommand> BuildCommandProxyFactory<BC> forInterface(Class<BC> buildCommandClass) {
+        return (BuildCommandProxyFactory<BC>) FACTORIES.computeIfAbsent(buildCommandClass, (__) -> new BuildCommandProxyFactory<>(buildCommandClass));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public BC newBuildCommand(Persistable entity, Supplier<?> repositorySupplier) {
+        // We currently need two kinds of proxies to have a working BuildCommand:
+        // The 1st proxy (CGLib) is required to intercept all methods of the DefaultBuildCommandClass itself and redirect overridden methods to the BuildCommand interface of the user.
+        // The 2nd proxy (JDK) is required to intercept the "with" methods of the custom BuildCommand interface created by the user.
+        DefaultBuildCommand<?, ?> defaultBuildCommand = BeanUtils.instantiateClass(defaultBuildCommandConstructor, entity, repositorySupplier);
+        BC buildCommand = (BC) Proxy.newProxyInstance(buildCommandClass.getClassLoader(), proxiedInterfaces, new BuildCommandAdvice(buildCommandClass, defaultBuildCommand));
+
+        // Now that the user's implementation exists, overridden methods called directly in DefaultBuildCommand can be redirected to it.
+        ((Factory) defaultBuildCommand).setCallback(REDIRECTING_CALLBACK, buildRedirectingInterceptor(buildCommand));
+        return buildCommand;
+    }
+
+    /**
+     * Builds the interceptor of the CGLib subclass of {@link DefaultBuildCommand}.
+     * It only receives the methods which are part of the AbstractBuildCommand interface and have been overridden in the user's implementation.
+     * The call is passed back to the proxy instance so the actual implementation can be executed.
+     * @param buildCommand the proxy implementing the user's BuildCommand interface
+     * @return interceptor for a single DefaultBuildCommand instance
+     */
+    private MethodInterceptor buildRedirectingInterceptor(BC buildCommand) {
+        return (obj, method, args, proxy) -> ReflectionUtils.invokeMethod(redirectedMethods.get(method), buildCommand, args);
+    }
+
+    /**
+     * Generates the CGLib subclass of {@link DefaultBuildCommand} and looks up its constructor. The subclass is specific to the BuildCommand interface:
+     * its {@link CallbackFilter} decides once per method whether it must be redirected to the user's implementation (see {@link #redirectedMethods}).
+     * The redirecting callback of each instance is set after construction, since it needs a reference to the proxy wrapping that instance.
+     * @return constructor of the generated subclass, taking the entity and the repository supplier
+     */
+    @SuppressWarnings("unchecked")
+    private Constructor<? extends DefaultBuildCommand> generateDefaultBuildCommandConstructor() {
+        Enhancer enhancer = new Enhancer();
+        enhancer.setSuperclass(DefaultBuildCommand.class);
+        enhancer.setCallbackTypes(new Class<?>[] { NoOp.class, MethodInterceptor.class });
+        enhancer.setCallbackFilter(method -> {
+            Method implementation = findOverridingImplementation(method);
+            if (implementation == null) {
+                return DIRECT_CALLBACK;
+            }
+            redirectedMethods.put(method, implementation);
+            return REDIRECTING_CALLBACK;
+        });
+        enhancer.setUseCache(false);
+        Class<? extends DefaultBuildCommand> subclass = (Class<? extends DefaultBuildCommand>) enhancer.createClass();
+
+        try {
+            return subclass.getConstructor(Persistable.class, Supplier.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Could not find the (entity, repositorySupplier) constructor of the generated DefaultBuildCommand subclass", e);
+        }
+    }
+
+    /**
+     * If the given method of DefaultBuildCommand is part of the AbstractBuildCommand interface and has been overridden in the user's implementation,
+     * this returns the overriding default method of the BuildCommand interface.
+     * @param method method of DefaultBuildCommand
+     * @return the overriding default method, or {@code null} if the method has not been overridden
+     */
+    private Method findOverridingImplementation(Method method) {
+        for (Method m : ABSTRACT_BUILD_COMMAND_METHODS) {
+            if (m.getName().equals(method.getName()) && m.getParameterCount() == method.getParameterCount() && m.getReturnType().equals(method.getReturnType())) {
+                Method implementation = ReflectionUtils.findMethod(buildCommandClass, method.getName(), method.getParameterTypes());
+
+                if (implementation != null && implementation.isDefault()) {
+                    return implementation;
+                }
+            }
+        }
+        return null;
+    }
+}
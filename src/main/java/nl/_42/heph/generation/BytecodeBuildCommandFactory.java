@@ -0,0 +1,387 @@
+package nl._42.heph.generation;
+
+import static java.lang.String.format;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import nl._42.heph.AbstractBuildCommand;
+import nl._42.heph.DefaultBuildCommand;
+import nl._42.heph.lazy.EntityField;
+import nl._42.heph.lazy.EntityId;
+import nl._42.heph.lazy.Resolve;
+import nl._42.heph.lazy.ResolveStrategy;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.data.domain.Persistable;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Creates BuildCommands using a class generated at runtime, once per BuildCommand interface. The generated class extends
+ * {@link DefaultBuildCommand} and implements the BuildCommand interface, just like the implementation generated at compile time
+ * by the heph-processor:
+ * <ul>
+ *     <li><b>with methods</b> without a body write the field of the entity directly if the value can simply be assigned
+ *     (ie, it is no array, Collection or Supplier and has no {@link EntityId} annotation): with a field instruction if the field is accessible,
+ *     or else through its cached {@link FieldAccessor}. Just like {@link DefaultBuildCommand}, they never call the setters of the entity,
+ *     so the engine does not change the result. Other with methods call
+ *     {@link DefaultBuildCommand#withValue(String, Object, ResolveStrategy, boolean)} with the instructions of their annotations.</li>
+ *     <li><b>default methods</b> overriding a method of {@link AbstractBuildCommand} are called directly. Other default methods are
+ *     simply inherited.</li>
+ * </ul>
+ * Since there are no proxies or reflective calls involved, the JIT is able to inline all of these calls.
+ * @param <BC> the type of the BuildCommand
+ */
+public final class BytecodeBuildCommandFactory<BC extends AbstractBuildCommand> implements BuildCommandFactory<BC> {
+
+    /** Suffix of the class generated for a BuildCommand interface */
+    private static final String GENERATED_CLASS_SUFFIX = "$$Heph";
+
+    /** The set of methods of {@link AbstractBuildCommand}, which are implemented by {@link DefaultBuildCommand} */
+    private static final List<Method> ABSTRACT_BUILD_COMMAND_METHODS = Arrays.asList(AbstractBuildCommand.class.getDeclaredMethods());
+
+    /** Factories which have been created before, by BuildCommand interface */
+    private static final Map<Class<?>, BytecodeBuildCommandFactory<?>> FACTORIES = new ConcurrentHashMap<>();
+
+    private static final String DEFAULT_BUILD_COMMAND = Type.getInternalName(DefaultBuildCommand.class);
+    private static final String WITH_VALUE_DESCRIPTOR = Type.getMethodDescriptor(Type.getType(AbstractBuildCommand.class),
+            Type.getType(String.class), Type.getType(Object.class), Type.getType(ResolveStrategy.class), Type.BOOLEAN_TYPE);
+    private static final String GET_INTERNAL_ENTITY_DESCRIPTOR = Type.getMethodDescriptor(Type.getType(Persistable.class));
+    private static final String FIELD_ACCESSOR = Type.getInternalName(FieldAccessor.class);
+    private static final String FOR_FIELD_DESCRIPTOR = Type.getMethodDescriptor(Type.getType(FieldAccessor.class), Type.getType(Class.class), Type.getType(String.class));
+    private static final String SET_DESCRIPTOR = Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Object.class), Type.getType(Object.class));
+
+    /** Prefix of the static fields of the generated class which hold the accessors of inaccessible entity fields */
+    private static final String ACCESSOR_FIELD_PREFIX = "accessor$";
+
+    /** Constructor of the generated class, adapted to take the entity and the repository supplier */
+    private final MethodHandle constructor;
+
+    private BytecodeBuildCommandFactory(Class<BC> buildCommandClass) {
+        this.constructor = generateConstructor(buildCommandClass);
+    }
+
+    /**
+     * Returns the factory for the given BuildCommand interface. The class is generated the first time the factory is requested.
+     * @param buildCommandClass Class of the custom BuildCommand interface
+     * @param <BC> the type of the BuildCommand
+     * @return factory for the given BuildCommand interface
+     */
+    @SuppressWarnings("unchecked")
+    public static <BC extends AbstractBuildCommand> BytecodeBuildCommandFactory<BC> forInterface(Class<BC> buildCommandClass) {
+        return (BytecodeBuildCommandFactory<BC>) FACTORIES.computeIfAbsent(buildCommandClass, (__) -> new BytecodeBuildCommandFactory<>(buildCommandClass));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public BC newBuildCommand(Persistable entity, Supplier<?> repositorySupplier) {
+        try {
+            return (BC) (DefaultBuildCommand<?, ?>) constructor.invokeExact(entity, repositorySupplier);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not instantiate generated BuildCommand", e);
+        }
+    }
+
+    /**
+     * Generates and defines the class for the given BuildCommand interface, and looks up its constructor.
+     * The class is defined in the package of the BuildCommand interface, so it can access everything the interface can access.
+     * @param buildCommandClass Class of the custom BuildCommand interface
+     * @return constructor of the generated class, of type (Persistable, Supplier) to DefaultBuildCommand
+     */
+    private static MethodHandle generateConstructor(Class<?> buildCommandClass) {
+        Class<?>[] genericTypes = GenericTypeResolver.resolveTypeArguments(buildCommandClass, AbstractBuildCommand.class);
+        if (genericTypes == null || genericTypes.length != 2) {
+            throw new IllegalArgumentException(format("The BuildCommand [%s] must have 2 generic types", buildCommandClass.getName()));
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(buildCommandClass, MethodHandles.lookup());
+            Class<?> generatedClass = lookup.defineClass(generateClass(buildCommandClass, genericTypes[0]));
+            return lookup.findConstructor(generatedClass, MethodType.methodType(void.class, Persistable.class, Supplier.class))
+                    .asType(MethodType.methodType(DefaultBuildCommand.class, Persistable.class, Supplier.class));
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new IllegalStateException(format("Could not define generated class for BuildCommand [%s]. Is it placed in a public interface?",
+                    buildCommandClass.getName()), e);
+        }
+    }
+
+    private static byte[] generateClass(Class<?> buildCommandClass, Class<?> entityClass) {
+        String className = Type.getInternalName(buildCommandClass) + GENERATED_CLASS_SUFFIX;
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC, className, null,
+                DEFAULT_BUILD_COMMAND, new String[] { Type.getInternalName(buildCommandClass) });
+
+        MethodVisitor init = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", Type.getConstructorDescriptor(constructorOf(DefaultBuildCommand.class)), null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitVarInsn(Opcodes.ALOAD, 1);
+        init.visitVarInsn(Opcodes.ALOAD, 2);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, DEFAULT_BUILD_COMMAND, "<init>", Type.getConstructorDescriptor(constructorOf(DefaultBuildCommand.class)), false);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        // Names of the entity fields which are written through a FieldAccessor, by the index of their static field
+        List<String> accessedFields = new ArrayList<>();
+        for (Method method : buildCommandClass.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.getDeclaringClass() == AbstractBuildCommand.class) {
+                continue;
+            }
+
+            Method overridden = findOverriddenAbstractBuildCommandMethod(method);
+            if (method.isDefault()) {
+                // DefaultBuildCommand implements all methods of AbstractBuildCommand, and a superclass method wins from a default
+                // method. So we need to redirect overridden methods to the default implementation explicitly.
+                if (overridden != null) {
+                    generateDefaultMethodRedirect(writer, buildCommandClass, method);
+                    generateBridge(writer, className, overridden, method);
+                }
+            } else if (overridden != null) {
+                // Abstract redeclaration (eg, with a more specific return type) of a method implemented by DefaultBuildCommand.
+                generateBridge(writer, DEFAULT_BUILD_COMMAND, method, overridden);
+            } else {
+                generateWithMethod(writer, className, buildCommandClass, entityClass, method, accessedFields);
+            }
+        }
+
+        generateAccessorFields(writer, className, entityClass, accessedFields);
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Generates an override of an AbstractBuildCommand method which calls the default implementation of the BuildCommand interface.
+     */
+    private static void generateDefaultMethodRedirect(ClassWriter writer, Class<?> buildCommandClass, Method method) {
+        MethodVisitor visitor = writer.visitMethod(Opcodes.ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, null);
+        visitor.visitCode();
+        visitor.visitVarInsn(Opcodes.ALOAD, 0);
+        loadArguments(visitor, method.getParameterTypes(), method.getParameterTypes());
+        visitor.visitMethodInsn(Opcodes.INVOKESPECIAL, Type.getInternalName(buildCommandClass), method.getName(), Type.getMethodDescriptor(method), true);
+        visitor.visitInsn(Type.getType(method.getReturnType()).getOpcode(Opcodes.IRETURN));
+        visitor.visitMaxs(0, 0);
+        visitor.visitEnd();
+    }
+
+    /**
+     * Generates a method with the signature of 'bridge', which calls 'target' on the given owner (this class, or the superclass).
+     * Nothing is generated if both methods have the same signature.
+     */
+    private static void generateBridge(ClassWriter writer, String owner, Method bridge, Method target) {
+        String bridgeDescriptor = Type.getMethodDescriptor(bridge);
+        String targetDescriptor = Type.getMethodDescriptor(target);
+        if (bridgeDescriptor.equals(targetDescriptor)) {
+            return;
+        }
+
+        boolean callSuper = owner.equals(DEFAULT_BUILD_COMMAND);
+        MethodVisitor visitor = writer.visitMethod(Opcodes.ACC_PUBLIC | (callSuper ? 0 : Opcodes.ACC_BRIDGE | Opcodes.ACC_SYNTHETIC),
+                bridge.getName(), bridgeDescriptor, null, null);
+        visitor.visitCode();
+        visitor.visitVarInsn(Opcodes.ALOAD, 0);
+        loadArguments(visitor, bridge.getParameterTypes(), target.getParameterTypes());
+        visitor.visitMethodInsn(callSuper ? Opcodes.INVOKESPECIAL : Opcodes.INVOKEVIRTUAL, owner, target.getName(), targetDescriptor, false);
+        if (!bridge.getReturnType().isAssignableFrom(target.getReturnType())) {
+            visitor.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(bridge.getReturnType()));
+        }
+        visitor.visitInsn(Type.getType(bridge.getReturnType()).getOpcode(Opcodes.IRETURN));
+        visitor.visitMaxs(0, 0);
+        visitor.visitEnd();
+    }
+
+    /**
+     * Generates the static fields holding the {@link FieldAccessor}s of the entity fields which cannot be written with a field instruction,
+     * and the static initializer which looks them up.
+     */
+    private static void generateAccessorFields(ClassWriter writer, String className, Class<?> entityClass, List<String> accessedFields) {
+        if (accessedFields.isEmpty()) {
+            return;
+        }
+
+        MethodVisitor clinit = writer.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+        clinit.visitCode();
+        for (int i = 0; i < accessedFields.size(); i++) {
+            writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, ACCESSOR_FIELD_PREFIX + i, Type.getDescriptor(FieldAccessor.class), null, null)
+                    .visitEnd();
+            clinit.visitLdcInsn(Type.getType(entityClass));
+            clinit.visitLdcInsn(accessedFields.get(i));
+            clinit.visitMethodInsn(Opcodes.INVOKESTATIC, FIELD_ACCESSOR, "forField", FOR_FIELD_DESCRIPTOR, false);
+            clinit.visitFieldInsn(Opcodes.PUTSTATIC, className, ACCESSOR_FIELD_PREFIX + i, Type.getDescriptor(FieldAccessor.class));
+        }
+        clinit.visitInsn(Opcodes.RETURN);
+        clinit.visitMaxs(0, 0);
+        clinit.visitEnd();
+    }
+
+    /**
+     * Generates the implementation of an abstract with method.
+     */
+    private static void generateWithMethod(ClassWriter writer, String className, Class<?> buildCommandClass, Class<?> entityClass, Method method,
+            List<String> accessedFields) {
+        if (!method.getName().startsWith(BuildCommandPointcut.WITH_PREFIX) || method.getParameterCount() != 1) {
+            throw new IllegalArgumentException(format("Failed to generate method [%s] in buildCommand of type [%s]: Expected a with method taking one argument",
+                    method.getName(), buildCommandClass.getName()));
+        }
+
+        Class<?> returnType = method.getReturnType();
+        if (returnType != void.class && !returnType.isAssignableFrom(buildCommandClass)) {
+            throw new IllegalArgumentException(format("Failed to generate method [%s] in buildCommand of type [%s]: Expected it to return void or the buildCommand",
+                    method.getName(), buildCommandClass.getName()));
+        }
+
+        EntityField entityField = method.getAnnotation(EntityField.class);
+        Resolve resolve = method.getAnnotation(Resolve.class);
+        boolean entityId = method.isAnnotationPresent(EntityId.class);
+        String fieldName = entityField != null ? entityField.value() : StringUtils.uncapitalize(method.getName().substring(BuildCommandPointcut.WITH_PREFIX.length()));
+        ResolveStrategy resolveStrategy = resolve != null ? resolve.value() : ResolveStrategy.BEFORE_CREATE;
+        Class<?> valueType = method.getParameterTypes()[0];
+
+        MethodVisitor visitor = writer.visitMethod(Opcodes.ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, null);
+        visitor.visitCode();
+
+        Field field = entityId ? null : findDirectlyAssignableField(buildCommandClass, entityClass, fieldName, valueType);
+        if (field != null && isWritable(field, buildCommandClass, valueType)) {
+            visitor.visitVarInsn(Opcodes.ALOAD, 0);
+            visitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, DEFAULT_BUILD_COMMAND, "getInternalEntity", GET_INTERNAL_ENTITY_DESCRIPTOR, false);
+            visitor.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(field.getDeclaringClass()));
+            loadArguments(visitor, method.getParameterTypes(), method.getParameterTypes());
+            visitor.visitFieldInsn(Opcodes.PUTFIELD, Type.getInternalName(field.getDeclaringClass()), field.getName(), Type.getDescriptor(field.getType()));
+        } else if (field != null) {
+            // Written just like DefaultBuildCommand does, but without looking up the accessor on every call
+            visitor.visitFieldInsn(Opcodes.GETSTATIC, className, ACCESSOR_FIELD_PREFIX + accessedFields.size(), Type.getDescriptor(FieldAccessor.class));
+            accessedFields.add(fieldName);
+            visitor.visitVarInsn(Opcodes.ALOAD, 0);
+            visitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, DEFAULT_BUILD_COMMAND, "getInternalEntity", GET_INTERNAL_ENTITY_DESCRIPTOR, false);
+            loadArguments(visitor, method.getParameterTypes(), new Class<?>[] { Object.class });
+            visitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, FIELD_ACCESSOR, "set", SET_DESCRIPTOR, false);
+        } else {
+            visitor.visitVarInsn(Opcodes.ALOAD, 0);
+            visitor.visitLdcInsn(fieldName);
+            loadArguments(visitor, method.getParameterTypes(), new Class<?>[] { Object.class });
+            visitor.visitFieldInsn(Opcodes.GETSTATIC, Type.getInternalName(ResolveStrategy.class), resolveStrategy.name(), Type.getDescriptor(ResolveStrategy.class));
+            visitor.visitInsn(entityId ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+            visitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, DEFAULT_BUILD_COMMAND, "withValue", WITH_VALUE_DESCRIPTOR, false);
+            visitor.visitInsn(Opcodes.POP);
+        }
+
+        if (returnType == void.class) {
+            visitor.visitInsn(Opcodes.RETURN);
+        } else {
+            visitor.visitVarInsn(Opcodes.ALOAD, 0);
+            visitor.visitInsn(Opcodes.ARETURN);
+        }
+        visitor.visitMaxs(0, 0);
+        visitor.visitEnd();
+    }
+
+    /**
+     * Looks up the field of the entity which can be written directly for the value of a with method. This is only possible
+     * if {@link DefaultBuildCommand#withValue(String, Object, ResolveStrategy, boolean)} would simply assign the value, so never for
+     * arrays, Collections or Suppliers. The entity class must be accessible to the generated class, which refers to it.
+     * @return field to write, or {@code null} if the value must be passed through withValue
+     */
+    private static Field findDirectlyAssignableField(Class<?> buildCommandClass, Class<?> entityClass, String fieldName, Class<?> valueType) {
+        boolean directlyAssignable = valueType.isPrimitive() || valueType.isEnum()
+                || (!valueType.isInterface() && !valueType.isArray() && valueType != Object.class
+                && !Collection.class.isAssignableFrom(valueType) && !Supplier.class.isAssignableFrom(valueType));
+        if (!directlyAssignable || !isAccessible(entityClass, buildCommandClass)) {
+            return null;
+        }
+
+        Field field = ReflectionUtils.findField(entityClass, fieldName);
+        return field != null && !Modifier.isStatic(field.getModifiers()) ? field : null;
+    }
+
+    /**
+     * Decides whether the generated class can write the field with a field instruction: the field must be accessible and non-final,
+     * and the value must fit the field without conversion. Otherwise, the field is written through its {@link FieldAccessor}.
+     */
+    private static boolean isWritable(Field field, Class<?> buildCommandClass, Class<?> valueType) {
+        int modifiers = field.getModifiers();
+        boolean fieldAccessible = Modifier.isPublic(modifiers) || (!Modifier.isPrivate(modifiers) && isSameRuntimePackage(field.getDeclaringClass(), buildCommandClass));
+        boolean fits = field.getType() == valueType || (!valueType.isPrimitive() && !field.getType().isPrimitive() && field.getType().isAssignableFrom(valueType));
+        return fieldAccessible && fits && !Modifier.isFinal(modifiers) && isAccessible(field.getDeclaringClass(), buildCommandClass);
+    }
+
+    private static boolean isAccessible(Class<?> type, Class<?> buildCommandClass) {
+        return Modifier.isPublic(type.getModifiers()) || isSameRuntimePackage(type, buildCommandClass);
+    }
+
+    private static boolean isSameRuntimePackage(Class<?> type, Class<?> buildCommandClass) {
+        return type.getClassLoader() == buildCommandClass.getClassLoader() && type.getPackageName().equals(buildCommandClass.getPackageName());
+    }
+
+    /**
+     * Loads the method arguments on the stack, converting them to the given target types (boxing or casting where needed).
+     */
+    private static void loadArguments(MethodVisitor visitor, Class<?>[] parameterTypes, Class<?>[] targetTypes) {
+        int slot = 1;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Type parameterType = Type.getType(parameterTypes[i]);
+            visitor.visitVarInsn(parameterType.getOpcode(Opcodes.ILOAD), slot);
+            slot += parameterType.getSize();
+
+            Class<?> targetType = targetTypes[i];
+            if (parameterTypes[i].isPrimitive() && !targetType.isPrimitive()) {
+                Class<?> wrapperType = ClassUtils.resolvePrimitiveIfNecessary(parameterTypes[i]);
+                visitor.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(wrapperType), "valueOf",
+                        Type.getMethodDescriptor(Type.getType(wrapperType), parameterType), false);
+            } else if (!targetType.isPrimitive() && !targetType.isAssignableFrom(parameterTypes[i])) {
+                visitor.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(targetType));
+            }
+        }
+    }
+
+    /**
+     * Finds the method of {@link AbstractBuildCommand} which is overridden by the given method of a BuildCommand interface.
+     * @param method method of the BuildCommand interface
+     * @return the overridden method, or {@code null} if the method does not override one
+     */
+    private static Method findOverriddenAbstractBuildCommandMethod(Method method) {
+        for (Method candidate : ABSTRACT_BUILD_COMMAND_METHODS) {
+            if (candidate.getName().equals(method.getName()) && candidate.getParameterCount() == method.getParameterCount()
+                    && ClassUtils.isAssignable(candidate.getReturnType(), method.getReturnType())
+                    && parametersAssignable(candidate.getParameterTypes(), method.getParameterTypes())) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static boolean parametersAssignable(Class<?>[] erasedTypes, Class<?>[] types) {
+        for (int i = 0; i < erasedTypes.length; i++) {
+            if (!ClassUtils.isAssignable(erasedTypes[i], types[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Constructor<?> constructorOf(Class<?> type) {
+        try {
+            return type.getConstructor(Persistable.class, Supplier.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Could not find the (entity, repositorySupplier) constructor of " + type.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package nl._42.heph.generation;
+
+/**
+ * How far {@link EntityCopier} copies the values of an entity. Referenced entities are never copied, as the copy should refer to the same entities.
+ */
+public enum CopyDepth {
+
+    /**
+     * The copy shares all values with the original entity, including its collections, maps and arrays.
+     */
+    SHALLOW,
+
+    /**
+     * Collections, maps and arrays are copied into new instances, so changing them does not affect the original entity. Their elements are shared.
+     * JPA requires this for collections which are owned by the entity, such as element collections.
+     */
+    COLLECTIONS
+}
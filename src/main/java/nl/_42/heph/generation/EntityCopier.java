@@ -0,0 +1,178 @@
+package nl._42.heph.generation;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.core.CollectionFactory;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * <p>
+ *     Copies the state of an entity into another instance, field by field. The fields to copy are determined once per entity class and compiled into
+ *     {@link FieldAccessor}s, so a copy costs no more than reading and writing each field. Use {@link #forClass(Class)} to obtain the (cached) copier of a class.
+ * </p>
+ * <p>
+ *     The identifier and the version of the entity are not copied, so the copy is a new entity. The identifier is the field annotated with a JPA or
+ *     Spring Data {@code @Id} (or {@code @EmbeddedId}), or else the field named "id". Static, {@code transient} and {@code @Transient} fields
+ *     are not copied either, as they are not part of the persistent state of the entity.
+ * </p>
+ */
+public final class EntityCopier {
+
+    /** Annotations of the identifier, which are only matched by name, so JPA and Spring Data are not required */
+    private static final Set<String> ID_ANNOTATIONS = Set.of("jakarta.persistence.Id", "jakarta.persistence.EmbeddedId", "org.springframework.data.annotation.Id");
+
+    /** Annotations of fields which are not copied: the version, and fields which are not persisted */
+    private static final Set<String> SKIPPED_ANNOTATIONS = Set.of("jakarta.persistence.Version", "org.springframework.data.annotation.Version",
+            "jakarta.persistence.Transient", "org.springframework.data.annotation.Transient");
+
+    /** Name of the identifier field of entities without an identifier annotation */
+    private static final String DEFAULT_ID_FIELD_NAME = "id";
+
+    /** Copiers which have been compiled before, by entity class */
+    private static final Map<Class<?>, EntityCopier> COPIERS = new ConcurrentHashMap<>();
+
+    /** The fields to copy, in the order of the class hierarchy (subclass first) */
+    private final FieldCopy[] fields;
+
+    /** The identifier field, or {@code null} if the entity has none */
+    private final Field idField;
+
+    private EntityCopier(Class<?> type) {
+        List<Field> candidates = new ArrayList<>();
+        ReflectionUtils.doWithFields(type, candidates::add, field -> !Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()));
+
+        Field annotatedIdField = candidates.stream().filter(field -> hasAnnotation(field, ID_ANNOTATIONS)).findFirst().orElse(null);
+        this.idField = annotatedIdField != null ? annotatedIdField
+                : candidates.stream().filter(field -> field.getName().equals(DEFAULT_ID_FIELD_NAME)).findFirst().orElse(null);
+
+        // A field which hides a field of a superclass with the same name is accessed by name, so only the most specific one is copied
+        Set<String> names = new HashSet<>();
+        List<FieldCopy> fieldCopies = new ArrayList<>(candidates.size());
+        for (Field field : candidates) {
+            if (field != idField && !hasAnnotation(field, SKIPPED_ANNOTATIONS) && names.add(field.getName())) {
+                fieldCopies.add(new FieldCopy(FieldAccessor.forField(type, field.getName()), ValueKind.of(field.getType())));
+            }
+        }
+        this.fields = fieldCopies.toArray(new FieldCopy[0]);
+    }
+
+    /**
+     * Returns the copier of an entity class. The copier is compiled the first time it is requested and reused afterwards.
+     * @param type Class of the entity
+     * @return copier of the entity class
+     */
+    public static EntityCopier forClass(Class<?> type) {
+        return COPIERS.computeIfAbsent(type, EntityCopier::new);
+    }
+
+    /**
+     * Copies the fields of an entity into another instance. The identifier and version of the target are left as they are.
+     * @param source Entity to copy, which must be an instance of the class of this copier
+     * @param target New instance of the class of this copier
+     * @param depth Whether collections, maps and arrays are shared or copied
+     */
+    public void copy(Object source, Object target, CopyDepth depth) {
+        boolean copyContainers = depth == CopyDepth.COLLECTIONS;
+        for (FieldCopy field : fields) {
+            Object value = field.accessor().get(source);
+            if (copyContainers && value != null) {
+                value = field.kind().copy(value, field.accessor().getType());
+            }
+            field.accessor().set(target, value);
+        }
+    }
+
+    /**
+     * @return the identifier field of the entity, or {@code null} if it has none
+     */
+    public Field getIdField() {
+        return idField;
+    }
+
+    private static boolean hasAnnotation(Field field, Set<String> annotationNames) {
+        for (Annotation annotation : field.getDeclaredAnnotations()) {
+            if (annotationNames.contains(annotation.annotationType().getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record FieldCopy(FieldAccessor accessor, ValueKind kind) {
+    }
+
+    /**
+     * The kind of value of a field, determined by its declared type, which decides how it is copied by {@link CopyDepth#COLLECTIONS}.
+     */
+    private enum ValueKind {
+
+        VALUE {
+            @Override
+            Object copy(Object value, Class<?> fieldType) {
+                return value;
+            }
+        },
+
+        ARRAY {
+            @Override
+            Object copy(Object value, Class<?> fieldType) {
+                int length = Array.getLength(value);
+                Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+                System.arraycopy(value, 0, copy, 0, length);
+                return copy;
+            }
+        },
+
+        COLLECTION {
+            @Override
+            @SuppressWarnings("unchecked")
+            Object copy(Object value, Class<?> fieldType) {
+                Collection<Object> original = (Collection<Object>) value;
+                // For interfaces, the copy is a plain collection of the same kind (so an ArrayList instead of a PersistentBag of Hibernate)
+                Collection<Object> copy = isConcrete(fieldType) ? CollectionFactory.createCollection(fieldType, original.size())
+                        : CollectionFactory.createApproximateCollection(original, original.size());
+                copy.addAll(original);
+                return copy;
+            }
+        },
+
+        MAP {
+            @Override
+            @SuppressWarnings("unchecked")
+            Object copy(Object value, Class<?> fieldType) {
+                Map<Object, Object> original = (Map<Object, Object>) value;
+                Map<Object, Object> copy = isConcrete(fieldType) ? CollectionFactory.createMap(fieldType, original.size())
+                        : CollectionFactory.createApproximateMap(original, original.size());
+                copy.putAll(original);
+                return copy;
+            }
+        };
+
+        abstract Object copy(Object value, Class<?> fieldType);
+
+        static ValueKind of(Class<?> fieldType) {
+            if (fieldType.isArray()) {
+                return ARRAY;
+            } else if (Collection.class.isAssignableFrom(fieldType)) {
+                return COLLECTION;
+            } else if (Map.class.isAssignableFrom(fieldType)) {
+                return MAP;
+            }
+            return VALUE;
+        }
+
+        private static boolean isConcrete(Class<?> type) {
+            return !type.isInterface() && !Modifier.isAbstract(type.getModifiers());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package nl._42.heph.generation;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.util.function.Supplier;
+
+import org.springframework.beans.BeanUtils;
+
+/**
+ * Creates suppliers which instantiate entities using their no-args constructor. The constructor may be protected or package-private,
+ * as is common for JPA entities. The constructor is compiled once into a {@link Supplier} implementation (just like a {@code Entity::new}
+ * method reference), so creating an entity costs no more than calling its constructor directly.
+ */
+public final class EntityInstantiator {
+
+    private static final MethodType SUPPLIER_FACTORY_TYPE = MethodType.methodType(Supplier.class);
+    private static final MethodType SUPPLIER_METHOD_TYPE = MethodType.methodType(Object.class);
+
+    private EntityInstantiator() {
+    }
+
+    /**
+     * Compiles the no-args constructor of the given class into a Supplier.
+     * If the class cannot be instantiated this way (for example because it is abstract or has no no-args constructor),
+     * the supplier falls back to {@link BeanUtils#instantiateClass(Class)}, which reports the problem when it is called.
+     * @param type Class to instantiate
+     * @param <T> type of the entity
+     * @return supplier of new instances
+     */
+    public static <T> Supplier<T> forClass(Class<T> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return () -> BeanUtils.instantiateClass(type);
+        }
+
+        MethodHandles.Lookup lookup;
+        MethodHandle constructor;
+        try {
+            lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            constructor = lookup.findConstructor(type, MethodType.methodType(void.class));
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            return () -> BeanUtils.instantiateClass(type);
+        }
+
+        try {
+            return compile(lookup, constructor, type);
+        } catch (LambdaConversionException | IllegalArgumentException e) {
+            // The LambdaMetafactory requires full privilege access to the entity class, which we do not have if it lives in another module.
+            // The constructor handle itself is still much faster than reflection.
+            MethodHandle genericConstructor = constructor.asType(SUPPLIER_METHOD_TYPE);
+            return () -> invoke(genericConstructor);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> compile(MethodHandles.Lookup lookup, MethodHandle constructor, Class<T> type) throws LambdaConversionException {
+        CallSite callSite = LambdaMetafactory.metafactory(lookup, "get", SUPPLIER_FACTORY_TYPE, SUPPLIER_METHOD_TYPE, constructor,
+                MethodType.methodType(type));
+        try {
+            return (Supplier<T>) callSite.getTarget().invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not create the supplier of " + type.getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T invoke(MethodHandle constructor) {
+        try {
+            return (T) (Object) constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
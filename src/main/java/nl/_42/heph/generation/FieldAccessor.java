@@ -0,0 +1,127 @@
+package nl._42.heph.generation;
+
+import static java.lang.String.format;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Reads and writes a single field of an entity, regardless of its visibility. The field is compiled once into a {@link VarHandle},
+ * which is adapted to exact-typed method handles. Unlike {@link Field#get(Object)} and {@link Field#set(Object, Object)}, these
+ * calls do not check accessibility every time and can be inlined by the JIT.
+ * Use {@link #forField(Class, String)} to obtain the (cached) accessor of a field.
+ */
+public final class FieldAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /** Accessors which have been compiled before, by the class they were requested for and the field name */
+    private static final Map<Key, FieldAccessor> ACCESSORS = new ConcurrentHashMap<>();
+
+    /** The accessed field */
+    private final Field field;
+
+    /** Reads the field, of type (Object entity)Object */
+    private final MethodHandle getter;
+
+    /** Writes the field, of type (Object entity, Object value)void */
+    private final MethodHandle setter;
+
+    private FieldAccessor(Field field) {
+        this.field = field;
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup());
+            VarHandle varHandle = lookup.unreflectVarHandle(field);
+            this.getter = varHandle.toMethodHandle(VarHandle.AccessMode.GET).asType(GETTER_TYPE);
+
+            // A VarHandle cannot write final fields, but a setter of an accessible field can (just like Field.set).
+            if (Modifier.isFinal(field.getModifiers())) {
+                ReflectionUtils.makeAccessible(field);
+                this.setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+            } else {
+                this.setter = varHandle.toMethodHandle(VarHandle.AccessMode.SET).asType(SETTER_TYPE);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(format("Could not access field [%s] of [%s]", field.getName(), field.getDeclaringClass().getName()), e);
+        }
+    }
+
+    /**
+     * Returns the accessor of a field, which is declared in the given class or one of its superclasses.
+     * The accessor is compiled the first time it is requested and reused afterwards.
+     * @param type Class containing the field
+     * @param fieldName Name of the field
+     * @return accessor of the field, or {@code null} if the class and its superclasses do not contain a field with this name
+     */
+    public static FieldAccessor forField(Class<?> type, String fieldName) {
+        return ACCESSORS.computeIfAbsent(new Key(type, fieldName), (key) -> {
+            Field field = ReflectionUtils.findField(key.type(), key.fieldName());
+            return field != null && !Modifier.isStatic(field.getModifiers()) ? new FieldAccessor(field) : null;
+        });
+    }
+
+    /**
+     * @return the accessed field
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * @return the declared type of the accessed field
+     */
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    /**
+     * Reads the value of the field.
+     * @param target Object to read the field of
+     * @return value of the field (boxed, if the field has a primitive type)
+     */
+    public Object get(Object target) {
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (Throwable e) {
+            throw handleException(e, "get value from");
+        }
+    }
+
+    /**
+     * Writes the value of the field.
+     * @param target Object to write the field of
+     * @param value New value of the field (boxed, if the field has a primitive type)
+     */
+    public void set(Object target, Object value) {
+        try {
+            setter.invokeExact(target, value);
+        } catch (Throwable e) {
+            throw handleException(e, "apply value to");
+        }
+    }
+
+    private RuntimeException handleException(Throwable e, String action) {
+        // ClassCastExceptions and NullPointerExceptions are thrown by the adapted handles themselves, for values (or targets) that don't fit the field.
+        if (e instanceof ClassCastException || e instanceof NullPointerException) {
+            return new IllegalArgumentException(format("Failed to %s field [%s] of [%s]", action, field.getName(), field.getDeclaringClass().getName()), e);
+        } else if (e instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        } else if (e instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(e);
+    }
+
+    private record Key(Class<?> type, String fieldName) {
+    }
+}
@@ -0,0 +1,63 @@
+package nl._42.heph.generation;
+
+import java.lang.reflect.Constructor;
+import java.util.function.Supplier;
+
+import nl._42.heph.AbstractBuildCommand;
+import nl._42.heph.DefaultBuildCommand;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.domain.Persistable;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Creates BuildCommands using the implementation generated at compile time by the heph-processor annotation processor.
+ * The generated class is named after the BuildCommand interface with the {@link #GENERATED_CLASS_SUFFIX} appended to it,
+ * extends {@link DefaultBuildCommand} and implements the BuildCommand interface directly. No proxies are involved.
+ * @param <BC> the type of the BuildCommand
+ */
+public final class GeneratedBuildCommandFactory<BC extends AbstractBuildCommand> implements BuildCommandFactory<BC> {
+
+    /** Suffix of the generated implementation class. Must be kept in sync with the heph-processor. */
+    public static final String GENERATED_CLASS_SUFFIX = "_Heph";
+
+    /** Constructor of the generated class, taking the entity and the repository supplier */
+    private final Constructor<? extends BC> constructor;
+
+    private GeneratedBuildCommandFactory(Constructor<? extends BC> constructor) {
+        this.constructor = constructor;
+    }
+
+    /**
+     * Looks up the implementation generated for the given BuildCommand interface.
+     * @param buildCommandClass Class of the custom BuildCommand interface
+     * @param <BC> the type of the BuildCommand
+     * @return factory using the generated implementation, or {@code null} if no implementation has been generated
+     */
+    @SuppressWarnings("unchecked")
+    public static <BC extends AbstractBuildCommand> GeneratedBuildCommandFactory<BC> forInterface(Class<BC> buildCommandClass) {
+        String generatedClassName = buildCommandClass.getName().replace('$', '_') + GENERATED_CLASS_SUFFIX;
+        if (!ClassUtils.isPresent(generatedClassName, buildCommandClass.getClassLoader())) {
+            return null;
+        }
+
+        Class<?> generatedClass = ClassUtils.resolveClassName(generatedClassName, buildCommandClass.getClassLoader());
+        if (!buildCommandClass.isAssignableFrom(generatedClass) || !DefaultBuildCommand.class.isAssignableFrom(generatedClass)) {
+            throw new IllegalStateException(String.format("Generated class [%s] must extend [%s] and implement [%s]",
+                    generatedClassName, DefaultBuildCommand.class.getName(), buildCommandClass.getName()));
+        }
+
+        for (Constructor<?> constructor : generatedClass.getConstructors()) {
+            if (constructor.getParameterCount() == 2 && constructor.getParameterTypes()[1] == Supplier.class) {
+                return new GeneratedBuildCommandFactory<>((Constructor<? extends BC>) constructor);
+            }
+        }
+
+        throw new IllegalStateException(String.format("Generated class [%s] has no (entity, repositorySupplier) constructor", generatedClassName));
+    }
+
+    @Override
+    public BC newBuildCommand(Persistable entity, Supplier<?> repositorySupplier) {
+        return BeanUtils.instantiateClass(constructor, entity, repositorySupplier);
+    }
+}
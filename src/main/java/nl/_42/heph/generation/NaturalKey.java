@@ -0,0 +1,128 @@
+package nl._42.heph.generation;
+
+import static java.lang.String.format;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl._42.heph.AbstractBuildCommand;
+import nl._42.heph.FixtureKey;
+
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * The natural key of the entity of a BuildCommand interface, as declared by the {@link FixtureKey} annotations on its "with" methods and on the fields of its entity.
+ * The key is resolved once per BuildCommand interface. Use {@link #forBuildCommand(Class)} to obtain the (cached) key of an interface.
+ */
+public final class NaturalKey {
+
+    /** Keys which have been resolved before, by BuildCommand interface */
+    private static final Map<Class<?>, NaturalKey> KEYS = new ConcurrentHashMap<>();
+
+    /** Accessors of the key fields, ordered by field name */
+    private final List<FieldAccessor> accessors;
+
+    /** Matchers which only compare the key fields, by entity class */
+    private final Map<Class<?>, ExampleMatcher> matchers = new ConcurrentHashMap<>();
+
+    private NaturalKey(List<FieldAccessor> accessors) {
+        this.accessors = accessors;
+    }
+
+    /**
+     * Returns the natural key of the entity of a BuildCommand interface. The key is resolved the first time it is requested and reused afterwards.
+     * @param buildCommandClass Class of the custom BuildCommand interface
+     * @return natural key, which is empty if no {@link FixtureKey} annotations are present. If an annotated "with" method does not map to a field of the entity,
+     * an {@link IllegalStateException} is thrown.
+     */
+    public static NaturalKey forBuildCommand(Class<?> buildCommandClass) {
+        return KEYS.computeIfAbsent(buildCommandClass, NaturalKey::resolve);
+    }
+
+    private static NaturalKey resolve(Class<?> buildCommandClass) {
+        Class<?>[] genericTypes = GenericTypeResolver.resolveTypeArguments(buildCommandClass, AbstractBuildCommand.class);
+        if (genericTypes == null || genericTypes[0] == null) {
+            return new NaturalKey(Collections.emptyList());
+        }
+
+        Map<String, FieldAccessor> accessors = new TreeMap<>();
+        for (Method method : buildCommandClass.getMethods()) {
+            if (method.isAnnotationPresent(FixtureKey.class)) {
+                WithMethodDescriptor descriptor = WithMethodDescriptor.forMethod(buildCommandClass, method);
+                if (descriptor.getAccessor() == null) {
+                    throw new IllegalStateException(format("Method [%s] of buildCommand [%s] is annotated with @FixtureKey, but field [%s] is not present in the entity class or its superclasses",
+                            method.getName(), buildCommandClass.getName(), descriptor.getFieldName()));
+                }
+                accessors.put(descriptor.getFieldName(), descriptor.getAccessor());
+            }
+        }
+
+        ReflectionUtils.doWithFields(genericTypes[0],
+                field -> accessors.putIfAbsent(field.getName(), FieldAccessor.forField(field.getDeclaringClass(), field.getName())),
+                field -> field.isAnnotationPresent(FixtureKey.class) && !Modifier.isStatic(field.getModifiers()));
+
+        return new NaturalKey(List.copyOf(accessors.values()));
+    }
+
+    /**
+     * @return Whether no natural key has been declared
+     */
+    public boolean isEmpty() {
+        return accessors.isEmpty();
+    }
+
+    /**
+     * @return Names of the key fields, ordered by name
+     */
+    public List<String> getFieldNames() {
+        return accessors.stream().map(accessor -> accessor.getField().getName()).toList();
+    }
+
+    /**
+     * Returns the values of the key fields of an entity. The result can be compared with the key of another entity.
+     * @param entity Entity to get the key of
+     * @return value of the only key field, or a list of the values of all key fields (in the order of {@link #getFieldNames()})
+     */
+    public Object valueOf(Object entity) {
+        if (accessors.size() == 1) {
+            return accessors.get(0).get(entity);
+        }
+
+        List<Object> values = new ArrayList<>(accessors.size());
+        for (FieldAccessor accessor : accessors) {
+            values.add(accessor.get(entity));
+        }
+        return values;
+    }
+
+    /**
+     * Returns an example which matches the entities with the same key values as the given entity. All other fields are ignored,
+     * and a key field without value only matches entities without value for that field.
+     * @param entity Entity to find
+     * @param <T> type of the entity
+     * @return example to pass to the repository
+     */
+    public <T> Example<T> toExample(T entity) {
+        return Example.of(entity, matchers.computeIfAbsent(entity.getClass(), this::createMatcher));
+    }
+
+    private ExampleMatcher createMatcher(Class<?> entityClass) {
+        List<String> keyFieldNames = getFieldNames();
+        List<String> ignoredPaths = new ArrayList<>();
+        ReflectionUtils.doWithFields(entityClass, field -> ignoredPaths.add(field.getName()),
+                field -> !Modifier.isStatic(field.getModifiers()) && !keyFieldNames.contains(field.getName()));
+
+        return ExampleMatcher.matching()
+                .withIncludeNullValues()
+                .withIgnorePaths(ignoredPaths.toArray(String[]::new));
+    }
+}
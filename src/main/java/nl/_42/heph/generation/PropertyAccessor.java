@@ -0,0 +1,113 @@
+package nl._42.heph.generation;
+
+import static java.lang.String.format;
+
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Calls the getter and the setter of a single property of an entity. Unlike {@link FieldAccessor}, this goes through the methods of the entity,
+ * so any logic in the getter or setter is applied. This is used by the lazy references (see {@link nl._42.heph.lazy.LazyEntity}).
+ * The property is introspected and its methods are compiled into exact-typed method handles once per entity class and property.
+ * Use {@link #forProperty(Class, String)} to obtain the (cached) accessor of a property.
+ */
+public final class PropertyAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /** Accessors which have been compiled before, by entity class and property name */
+    private static final Map<Key, PropertyAccessor> ACCESSORS = new ConcurrentHashMap<>();
+
+    /** The getter of the property */
+    private final Method readMethod;
+
+    /** The setter of the property */
+    private final Method writeMethod;
+
+    /** Calls the getter, of type (Object entity)Object */
+    private final MethodHandle getter;
+
+    /** Calls the setter, of type (Object entity, Object value)void */
+    private final MethodHandle setter;
+
+    private PropertyAccessor(Method readMethod, Method writeMethod) {
+        this.readMethod = readMethod;
+        this.writeMethod = writeMethod;
+
+        // The methods are public, but the entity class itself may not be. Accessible methods can be unreflected regardless.
+        ReflectionUtils.makeAccessible(readMethod);
+        ReflectionUtils.makeAccessible(writeMethod);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            this.getter = lookup.unreflect(readMethod).asType(GETTER_TYPE);
+            this.setter = lookup.unreflect(writeMethod).asType(SETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(format("Failed to apply lazy value to [%s]: ", readMethod.getDeclaringClass().getName()), e);
+        }
+    }
+
+    /**
+     * Returns the accessor of a property, which must have both a getter and a setter.
+     * The accessor is compiled the first time it is requested and reused afterwards.
+     * @param type Class of the entity
+     * @param propertyName Name of the property
+     * @return accessor of the property. If the property does not have a getter and a setter, an {@link IllegalStateException} is thrown.
+     */
+    public static PropertyAccessor forProperty(Class<?> type, String propertyName) {
+        return ACCESSORS.computeIfAbsent(new Key(type, propertyName), (key) -> {
+            PropertyDescriptor pd;
+
+            try {
+                pd = new PropertyDescriptor(key.propertyName(), key.type());
+            } catch (IntrospectionException e) {
+                throw new IllegalStateException(format("Failed to apply lazy value to [%s]: ", key.type().getName()), e);
+            }
+
+            return new PropertyAccessor(pd.getReadMethod(), pd.getWriteMethod());
+        });
+    }
+
+    /**
+     * Calls the getter of the property.
+     * @param target Entity to get the value from
+     * @return value returned by the getter
+     */
+    public Object get(Object target) {
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalArgumentException(format("Failed to call method [%s] to get value from object of class [%s]",
+                    readMethod.getName(), target.getClass().getName()), e);
+        }
+    }
+
+    /**
+     * Calls the setter of the property.
+     * @param target Entity to apply the value to
+     * @param value Value to pass to the setter
+     */
+    public void set(Object target, Object value) {
+        try {
+            setter.invokeExact(target, value);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalArgumentException(format("Failed to call method [%s] to apply value to object of class [%s]",
+                    writeMethod.getName(), target.getClass().getName()), e);
+        }
+    }
+
+    private record Key(Class<?> type, String propertyName) {
+    }
+}
@@ -0,0 +1,111 @@
+package nl._42.heph.generation;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl._42.heph.AbstractBuildCommand;
+import nl._42.heph.lazy.EntityField;
+import nl._42.heph.lazy.EntityId;
+import nl._42.heph.lazy.Resolve;
+import nl._42.heph.lazy.ResolveStrategy;
+
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.util.StringUtils;
+
+/**
+ * Describes how a "with" method of a BuildCommand interface applies its value to the entity: the accessor of the affected field and the instructions
+ * of the {@link Resolve}, {@link EntityField} and {@link EntityId} annotations. Descriptors are immutable and resolved once per
+ * BuildCommand interface and method, so calling a "with" method does not need to inspect the method or the entity class again.
+ * Use {@link #forMethod(Class, Method)} to obtain the (cached) descriptor of a method.
+ */
+public final class WithMethodDescriptor {
+
+    /** Descriptors which have been resolved before, by BuildCommand interface and method */
+    private static final Map<Key, WithMethodDescriptor> DESCRIPTORS = new ConcurrentHashMap<>();
+
+    /** Name of the field to set in the entity */
+    private final String fieldName;
+
+    /** Accessor of the field of the entity, or {@code null} if it could not be resolved from the BuildCommand interface */
+    private final FieldAccessor accessor;
+
+    /** Moment to resolve a supplied value */
+    private final ResolveStrategy resolveStrategy;
+
+    /** Whether the ID of the value must be set, rather than the value itself */
+    private final boolean entityId;
+
+    private WithMethodDescriptor(String fieldName, FieldAccessor accessor, ResolveStrategy resolveStrategy, boolean entityId) {
+        this.fieldName = fieldName;
+        this.accessor = accessor;
+        this.resolveStrategy = resolveStrategy;
+        this.entityId = entityId;
+    }
+
+    /**
+     * Returns the descriptor of a "with" method. The descriptor is resolved the first time it is requested and reused afterwards.
+     * @param buildCommandClass Class of the custom BuildCommand interface
+     * @param method "with" method of the BuildCommand interface (which may be declared in a super interface)
+     * @return descriptor of the method
+     */
+    public static WithMethodDescriptor forMethod(Class<?> buildCommandClass, Method method) {
+        return DESCRIPTORS.computeIfAbsent(new Key(buildCommandClass, method), (key) -> resolve(key.buildCommandClass(), key.method()));
+    }
+
+    private static WithMethodDescriptor resolve(Class<?> buildCommandClass, Method method) {
+        // Example: Method name = "withFirstName". Field name is then "firstName", unless overridden by the EntityField annotation.
+        EntityField entityFieldAnnotation = method.getAnnotation(EntityField.class);
+        String fieldName = entityFieldAnnotation != null
+                ? entityFieldAnnotation.value()
+                : StringUtils.uncapitalize(method.getName().substring(BuildCommandPointcut.WITH_PREFIX.length()));
+
+        Resolve resolveAnnotation = method.getAnnotation(Resolve.class);
+        ResolveStrategy resolveStrategy = resolveAnnotation != null ? resolveAnnotation.value() : ResolveStrategy.BEFORE_CREATE;
+
+        return new WithMethodDescriptor(fieldName, findAccessor(buildCommandClass, fieldName), resolveStrategy, method.isAnnotationPresent(EntityId.class));
+    }
+
+    /**
+     * Looks up the field in the entity type of the BuildCommand interface. If the entity type cannot be resolved, or the field is only
+     * declared by a subclass of it, the field is looked up in the class of the actual entity when the method is called.
+     */
+    private static FieldAccessor findAccessor(Class<?> buildCommandClass, String fieldName) {
+        Class<?>[] genericTypes = GenericTypeResolver.resolveTypeArguments(buildCommandClass, AbstractBuildCommand.class);
+        if (genericTypes == null || genericTypes[0] == null) {
+            return null;
+        }
+        return FieldAccessor.forField(genericTypes[0], fieldName);
+    }
+
+    /**
+     * @return Name of the field to set in the entity (the value of the {@link EntityField} annotation, if present)
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * @return Accessor of the field of the entity, or {@code null} if it must be looked up in the class of the actual entity
+     */
+    public FieldAccessor getAccessor() {
+        return accessor;
+    }
+
+    /**
+     * @return Moment to resolve a supplied value, see {@link Resolve}
+     */
+    public ResolveStrategy getResolveStrategy() {
+        return resolveStrategy;
+    }
+
+    /**
+     * @return Whether the database ID of the value must be used instead of the actual object, see {@link EntityId}
+     */
+    public boolean isEntityId() {
+        return entityId;
+    }
+
+    private record Key(Class<?> buildCommandClass, Method method) {
+    }
+}
@@ -0,0 +1,410 @@
+package nl._42.heph.junit;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.sql.DataSource;
+
+/**
+ * The rows which were inserted into the database while building fixtures. The snapshot only contains the tables (of the current schema)
+ * which were empty before and contain rows after the build. It is a plain JDBC copy, so it works for any database. Restoring the snapshot
+ * inserts the rows in the order of the foreign keys between the tables, and moves the identity columns past the restored ids
+ * so entities created afterwards do not collide with them (H2 and PostgreSQL only). On H2, the referential integrity checks are
+ * disabled for the whole database during the restore, so tables which reference each other can be restored as well. A snapshot can be written to a stream,
+ * so it can be restored by a later test run (see {@link FixtureSnapshotCache}).
+ */
+final class DatasetSnapshot {
+
+    /** Number of rows inserted per JDBC batch */
+    private static final int BATCH_SIZE = 1000;
+
+    /** Tables in insertion order: tables which are referenced by foreign keys come first */
+    private final List<TableSnapshot> tables;
+
+    /** Statements which move the identity columns past the restored ids */
+    private final List<String> identityStatements;
+
+    /** Whether the database is H2, which allows disabling the referential integrity checks */
+    private final boolean h2;
+
+    private DatasetSnapshot(List<TableSnapshot> tables, List<String> identityStatements, boolean h2) {
+        this.tables = tables;
+        this.identityStatements = identityStatements;
+        this.h2 = h2;
+    }
+
+    /**
+     * Builds the fixtures and copies the rows they inserted.
+     * @param dataSource DataSource of the database the fixtures are stored in
+     * @param build Builds the fixtures. Must commit its changes.
+     * @return snapshot of the tables which were filled by the build. If a table which already contained rows is changed by the build,
+     * an {@link IllegalStateException} is thrown, as its rows can not be restored without duplicating the existing ones.
+     * @throws SQLException if the tables could not be read
+     */
+    static DatasetSnapshot take(DataSource dataSource, Runnable build) throws SQLException {
+        Map<String, Long> rowCountsBefore;
+        try (Connection connection = dataSource.getConnection()) {
+            rowCountsBefore = countRows(connection);
+        }
+
+        build.run();
+
+        try (Connection connection = dataSource.getConnection()) {
+            Map<String, Long> rowCountsAfter = countRows(connection);
+
+            Set<String> filledTables = new TreeSet<>();
+            rowCountsAfter.forEach((table, rowCount) -> {
+                long rowCountBefore = rowCountsBefore.getOrDefault(table, 0L);
+                if (rowCountBefore == 0 && rowCount > 0) {
+                    filledTables.add(table);
+                } else if (rowCountBefore > 0 && rowCount != rowCountBefore) {
+                    throw new IllegalStateException(format("Table [%s] already contained %d rows before the fixtures were built, and %d afterwards. " +
+                            "Empty the table before the first test, so its rows can be restored.", table, rowCountBefore, rowCount));
+                }
+            });
+
+            List<TableSnapshot> tables = new ArrayList<>();
+            List<String> identityStatements = new ArrayList<>();
+            for (String table : sortByDependencies(connection, filledTables)) {
+                TableSnapshot snapshot = TableSnapshot.read(connection, table);
+                tables.add(snapshot);
+                identityStatements.addAll(snapshot.identityStatements(connection));
+            }
+            return new DatasetSnapshot(tables, identityStatements, "H2".equals(connection.getMetaData().getDatabaseProductName()));
+        }
+    }
+
+    /**
+     * Empties the tables of the snapshot and inserts the rows of the snapshot again, in a single transaction. The identity columns are moved
+     * afterwards, because on H2 {@code ALTER TABLE ... RESTART WITH} is DDL which commits implicitly. So the restore is not atomic:
+     * if moving an identity column fails, the rows have already been restored. On H2, {@code SET REFERENTIAL_INTEGRITY} applies to the whole
+     * database, so the foreign keys are not checked for concurrent connections either while the rows are restored.
+     * @param dataSource DataSource of the database to restore the rows in
+     * @throws SQLException if the rows or identity columns could not be restored. The rows are unchanged if restoring them failed.
+     */
+    void restore(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    if (h2) {
+                        statement.execute("SET REFERENTIAL_INTEGRITY FALSE");
+                    }
+                    for (int i = tables.size() - 1; i >= 0; i--) {
+                        statement.executeUpdate("DELETE FROM " + tables.get(i).quotedName);
+                    }
+                }
+                for (TableSnapshot table : tables) {
+                    table.insert(connection);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                if (h2) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("SET REFERENTIAL_INTEGRITY TRUE");
+                    }
+                }
+                connection.setAutoCommit(autoCommit);
+            }
+
+            // Executed after the commit, as they would commit the inserted rows themselves on H2 anyway
+            try (Statement statement = connection.createStatement()) {
+                for (String identityStatement : identityStatements) {
+                    statement.execute(identityStatement);
+                }
+            }
+            if (!autoCommit) {
+                connection.commit();
+            }
+        }
+    }
+
+    /**
+     * Writes the snapshot, so it can be restored by a later run with {@link #read(ObjectInputStream, DataSource)}. Only the data is written:
+     * the statements to restore it are built again when the snapshot is read, so a file never contains SQL that is executed as-is.
+     * @param out stream to write to
+     * @throws IOException if the snapshot could not be written, for example because a column value is not serializable
+     */
+    void write(ObjectOutputStream out) throws IOException {
+        out.writeInt(tables.size());
+        for (TableSnapshot table : tables) {
+            out.writeUTF(table.name);
+            out.writeObject(table.columns.toArray(new String[0]));
+            out.writeObject(table.columnTypes);
+            out.writeInt(table.rows.size());
+            for (Object[] row : table.rows) {
+                out.writeObject(row);
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot which has been written by {@link #write(ObjectOutputStream)}.
+     * @param in stream to read from
+     * @param dataSource DataSource of the database the snapshot will be restored in, used to quote the names of the tables and columns
+     * and to build the statements which move the identity columns past the restored ids
+     * @return the snapshot
+     * @throws IOException if the snapshot could not be read
+     * @throws SQLException if the metadata of the database could not be read
+     */
+    static DatasetSnapshot read(ObjectInputStream in, DataSource dataSource) throws IOException, SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            int tableCount = in.readInt();
+            List<TableSnapshot> tables = new ArrayList<>(tableCount);
+            for (int i = 0; i < tableCount; i++) {
+                String name = in.readUTF();
+                List<String> columns = List.of((String[]) in.readObject());
+                int[] columnTypes = (int[]) in.readObject();
+                int rowCount = in.readInt();
+                List<Object[]> rows = new ArrayList<>(rowCount);
+                for (int j = 0; j < rowCount; j++) {
+                    rows.add((Object[]) in.readObject());
+                }
+                tables.add(new TableSnapshot(metaData, name, columns, columnTypes, rows));
+            }
+
+            List<String> identityStatements = new ArrayList<>();
+            for (TableSnapshot table : tables) {
+                identityStatements.addAll(table.identityStatements(connection));
+            }
+            return new DatasetSnapshot(tables, identityStatements, "H2".equals(metaData.getDatabaseProductName()));
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Snapshot contains unexpected data", e);
+        }
+    }
+
+    private static Map<String, Long> countRows(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        List<String> tables = new ArrayList<>();
+        try (ResultSet resultSet = metaData.getTables(connection.getCatalog(), connection.getSchema(), "%", null)) {
+            while (resultSet.next()) {
+                String tableType = resultSet.getString("TABLE_TYPE");
+                // Most drivers report "TABLE", but H2 2.x reports "BASE TABLE"
+                if ("TABLE".equals(tableType) || "BASE TABLE".equals(tableType)) {
+                    tables.add(resultSet.getString("TABLE_NAME"));
+                }
+            }
+        }
+
+        Map<String, Long> rowCounts = new TreeMap<>();
+        try (Statement statement = connection.createStatement()) {
+            for (String table : tables) {
+                try (ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + quote(metaData, table))) {
+                    resultSet.next();
+                    rowCounts.put(table, resultSet.getLong(1));
+                }
+            }
+        }
+        return rowCounts;
+    }
+
+    /**
+     * Orders the tables so every table comes after the tables it references. References of a table to itself and cyclic references
+     * between tables are ignored.
+     */
+    private static List<String> sortByDependencies(Connection connection, Set<String> tables) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        Map<String, Set<String>> dependencies = new TreeMap<>();
+        for (String table : tables) {
+            Set<String> referencedTables = new TreeSet<>();
+            try (ResultSet resultSet = metaData.getImportedKeys(connection.getCatalog(), connection.getSchema(), table)) {
+                while (resultSet.next()) {
+                    String referencedTable = resultSet.getString("PKTABLE_NAME");
+                    if (tables.contains(referencedTable) && !referencedTable.equals(table)) {
+                        referencedTables.add(referencedTable);
+                    }
+                }
+            }
+            dependencies.put(table, referencedTables);
+        }
+
+        List<String> sorted = new ArrayList<>(tables.size());
+        Set<String> visited = new HashSet<>();
+        for (String table : dependencies.keySet()) {
+            visit(table, dependencies, visited, sorted);
+        }
+        return sorted;
+    }
+
+    private static void visit(String table, Map<String, Set<String>> dependencies, Set<String> visited, List<String> sorted) {
+        if (!visited.add(table)) {
+            return;
+        }
+        for (String referencedTable : dependencies.get(table)) {
+            visit(referencedTable, dependencies, visited, sorted);
+        }
+        sorted.add(table);
+    }
+
+    /**
+     * Quotes an identifier. Quotes within the identifier are doubled, as table and column names may be read from a snapshot file.
+     */
+    private static String quote(DatabaseMetaData metaData, String identifier) throws SQLException {
+        String quote = metaData.getIdentifierQuoteString().trim();
+        return quote + identifier.replace(quote, quote + quote) + quote;
+    }
+
+    /**
+     * The rows of a single table.
+     */
+    private static final class TableSnapshot {
+
+        private final String name;
+        private final String quotedName;
+        private final List<String> columns;
+        private final int[] columnTypes;
+        private final List<Object[]> rows;
+        private final String insertSql;
+
+        private TableSnapshot(DatabaseMetaData metaData, String name, List<String> columns, int[] columnTypes, List<Object[]> rows) throws SQLException {
+            this.name = name;
+            this.quotedName = quote(metaData, name);
+            this.columns = columns;
+            this.columnTypes = columnTypes;
+            this.rows = rows;
+
+            List<String> quotedColumns = new ArrayList<>(columns.size());
+            for (String column : columns) {
+                quotedColumns.add(quote(metaData, column));
+            }
+            this.insertSql = format("INSERT INTO %s (%s) VALUES (%s)", quotedName, String.join(", ", quotedColumns),
+                    String.join(", ", Collections.nCopies(columns.size(), "?")));
+        }
+
+        static TableSnapshot read(Connection connection, String table) throws SQLException {
+            DatabaseMetaData metaData = connection.getMetaData();
+
+            // Rows are read in the order of the primary key, so rows which reference an earlier row of the same table are inserted after it
+            Map<Short, String> primaryKey = new TreeMap<>();
+            try (ResultSet resultSet = metaData.getPrimaryKeys(connection.getCatalog(), connection.getSchema(), table)) {
+                while (resultSet.next()) {
+                    primaryKey.put(resultSet.getShort("KEY_SEQ"), quote(metaData, resultSet.getString("COLUMN_NAME")));
+                }
+            }
+            String sql = "SELECT * FROM " + quote(metaData, table) + (primaryKey.isEmpty() ? "" : " ORDER BY " + String.join(", ", primaryKey.values()));
+
+            try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+                ResultSetMetaData resultSetMetaData = resultSet.getMetaData();
+                int columnCount = resultSetMetaData.getColumnCount();
+                List<String> columns = new ArrayList<>(columnCount);
+                int[] columnTypes = new int[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    columns.add(resultSetMetaData.getColumnName(i + 1));
+                    columnTypes[i] = resultSetMetaData.getColumnType(i + 1);
+                }
+
+                List<Object[]> rows = new ArrayList<>();
+                while (resultSet.next()) {
+                    Object[] row = new Object[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        row[i] = detach(resultSet.getObject(i + 1));
+                    }
+                    rows.add(row);
+                }
+                return new TableSnapshot(metaData, table, columns, columnTypes, rows);
+            }
+        }
+
+        /**
+         * LOBs are only valid as long as the connection they were read with is open, so their contents are copied.
+         */
+        private static Object detach(Object value) throws SQLException {
+            if (value instanceof Blob blob) {
+                return blob.getBytes(1, (int) blob.length());
+            } else if (value instanceof Clob clob) {
+                return clob.getSubString(1, (int) clob.length());
+            }
+            return value;
+        }
+
+        void insert(Connection connection) throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+                int batched = 0;
+                for (Object[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        if (row[i] == null) {
+                            statement.setNull(i + 1, columnTypes[i]);
+                        } else {
+                            statement.setObject(i + 1, row[i]);
+                        }
+                    }
+                    statement.addBatch();
+                    if (++batched % BATCH_SIZE == 0) {
+                        statement.executeBatch();
+                    }
+                }
+                if (batched % BATCH_SIZE != 0) {
+                    statement.executeBatch();
+                }
+            }
+        }
+
+        /**
+         * Returns the statements which let the identity columns of the table continue after the highest restored value.
+         * Restoring a row with an explicit id does not advance the identity column, so otherwise the next insert would reuse that id.
+         */
+        List<String> identityStatements(Connection connection) throws SQLException {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String databaseProductName = metaData.getDatabaseProductName();
+
+            Map<String, Long> maxValues = new LinkedHashMap<>();
+            try (ResultSet resultSet = metaData.getColumns(connection.getCatalog(), connection.getSchema(), name, "%")) {
+                while (resultSet.next()) {
+                    if ("YES".equals(resultSet.getString("IS_AUTOINCREMENT"))) {
+                        String column = resultSet.getString("COLUMN_NAME");
+                        maxValues.put(column, maxValue(columns.indexOf(column)));
+                    }
+                }
+            }
+
+            List<String> statements = new ArrayList<>();
+            for (Map.Entry<String, Long> maxValue : maxValues.entrySet()) {
+                if ("H2".equals(databaseProductName)) {
+                    statements.add(format("ALTER TABLE %s ALTER COLUMN %s RESTART WITH %d", quotedName, quote(metaData, maxValue.getKey()), maxValue.getValue() + 1));
+                } else if ("PostgreSQL".equals(databaseProductName)) {
+                    statements.add(format("SELECT setval(pg_get_serial_sequence('%s', '%s'), %d)", quotedName.replace("'", "''"), maxValue.getKey().replace("'", "''"),
+                            Math.max(maxValue.getValue(), 1)));
+                }
+            }
+            return statements;
+        }
+
+        private long maxValue(int columnIndex) {
+            long maxValue = 0;
+            if (columnIndex >= 0) {
+                for (Object[] row : rows) {
+                    if (row[columnIndex] instanceof Number number) {
+                        maxValue = Math.max(maxValue, number.longValue());
+                    }
+                }
+            }
+            return maxValue;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package nl._42.heph.junit;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a test class which builds the fixtures shared by all tests of the class. The method must not have parameters.
+ * The method is only called before the first test; the {@link FixtureSnapshotExtension} restores the resulting rows before every other test.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface FixtureSnapshot {
+}
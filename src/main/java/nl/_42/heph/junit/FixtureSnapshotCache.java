@@ -0,0 +1,294 @@
+package nl._42.heph.junit;
+
+import static java.lang.String.format;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.sql.DataSource;
+
+import nl._42.heph.AbstractBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ClassUtils;
+
+/**
+ * <p>
+ *     Stores {@link DatasetSnapshot}s in compressed files, so later test runs can restore the fixtures of a test class instead of building them.
+ *     A file belongs to a fingerprint of everything the fixtures depend on: the bytecode of the test class, of the builders in the ApplicationContext,
+ *     of their BuildCommand interfaces, of the entities, embeddables, entity listeners and converters known to JPA (including the nested classes and
+ *     the superclasses and -interfaces of all of them, so also Heph itself) and the columns of the schema. When any of them changes, the fingerprint
+ *     changes and the fixtures are built again. Files of an older fingerprint are then replaced.
+ * </p>
+ * <p>
+ *     Other classes called by the fixtures, such as helper classes, are not part of the fingerprint. Delete the directory of the files
+ *     after changing them.
+ * </p>
+ * <p>
+ *     Files which can not be read are ignored, and snapshots which can not be written (for example because of a column type which is not serializable)
+ *     are only kept in memory, so the cache never fails a test.
+ * </p>
+ */
+final class FixtureSnapshotCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(FixtureSnapshotCache.class);
+
+    /** Version of the file format, which is part of the fingerprint */
+    private static final String FORMAT_VERSION = "2";
+
+    private static final String FILE_EXTENSION = ".snapshot.gz";
+
+    private static final String ENTITY_MANAGER_FACTORY_CLASS_NAME = "jakarta.persistence.EntityManagerFactory";
+
+    /** Only JDK value types are read from the files: the values of the columns, and the arrays of the snapshot */
+    private static final ObjectInputFilter VALUE_FILTER = ObjectInputFilter.Config.createFilter(
+            "java.lang.*;java.math.*;java.time.*;java.sql.*;java.util.Date;java.util.UUID;!*");
+
+    private final Path directory;
+
+    /**
+     * @param directory Directory of the files, which is created when the first snapshot is stored
+     */
+    FixtureSnapshotCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Determines the fingerprint of the fixtures of a test class.
+     * @param testClass Class with the {@link FixtureSnapshot} methods
+     * @param applicationContext ApplicationContext of the test, which contains the builders
+     * @param dataSource DataSource of the database the fixtures are stored in
+     * @return the fingerprint, as hexadecimal string
+     * @throws IOException if the bytecode of a class could not be read
+     * @throws SQLException if the schema could not be read
+     */
+    String fingerprint(Class<?> testClass, ApplicationContext applicationContext, DataSource dataSource) throws IOException, SQLException {
+        MessageDigest digest = newDigest();
+        update(digest, FORMAT_VERSION);
+        for (Map.Entry<String, byte[]> bytecode : readClasses(testClass, applicationContext).entrySet()) {
+            update(digest, bytecode.getKey());
+            digest.update(bytecode.getValue());
+        }
+        for (String column : describeSchema(dataSource)) {
+            update(digest, column);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Reads the bytecode of the classes which are part of the fingerprint: the test class, the builders and their BuildCommands, the classes
+     * managed by JPA (if present), and all nested, local and anonymous classes of them, each with their superclasses and interfaces.
+     * @param testClass Class with the {@link FixtureSnapshot} methods
+     * @param applicationContext ApplicationContext of the test, which contains the builders
+     * @return the bytecode by class name. Classes are sorted by name, so the order of the beans does not affect the fingerprint.
+     * @throws IOException if the bytecode of a class could not be read
+     */
+    Map<String, byte[]> readClasses(Class<?> testClass, ApplicationContext applicationContext) throws IOException {
+        Map<String, Class<?>> classes = new TreeMap<>();
+        addTypeHierarchy(testClass, classes);
+        for (AbstractBuilder<?, ?> builder : applicationContext.getBeansOfType(AbstractBuilder.class).values()) {
+            Class<?> builderClass = ClassUtils.getUserClass(builder);
+            addTypeHierarchy(builderClass, classes);
+            Class<?> buildCommandClass = ResolvableType.forClass(builderClass).as(AbstractBuilder.class).resolveGeneric(1);
+            if (buildCommandClass != null) {
+                addTypeHierarchy(buildCommandClass, classes);
+            }
+        }
+        // Entities are part of the fixtures too: their field defaults, callbacks and converters determine the inserted rows
+        if (ClassUtils.isPresent(ENTITY_MANAGER_FACTORY_CLASS_NAME, applicationContext.getClassLoader())) {
+            for (Class<?> managedType : JpaManagedTypes.of(applicationContext)) {
+                addTypeHierarchy(managedType, classes);
+            }
+        }
+
+        // Nested classes are compiled to class files of their own, and may have nested classes (and new supertypes) themselves
+        Map<String, byte[]> bytecodes = new TreeMap<>();
+        while (bytecodes.size() < classes.size()) {
+            for (Class<?> type : List.copyOf(classes.values())) {
+                if (!bytecodes.containsKey(type.getName())) {
+                    byte[] bytecode = readBytecode(type);
+                    bytecodes.put(type.getName(), bytecode);
+                    for (String nestedClassName : readNestedClassNames(bytecode)) {
+                        addTypeHierarchy(loadClass(nestedClassName, type), classes);
+                    }
+                }
+            }
+        }
+        return bytecodes;
+    }
+
+    /**
+     * Reads the snapshot of a test class.
+     * @param testClass Class with the {@link FixtureSnapshot} methods
+     * @param fingerprint Current fingerprint of the fixtures
+     * @param dataSource DataSource of the database the snapshot will be restored in
+     * @return the snapshot, or {@code null} if there is no (readable) snapshot for the fingerprint
+     */
+    DatasetSnapshot load(Class<?> testClass, String fingerprint, DataSource dataSource) {
+        Path file = resolve(testClass, fingerprint);
+        try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file))))) {
+            in.setObjectInputFilter(VALUE_FILTER);
+            return DatasetSnapshot.read(in, dataSource);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | SQLException | RuntimeException e) {
+            logger.warn("Could not read fixture snapshot [{}], building the fixtures instead", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot of a test class, replacing the snapshots of other fingerprints. The file is written under a temporary name first,
+     * so tests which run concurrently in other JVMs never read a partial file.
+     * @param testClass Class with the {@link FixtureSnapshot} methods
+     * @param fingerprint Current fingerprint of the fixtures
+     * @param snapshot Snapshot of the fixtures
+     */
+    void store(Class<?> testClass, String fingerprint, DatasetSnapshot snapshot) {
+        Path file = resolve(testClass, fingerprint);
+        Path temporaryFile = null;
+        try {
+            Files.createDirectories(directory);
+            deleteOtherFingerprints(testClass, file);
+            temporaryFile = Files.createTempFile(directory, testClass.getName(), ".tmp");
+            try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile))))) {
+                snapshot.write(out);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not write fixture snapshot [{}], the fixtures will be built again in the next run", file, e);
+            if (temporaryFile != null) {
+                try {
+                    Files.deleteIfExists(temporaryFile);
+                } catch (IOException ignored) {
+                    // The next run writes a new temporary file anyway
+                }
+            }
+        }
+    }
+
+    private Path resolve(Class<?> testClass, String fingerprint) {
+        return directory.resolve(testClass.getName() + "-" + fingerprint + FILE_EXTENSION);
+    }
+
+    private void deleteOtherFingerprints(Class<?> testClass, Path file) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, testClass.getName() + "-*" + FILE_EXTENSION)) {
+            for (Path other : files) {
+                if (!other.equals(file)) {
+                    Files.deleteIfExists(other);
+                }
+            }
+        }
+    }
+
+    private static byte[] readBytecode(Class<?> type) throws IOException {
+        try (InputStream bytecode = type.getResourceAsStream(ClassUtils.getClassFileName(type))) {
+            if (bytecode == null) {
+                throw new IOException(format("Could not read the bytecode of class [%s]", type.getName()));
+            }
+            return bytecode.readAllBytes();
+        }
+    }
+
+    /**
+     * Returns the names of the classes declared within a class, according to its InnerClasses attribute. That attribute also lists
+     * the nested classes of other classes which are referred to, so only the names prefixed by the name of the class itself are returned.
+     */
+    private static Set<String> readNestedClassNames(byte[] bytecode) {
+        ClassReader classReader = new ClassReader(bytecode);
+        String prefix = classReader.getClassName() + "$";
+        Set<String> nestedClassNames = new TreeSet<>();
+        classReader.accept(new ClassVisitor(SpringAsmInfo.ASM_VERSION) {
+            @Override
+            public void visitInnerClass(String name, String outerName, String innerName, int access) {
+                if (name.startsWith(prefix)) {
+                    nestedClassNames.add(name.replace('/', '.'));
+                }
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return nestedClassNames;
+    }
+
+    private static Class<?> loadClass(String className, Class<?> enclosingClass) throws IOException {
+        try {
+            return ClassUtils.forName(className, enclosingClass.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new IOException(format("Could not load class [%s] of class [%s]", className, enclosingClass.getName()), e);
+        }
+    }
+
+    /**
+     * Adds a class with its superclasses and interfaces. Classes of the JDK are left out, as they are covered by the bytecode of the classes using them.
+     */
+    private static void addTypeHierarchy(Class<?> type, Map<String, Class<?>> classes) {
+        if (type == null || type.isPrimitive() || type.getName().startsWith("java.") || classes.putIfAbsent(type.getName(), type) != null) {
+            return;
+        }
+        addTypeHierarchy(type.getSuperclass(), classes);
+        for (Class<?> implemented : type.getInterfaces()) {
+            addTypeHierarchy(implemented, classes);
+        }
+    }
+
+    /**
+     * Describes the columns of the tables in the current schema, one line per column, in alphabetical order.
+     */
+    private static Set<String> describeSchema(DataSource dataSource) throws SQLException {
+        Set<String> columns = new TreeSet<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            try (ResultSet resultSet = metaData.getColumns(connection.getCatalog(), connection.getSchema(), "%", "%")) {
+                while (resultSet.next()) {
+                    columns.add(String.join("|", resultSet.getString("TABLE_NAME"), resultSet.getString("COLUMN_NAME"), resultSet.getString("TYPE_NAME"),
+                            resultSet.getString("COLUMN_SIZE"), resultSet.getString("IS_NULLABLE"), resultSet.getString("IS_AUTOINCREMENT")));
+                }
+            }
+        }
+        return columns;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        // Separates the values, so "ab" + "c" differs from "a" + "bc"
+        digest.update((byte) 0);
+    }
+}
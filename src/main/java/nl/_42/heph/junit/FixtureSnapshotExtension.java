@@ -0,0 +1,136 @@
+package nl._42.heph.junit;
+
+import static java.lang.String.format;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.junit.platform.commons.support.HierarchyTraversalMode;
+import org.junit.platform.commons.support.ReflectionSupport;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * <p>
+ *     Builds the fixtures of a test class once, instead of before every test. Before the first test of the class, the methods annotated with
+ *     {@link FixtureSnapshot} are called and the tables which they filled are copied into memory. Before every following test, these rows are
+ *     inserted again with JDBC batches, which is much cheaper than running the builders (and their findEntity and save calls) again.
+ * </p>
+ * <p>
+ *     The extension runs after all {@code @BeforeEach} methods, so the database can still be cleaned up in a {@code @BeforeEach} method
+ *     (for instance with the database-truncator). The tables of the snapshot are emptied before they are restored regardless.
+ *     The extension requires a Spring test context with a {@link DataSource} bean, and tests which do not roll back a transaction,
+ *     because the fixtures must be committed to be copied.
+ * </p>
+ * <pre>
+ * &#64;SpringBootTest
+ * &#64;ExtendWith(FixtureSnapshotExtension.class)
+ * class OrganizationTest {
+ *
+ *     &#64;FixtureSnapshot
+ *     void fixtures() {
+ *         organizationFixtures.banana();
+ *     }
+ * }
+ * </pre>
+ * <p>
+ *     Registered with {@link #persistent()}, the snapshot is also written to a compressed file under {@code target/}, so later runs restore the rows
+ *     of the file instead of calling the {@link FixtureSnapshot} methods. The file is only used as long as the bytecode of the test class,
+ *     the builders in the ApplicationContext and their BuildCommand interfaces, and the schema are unchanged:
+ * </p>
+ * <pre>
+ * &#64;RegisterExtension
+ * static FixtureSnapshotExtension fixtureSnapshots = FixtureSnapshotExtension.persistent();
+ * </pre>
+ */
+public class FixtureSnapshotExtension implements BeforeTestExecutionCallback {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(FixtureSnapshotExtension.class);
+
+    /** Default directory of the files of {@link #persistent()}, relative to the working directory of the tests (normally the Maven module) */
+    private static final Path DEFAULT_DIRECTORY = Path.of("target", "heph-fixtures");
+
+    /** Stores the snapshots across runs, or {@code null} if they are only kept in memory */
+    private final FixtureSnapshotCache cache;
+
+    /**
+     * Creates an extension which keeps the snapshots in memory, as used by {@code @ExtendWith(FixtureSnapshotExtension.class)}.
+     */
+    public FixtureSnapshotExtension() {
+        this(null);
+    }
+
+    private FixtureSnapshotExtension(FixtureSnapshotCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Creates an extension which also stores the snapshots in {@code target/heph-fixtures}, so they can be restored by later runs.
+     * @return the extension, to be registered with {@code @RegisterExtension}
+     */
+    public static FixtureSnapshotExtension persistent() {
+        return persistent(DEFAULT_DIRECTORY);
+    }
+
+    /**
+     * Creates an extension which also stores the snapshots in the given directory, so they can be restored by later runs.
+     * @param directory Directory of the snapshot files
+     * @return the extension, to be registered with {@code @RegisterExtension}
+     */
+    public static FixtureSnapshotExtension persistent(Path directory) {
+        return new FixtureSnapshotExtension(new FixtureSnapshotCache(directory));
+    }
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) throws Exception {
+        Class<?> testClass = context.getRequiredTestClass();
+        List<Method> methods = AnnotationSupport.findAnnotatedMethods(testClass, FixtureSnapshot.class, HierarchyTraversalMode.TOP_DOWN);
+        if (methods.isEmpty()) {
+            return;
+        }
+
+        ApplicationContext applicationContext = SpringExtension.getApplicationContext(context);
+        DataSource dataSource = applicationContext.getBean(DataSource.class);
+
+        // The snapshot is kept in the store of the test class, so it is discarded once all tests of the class have been run
+        ExtensionContext.Store store = context.getParent().orElse(context).getStore(NAMESPACE);
+        DatasetSnapshot snapshot = store.get(testClass, DatasetSnapshot.class);
+        if (snapshot == null) {
+            Object testInstance = context.getRequiredTestInstance();
+            Runnable build = () -> methods.forEach(method -> invoke(method, testInstance));
+            snapshot = cache != null ? loadOrTake(testClass, applicationContext, dataSource, build) : DatasetSnapshot.take(dataSource, build);
+            store.put(testClass, snapshot);
+        } else {
+            snapshot.restore(dataSource);
+        }
+    }
+
+    /**
+     * Restores the snapshot of a previous run if its fingerprint still matches. Otherwise, the fixtures are built and their snapshot is stored.
+     */
+    private DatasetSnapshot loadOrTake(Class<?> testClass, ApplicationContext applicationContext, DataSource dataSource, Runnable build) throws Exception {
+        String fingerprint = cache.fingerprint(testClass, applicationContext, dataSource);
+        DatasetSnapshot snapshot = cache.load(testClass, fingerprint, dataSource);
+        if (snapshot != null) {
+            snapshot.restore(dataSource);
+        } else {
+            snapshot = DatasetSnapshot.take(dataSource, build);
+            cache.store(testClass, fingerprint, snapshot);
+        }
+        return snapshot;
+    }
+
+    private static void invoke(Method method, Object testInstance) {
+        if (method.getParameterCount() > 0) {
+            throw new IllegalStateException(format("Method [%s] of test class [%s] is annotated with @FixtureSnapshot, but has parameters",
+                    method.getName(), method.getDeclaringClass().getName()));
+        }
+        ReflectionSupport.invokeMethod(method, testInstance);
+    }
+}
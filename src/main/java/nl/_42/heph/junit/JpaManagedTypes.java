@@ -0,0 +1,57 @@
+package nl._42.heph.junit;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Convert;
+import jakarta.persistence.EntityListeners;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.ManagedType;
+
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Lists the classes which determine how the entities of the EntityManagerFactories in an ApplicationContext are stored: the managed types
+ * (entities, embeddables and mapped superclasses), their entity listeners and their attribute converters.
+ * This class refers to JPA, so it may only be used when it is on the classpath.
+ */
+final class JpaManagedTypes {
+
+    private JpaManagedTypes() {
+    }
+
+    /**
+     * @param applicationContext ApplicationContext containing the EntityManagerFactories
+     * @return the classes, or an empty set if there is no EntityManagerFactory
+     */
+    static Set<Class<?>> of(ApplicationContext applicationContext) {
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        for (EntityManagerFactory entityManagerFactory : applicationContext.getBeansOfType(EntityManagerFactory.class).values()) {
+            for (ManagedType<?> managedType : entityManagerFactory.getMetamodel().getManagedTypes()) {
+                Class<?> javaType = managedType.getJavaType();
+                if (javaType != null) {
+                    classes.add(javaType);
+                    addListenersAndConverters(javaType, classes);
+                }
+            }
+        }
+        return classes;
+    }
+
+    private static void addListenersAndConverters(Class<?> javaType, Set<Class<?>> classes) {
+        EntityListeners entityListeners = javaType.getAnnotation(EntityListeners.class);
+        if (entityListeners != null) {
+            Collections.addAll(classes, entityListeners.value());
+        }
+        for (Field field : javaType.getDeclaredFields()) {
+            for (Convert convert : field.getAnnotationsByType(Convert.class)) {
+                if (convert.converter() != AttributeConverter.class) {
+                    classes.add(convert.converter());
+                }
+            }
+        }
+    }
+}
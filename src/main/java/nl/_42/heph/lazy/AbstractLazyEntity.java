@@ -3,6 +3,8 @@ package nl._42.heph.lazy;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+import nl._42.heph.generation.PropertyAccessor;
+
 /**
  * Class that takes care of shared logic for all LazyEntity implementations. The most
  * important part is the verifying whether a value is already stored and, if not,
@@ -19,26 +21,76 @@ public abstract class AbstractLazyEntity<T, A> implements LazyEntity {
     private final Supplier<A> getter;
     /** the consumer of the resolved reference, used to set the value */
     private final Consumer<A> setter;
+    /** the entity containing the property, when using an accessor instead of the getter supplier and setter consumer */
+    private final Object target;
+    /** the accessor of the property of the target, used instead of the getter supplier and setter consumer */
+    private final PropertyAccessor accessor;
     /** the reference to the entity, will be set using the setter consumer */
     private final Supplier<T> reference;
 
     AbstractLazyEntity(Supplier<A> getter, Consumer<A> setter, Supplier<T> reference) {
         this.getter = getter;
         this.setter = setter;
+        this.target = null;
+        this.accessor = null;
+        this.reference = reference;
+    }
+
+    AbstractLazyEntity(Object target, PropertyAccessor accessor, Supplier<T> reference) {
+        this.getter = null;
+        this.setter = null;
+        this.target = target;
+        this.accessor = accessor;
         this.reference = reference;
     }
 
     /**
      * The resolution logic will verify whether the reference and getters are legit. If this
      * is the case and there is no existing value, the reference will be resolved and its
-     * resulting value set using the setter consumer.
+     * resulting value set using the setter consumer. Within a create chain, a reference shared with other
+     * lazy entities is only called once (see {@link ReferenceResolutionPlan}).
      */
     @Override
     public void resolve() {
-        if (reference == null || (getter != null && getter.get() != null)) {
+        if (reference == null || getCurrentValue() != null) {
             return;
         }
-        setter.accept(convertEntity(reference.get()));
+
+        setCurrentValue(convertEntity(ReferenceResolutionPlan.resolve(reference)));
+    }
+
+    /**
+     * Calls the reference if there is no existing value. The value is only set when the returned action is run,
+     * and only if no value has been set in the meantime (for example by another reference to the same property).
+     */
+    @Override
+    public Runnable fetch() {
+        if (reference == null || getCurrentValue() != null) {
+            return () -> { };
+        }
+
+        A value = convertEntity(ReferenceResolutionPlan.resolve(reference));
+        return () -> {
+            if (getCurrentValue() == null) {
+                setCurrentValue(value);
+            }
+        };
+    }
+
+    private void setCurrentValue(A value) {
+        if (accessor != null) {
+            accessor.set(target, value);
+        } else {
+            setter.accept(value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private A getCurrentValue() {
+        if (accessor != null) {
+            return (A) accessor.get(target);
+        }
+        return getter != null ? getter.get() : null;
     }
 
     /**
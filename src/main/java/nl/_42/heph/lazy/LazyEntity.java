@@ -14,4 +14,14 @@ public interface LazyEntity {
      */
     void resolve();
 
+    /**
+     * Resolves the reference in two steps, so the (possibly expensive) call of the reference can take place on another thread
+     * than the one which applies the value. The returned action must be run to apply the value.
+     * By default, nothing is resolved beforehand and the returned action resolves the reference.
+     * @return the action which applies the resolved value
+     */
+    default Runnable fetch() {
+        return this::resolve;
+    }
+
 }
@@ -3,6 +3,8 @@ package nl._42.heph.lazy;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+import nl._42.heph.generation.PropertyAccessor;
+
 import org.springframework.data.domain.Persistable;
 
 /**
@@ -14,8 +16,34 @@ import org.springframework.data.domain.Persistable;
  */
 public class LazyEntityId<T extends Persistable, A> extends AbstractLazyEntity<T,A> {
 
+    /** called with the resolved entity before its ID is extracted, for example to save an entity which has no ID yet */
+    private final Consumer<T> beforeConvert;
+
     public LazyEntityId(Supplier<A> getter, Consumer<A> setter, Supplier<T> reference) {
         super(getter, setter, reference);
+        this.beforeConvert = entity -> { };
+    }
+
+    /**
+     * Creates a lazy entity which reads and writes the property of the target entity using its (compiled) accessor.
+     * @param target the entity containing the property
+     * @param accessor accessor of the property to set
+     * @param reference the reference to the entity to resolve
+     */
+    public LazyEntityId(Object target, PropertyAccessor accessor, Supplier<T> reference) {
+        this(target, accessor, reference, entity -> { });
+    }
+
+    /**
+     * Creates a lazy entity which reads and writes the property of the target entity using its (compiled) accessor.
+     * @param target the entity containing the property
+     * @param accessor accessor of the property to set
+     * @param reference the reference to the entity to resolve
+     * @param beforeConvert called with the resolved entity before its ID is extracted, for example to save an entity which has no ID yet
+     */
+    public LazyEntityId(Object target, PropertyAccessor accessor, Supplier<T> reference, Consumer<T> beforeConvert) {
+        super(target, accessor, reference);
+        this.beforeConvert = beforeConvert;
     }
 
     /**
@@ -26,6 +54,7 @@ public class LazyEntityId<T extends Persistable, A> extends AbstractLazyEntity<T
     @Override
     @SuppressWarnings("unchecked")
     public A convertEntity(T entity) {
+        beforeConvert.accept(entity);
         return (A) entity.getId();
     }
 
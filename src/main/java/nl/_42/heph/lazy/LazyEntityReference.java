@@ -3,6 +3,8 @@ package nl._42.heph.lazy;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+import nl._42.heph.generation.PropertyAccessor;
+
 /**
  * When the entity is referred to as a normal entity (as opposed to a Long ID), this
  * class is used. If the getter supplier shows the current value is null, the entity
@@ -15,6 +17,16 @@ public class LazyEntityReference<T> extends AbstractLazyEntity<T,T> {
         super(getter, setter, reference);
     }
 
+    /**
+     * Creates a lazy entity which reads and writes the property of the target entity using its (compiled) accessor.
+     * @param target the entity containing the property
+     * @param accessor accessor of the property to set
+     * @param reference the reference to the entity to resolve
+     */
+    public LazyEntityReference(Object target, PropertyAccessor accessor, Supplier<T> reference) {
+        super(target, accessor, reference);
+    }
+
     @Override
     public T convertEntity(T entity) {
         return entity;
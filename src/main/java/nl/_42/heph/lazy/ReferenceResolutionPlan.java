@@ -0,0 +1,237 @@
+package nl._42.heph.lazy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ *     Resolves every reference (the supplier of a {@link LazyEntity}) only once within a create chain: the outermost {@code create()}, {@code construct()}
+ *     or {@code createAll()} call, including all entities which are created while resolving its references. References with the same supplier instance,
+ *     such as one owner supplier passed to several fields or builders, share the entity returned by its first call. The references form a graph,
+ *     of which each supplier is a node. A node is resolved depth-first, so all nodes it depends on (the references of the entities it creates)
+ *     have been resolved before it, in topological order. A reference which depends on itself is rejected with an {@link IllegalStateException},
+ *     also when the references are resolved on several threads.
+ * </p>
+ * <p>
+ *     Outside of a create chain, every resolution calls the supplier. A chain is bound to the thread which started it; references which are resolved
+ *     concurrently (see {@code AbstractBuilder#getReferenceParallelism()}) join the chain of the thread which resolves the BuildCommand.
+ * </p>
+ */
+public final class ReferenceResolutionPlan {
+
+    private static final ThreadLocal<ReferenceResolutionPlan> CURRENT = new ThreadLocal<>();
+
+    /** The references which have been (or are being) resolved, by supplier instance. Shared by all contexts of the chain, and used as lock of their dependencies */
+    private final Map<ReferenceKey, Node> nodes;
+
+    /** The reference which is being resolved in this context of the chain, or {@code null} outside of any reference */
+    private final Node resolving;
+
+    private ReferenceResolutionPlan(Map<ReferenceKey, Node> nodes, Node resolving) {
+        this.nodes = nodes;
+        this.resolving = resolving;
+    }
+
+    private static ReferenceResolutionPlan newChain() {
+        return new ReferenceResolutionPlan(new ConcurrentHashMap<>(), null);
+    }
+
+    /**
+     * Runs an action within the create chain of the current thread. If no chain has been started yet, the action starts one, which ends with it.
+     * @param action the action which resolves references
+     * @param <V> type of the result of the action
+     * @return the result of the action
+     */
+    public static <V> V execute(Supplier<V> action) {
+        ReferenceResolutionPlan current = CURRENT.get();
+        return current != null ? action.get() : newChain().within(action);
+    }
+
+    /**
+     * Returns the create chain of the current thread, including the reference it is resolving. Actions which join the chain on another thread
+     * with {@link #within(Supplier)} resolve their references on behalf of that reference, so a reference which depends on itself is detected across threads.
+     * @return the create chain of the current thread, or {@code null}
+     */
+    public static ReferenceResolutionPlan current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Returns the create chain of the current thread or, if none has been started, a new chain which is not bound to any thread.
+     * This is used when the references of a create are resolved on other threads, such as by a reactive create.
+     * @return the create chain, which actions join with {@link #within(Supplier)}
+     */
+    public static ReferenceResolutionPlan currentOrNew() {
+        ReferenceResolutionPlan current = CURRENT.get();
+        return current != null ? current : newChain();
+    }
+
+    /**
+     * Runs an action within this create chain, possibly on another thread than the one which started it.
+     * @param action the action which resolves references
+     * @param <V> type of the result of the action
+     * @return the result of the action
+     */
+    public <V> V within(Supplier<V> action) {
+        ReferenceResolutionPlan previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Calls the reference, unless the same reference has already been called within the create chain of the current thread.
+     * @param reference the reference to resolve
+     * @param <T> type of the entity
+     * @return the entity returned by the (first) call of the reference
+     */
+    static <T> T resolve(Supplier<T> reference) {
+        ReferenceResolutionPlan current = CURRENT.get();
+        return current != null ? current.resolveNode(reference) : reference.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T resolveNode(Supplier<T> reference) {
+        Node node = new Node(reference);
+        Node existing = nodes.putIfAbsent(new ReferenceKey(reference), node);
+        if (existing != null) {
+            return (T) await(existing);
+        }
+
+        // The reference being resolved depends on the new one until it has been called
+        addDependency(node);
+        try {
+            new ReferenceResolutionPlan(nodes, node).within(() -> {
+                node.task.run();
+                return null;
+            });
+        } finally {
+            removeDependency(node);
+        }
+        return (T) node.result();
+    }
+
+    /**
+     * Waits for a reference which is called by another context of the chain. If that reference (indirectly) waits for the reference of this context,
+     * on any thread, waiting would never end: the reference depends on itself.
+     */
+    private Object await(Node node) {
+        if (node.task.isDone()) {
+            return node.result();
+        }
+
+        synchronized (nodes) {
+            if (resolving != null && node.dependsOn(resolving)) {
+                throw new IllegalStateException("Reference depends on itself. Please check the suppliers passed to the builders for a cycle");
+            }
+            addDependency(node);
+        }
+        try {
+            return node.result();
+        } finally {
+            removeDependency(node);
+        }
+    }
+
+    private void addDependency(Node node) {
+        if (resolving != null) {
+            synchronized (nodes) {
+                resolving.dependencies.add(node);
+            }
+        }
+    }
+
+    private void removeDependency(Node node) {
+        if (resolving != null) {
+            synchronized (nodes) {
+                resolving.dependencies.remove(node);
+            }
+        }
+    }
+
+    /**
+     * A reference of the create chain. The reference is called by the first context which needs its entity; other contexts wait for it.
+     */
+    private static final class Node {
+
+        private final FutureTask<Object> task;
+
+        /**
+         * The references this reference is currently calling or waiting for, on any thread. Together they form the wait-for graph of the chain,
+         * which is used to detect a reference which depends on itself. Guarded by the nodes of the chain.
+         */
+        private final List<Node> dependencies = new ArrayList<>();
+
+        private Node(Supplier<?> reference) {
+            this.task = new FutureTask<>(reference::get);
+        }
+
+        /**
+         * Determines if this reference is, or (indirectly) waits for, the given reference. Must be called while holding the lock of the chain.
+         */
+        private boolean dependsOn(Node target) {
+            Set<Node> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+            Deque<Node> pending = new ArrayDeque<>();
+            pending.push(this);
+            while (!pending.isEmpty()) {
+                Node current = pending.pop();
+                if (current == target) {
+                    return true;
+                }
+                if (visited.add(current)) {
+                    current.dependencies.forEach(pending::push);
+                }
+            }
+            return false;
+        }
+
+        private Object result() {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while resolving reference", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                } else if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw new IllegalStateException("Failed to resolve reference", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Identifies a reference by its supplier instance, regardless of how the supplier implements equals.
+     */
+    private record ReferenceKey(Supplier<?> reference) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ReferenceKey key && key.reference == reference;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(reference);
+        }
+    }
+}
@@ -24,8 +24,10 @@ import nl._42.heph.domain.Person;
 import nl._42.heph.shared.AbstractSpringTest;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.util.ReflectionUtils;
 
 public class AbstractBuilderTest extends AbstractSpringTest {
@@ -150,4 +152,50 @@ public class AbstractBuilderTest extends AbstractSpringTest {
             assertEquals("Multiple repositories of (or extending) the type [nl._42.heph.domain.PersonRepository] were found. Please specify the repository with the most specific type or remove the duplicate repository", e.getMessage());
         }
     }
+
+    @Test
+    public void generateRepositorySupplier_multipleBuildCommands_shouldLookUpRepositoryOnce() {
+        try (CountingApplicationContext context = new CountingApplicationContext(MockSavedEntityRepository.class)) {
+            MockSavedEntityFixtures mockSavedEntityFixtures = new MockSavedEntityFixtures();
+            context.getAutowireCapableBeanFactory().autowireBean(mockSavedEntityFixtures);
+
+            MockSavedEntityRepository repository = mockSavedEntityFixtures.blank().getRepository();
+            assertNotNull(repository);
+            assertEquals(repository, mockSavedEntityFixtures.blank().getRepository());
+            assertEquals(1, context.lookups);
+        }
+    }
+
+    @Test
+    public void generateRepositorySupplier_noRepositoryAvailable_shouldLookUpRepositoryOnce() {
+        try (CountingApplicationContext context = new CountingApplicationContext()) {
+            UnsavableEntityFixtures unsavableEntityFixtures = new UnsavableEntityFixtures();
+            context.getAutowireCapableBeanFactory().autowireBean(unsavableEntityFixtures);
+
+            assertNull(unsavableEntityFixtures.blank().getRepository());
+            assertNull(unsavableEntityFixtures.blank().getRepository());
+            assertEquals(1, context.lookups);
+        }
+    }
+
+    /**
+     * ApplicationContext which counts the beans looked up by type.
+     */
+    private static class CountingApplicationContext extends AnnotationConfigApplicationContext {
+
+        private int lookups;
+
+        CountingApplicationContext(Class<?>... componentClasses) {
+            if (componentClasses.length > 0) {
+                register(componentClasses);
+            }
+            refresh();
+        }
+
+        @Override
+        public <B> B getBean(Class<B> requiredType) throws BeansException {
+            lookups++;
+            return super.getBean(requiredType);
+        }
+    }
 }
@@ -5,8 +5,6 @@ package nl._42.heph;
 
 import javax.sql.DataSource;
 
-import io.beanmapper.BeanMapper;
-import io.beanmapper.config.BeanMapperBuilder;
 import nl._42.database.truncator.DatabaseTruncator;
 import nl._42.database.truncator.Platform;
 import nl._42.database.truncator.config.DatabaseTruncatorProperties;
@@ -14,10 +12,16 @@ import nl._42.database.truncator.config.DatabaseTruncatorProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 @EnableTransactionManagement
 @SpringBootApplication
+// The reactive repositories are enabled by the ReactiveConfiguration
+@EnableJpaRepositories(excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = ReactiveCrudRepository.class))
 public class Application {
 
     public static void main(String[] args) {
@@ -30,10 +34,8 @@ public class Application {
     }
 
     @Bean
-    public BeanMapper beanMapper() {
-        BeanMapperBuilder builder = new BeanMapperBuilder()
-                .addPackagePrefix(Application.class.getPackage().getName());
-        return builder.build();
+    public FindEntityCache findEntityCache() {
+        return new FindEntityCache();
     }
 
 }
@@ -0,0 +1,121 @@
+package nl._42.heph;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import nl._42.heph.builder.OrganizationFixtures;
+import nl._42.heph.builder.PersonFixtures;
+import nl._42.heph.builder.WrongRepositoryPersonFixtures;
+import nl._42.heph.domain.Person;
+import nl._42.heph.domain.PersonRepository;
+import nl._42.heph.domain.Truck;
+import nl._42.heph.domain.Vehicle;
+import nl._42.heph.shared.AbstractSpringTest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public class BuilderWarmUpTest extends AbstractSpringTest {
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private PersonFixtures personFixtures;
+
+    @Autowired
+    private OrganizationFixtures organizationFixtures;
+
+    @Test
+    public void warmUp_validBuilders_shouldSucceed() {
+        // warmUp is package-private, so it is only visible through AbstractBuilder.
+        ((AbstractBuilder<?, ?>) personFixtures).warmUp();
+        ((AbstractBuilder<?, ?>) organizationFixtures).warmUp();
+
+        assertEquals(PersonFixtures.EXPECTED_NAME, personFixtures.sjaak().getName());
+    }
+
+    @Test
+    public void warmUp_unknownField_shouldFail() {
+        UnknownFieldFixtures fixtures = applicationContext.getAutowireCapableBeanFactory().createBean(UnknownFieldFixtures.class);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, fixtures::warmUp);
+        assertEquals("Method [withNickname] of buildCommand [nl._42.heph.BuilderWarmUpTest$UnknownFieldBuildCommand] cannot be implemented: "
+                + "Field [nickname] is not present in the entity class or its superclasses", exception.getMessage());
+    }
+
+    @Test
+    public void warmUp_fieldOfEntitySubclass_shouldSucceed() {
+        VehicleFixtures fixtures = applicationContext.getAutowireCapableBeanFactory().createBean(VehicleFixtures.class);
+
+        fixtures.warmUp();
+
+        Vehicle truck = fixtures.update(new Truck()).withAxles(3).construct();
+        assertEquals(3, ((Truck) truck).getAxles());
+    }
+
+    @Test
+    public void afterSingletonsInstantiated_proxiedBuilder_shouldWarmUpTarget() {
+        // A CGLIB proxy, as created for a @Transactional builder, lacks the state of the builder itself
+        ProxyFactory proxyFactory = new ProxyFactory(applicationContext.getBean(WrongRepositoryPersonFixtures.class));
+        proxyFactory.setProxyTargetClass(true);
+        StaticApplicationContext context = new StaticApplicationContext(applicationContext);
+        context.getBeanFactory().registerSingleton("proxiedFixtures", proxyFactory.getProxy());
+        context.refresh();
+
+        BuilderWarmUp warmUp = new BuilderWarmUp();
+        warmUp.setApplicationContext(context);
+
+        // Only the target can look up the repository, which fails for this builder
+        IllegalStateException exception = assertThrows(IllegalStateException.class, warmUp::afterSingletonsInstantiated);
+        assertTrue(exception.getMessage().startsWith("Could not warm up builder ["), exception::getMessage);
+    }
+
+    @Test
+    public void afterSingletonsInstantiated_parallel_shouldWarmUpAllBuildersAndReportFailures() {
+        BuilderWarmUp warmUp = new BuilderWarmUp(true);
+        warmUp.setApplicationContext(applicationContext);
+
+        // The context deliberately contains a builder whose repository cannot be resolved.
+        IllegalStateException exception = assertThrows(IllegalStateException.class, warmUp::afterSingletonsInstantiated);
+        assertTrue(exception.getMessage().startsWith("Could not warm up builder [" + WrongRepositoryPersonFixtures.class.getName() + "]"), exception::getMessage);
+        assertEquals(1, exception.getSuppressed().length);
+        assertNotNull(warmUp.getDuration());
+    }
+
+    public interface UnknownFieldBuildCommand extends AbstractBuildCommand<Person, PersonRepository> {
+
+        UnknownFieldBuildCommand withNickname(String nickname);
+    }
+
+    public interface VehicleBuildCommand extends AbstractBuildCommand<Vehicle, VehicleRepository> {
+
+        // Only declared by the Truck subclass
+        VehicleBuildCommand withAxles(Integer axles);
+    }
+
+    public interface VehicleRepository extends JpaRepository<Vehicle, Long> {
+    }
+
+    public static class VehicleFixtures extends AbstractBuilder<Vehicle, VehicleBuildCommand> {
+
+        @Override
+        public VehicleBuildCommand base() {
+            return blank();
+        }
+    }
+
+    public static class UnknownFieldFixtures extends AbstractBuilder<Person, UnknownFieldBuildCommand> {
+
+        @Override
+        public UnknownFieldBuildCommand base() {
+            return blank();
+        }
+    }
+}
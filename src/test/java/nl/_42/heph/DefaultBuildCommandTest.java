@@ -0,0 +1,108 @@
+package nl._42.heph;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import nl._42.heph.builder.MockSavedEntity;
+import nl._42.heph.builder.MockSavedEntityRepository;
+
+import org.junit.jupiter.api.Test;
+
+public class DefaultBuildCommandTest {
+
+    private final MockSavedEntityRepository repository = new MockSavedEntityRepository();
+
+    @Test
+    public void findAll_withFindEntities_shouldLookUpAllEntitiesAtOnce() {
+        MockSavedEntity existing = repository.save(entity("42"));
+        List<List<MockSavedEntity>> calls = new ArrayList<>();
+        List<DefaultBuildCommand<MockSavedEntity, ?>> commands = List.of(
+                new BatchFindingBuildCommand(entity("1"), calls),
+                new BatchFindingBuildCommand(entity("42"), calls));
+
+        List<MockSavedEntity> found = DefaultBuildCommand.findAll(commands);
+
+        assertNull(found.get(0));
+        assertSame(existing, found.get(1));
+        assertEquals(1, calls.size());
+        assertEquals(2, calls.get(0).size());
+    }
+
+    @Test
+    public void findAll_withoutFindEntities_shouldCallFindEntityForEveryEntity() {
+        MockSavedEntity existing = repository.save(entity("42"));
+        List<DefaultBuildCommand<MockSavedEntity, ?>> commands = List.of(
+                new FindingBuildCommand(entity("42")),
+                new FindingBuildCommand(entity("1")));
+
+        assertEquals(Arrays.asList(existing, null), DefaultBuildCommand.findAll(commands));
+    }
+
+    @Test
+    public void findAll_existingEntityRewrapped_shouldNotLookUpEntity() {
+        List<List<MockSavedEntity>> calls = new ArrayList<>();
+        List<DefaultBuildCommand<MockSavedEntity, ?>> commands = List.of(new BatchFindingBuildCommand(repository.save(entity("42")), calls));
+
+        assertNull(DefaultBuildCommand.findAll(commands).get(0));
+        assertEquals(0, calls.size());
+    }
+
+    @Test
+    public void findAll_findEntitiesReturnsWrongNumberOfResults_shouldThrow() {
+        List<DefaultBuildCommand<MockSavedEntity, ?>> commands = List.of(new FindingBuildCommand(entity("1")) {
+            @Override
+            public List<MockSavedEntity> findEntities(List<MockSavedEntity> entities) {
+                return List.of();
+            }
+        });
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> DefaultBuildCommand.findAll(commands));
+        assertEquals("Method findEntities of buildCommand [" + commands.get(0).getClass().getName() + "] must return one result for each of the 1 entities, but returned 0 results",
+                exception.getMessage());
+    }
+
+    private static MockSavedEntity entity(String age) {
+        MockSavedEntity entity = new MockSavedEntity();
+        entity.setAge(age);
+        return entity;
+    }
+
+    private class FindingBuildCommand extends DefaultBuildCommand<MockSavedEntity, MockSavedEntityRepository> {
+
+        FindingBuildCommand(MockSavedEntity entity) {
+            super(entity, () -> repository);
+        }
+
+        @Override
+        public MockSavedEntity findEntity(MockSavedEntity entity) {
+            return repository.findAll().stream().filter(saved -> saved.getAge().equals(entity.getAge())).findFirst().orElse(null);
+        }
+    }
+
+    private class BatchFindingBuildCommand extends FindingBuildCommand {
+
+        private final List<List<MockSavedEntity>> calls;
+
+        BatchFindingBuildCommand(MockSavedEntity entity, List<List<MockSavedEntity>> calls) {
+            super(entity);
+            this.calls = calls;
+        }
+
+        @Override
+        public MockSavedEntity findEntity(MockSavedEntity entity) {
+            throw new AssertionError("findEntity must not be called if findEntities has been overridden");
+        }
+
+        @Override
+        public List<MockSavedEntity> findEntities(List<MockSavedEntity> entities) {
+            calls.add(entities);
+            return entities.stream().map(super::findEntity).toList();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package nl._42.heph;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import nl._42.heph.builder.OrganizationFixtures;
+import nl._42.heph.domain.Organization;
+import nl._42.heph.domain.OrganizationRepository;
+import nl._42.heph.shared.AbstractSpringTest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class FindEntityCacheTest extends AbstractSpringTest {
+
+    @Autowired
+    private FindEntityCache findEntityCache;
+    @Autowired
+    private OrganizationFixtures organizationFixtures;
+    @Autowired
+    private OrganizationRepository organizationRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        findEntityCache.resetCounters();
+    }
+
+    @Test
+    public void create_twiceInTransaction_shouldReturnCachedEntity() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Organization first = organizationFixtures._42();
+            Organization second = organizationFixtures._42();
+
+            assertSame(first, second);
+        });
+
+        assertEquals(1, findEntityCache.getMisses());
+        assertEquals(1, findEntityCache.getHits());
+        assertEquals(1, organizationRepository.count());
+    }
+
+    @Test
+    public void create_differentKeys_shouldNotShareEntity() {
+        transactionTemplate.executeWithoutResult(status -> assertNotEquals(organizationFixtures._42().getId(), organizationFixtures.apple().getId()));
+
+        assertEquals(2, findEntityCache.getMisses());
+        assertEquals(0, findEntityCache.getHits());
+    }
+
+    @Test
+    public void create_inNextTransaction_shouldCallFindEntityAgain() {
+        Long firstId = transactionTemplate.execute(status -> organizationFixtures._42().getId());
+        Long secondId = transactionTemplate.execute(status -> organizationFixtures._42().getId());
+
+        assertEquals(firstId, secondId);
+        assertEquals(2, findEntityCache.getMisses());
+        assertEquals(0, findEntityCache.getHits());
+    }
+
+    @Test
+    public void create_afterRollback_shouldCreateEntityAgain() {
+        transactionTemplate.executeWithoutResult(status -> {
+            organizationFixtures._42();
+            status.setRollbackOnly();
+        });
+
+        transactionTemplate.executeWithoutResult(status -> organizationFixtures._42());
+
+        assertEquals(2, findEntityCache.getMisses());
+        assertEquals(1, organizationRepository.count());
+    }
+
+    @Test
+    public void create_withoutTransaction_shouldNotCache() {
+        assertEquals(organizationFixtures._42().getId(), organizationFixtures._42().getId());
+
+        assertEquals(0, findEntityCache.getMisses());
+        assertEquals(0, findEntityCache.getHits());
+    }
+}
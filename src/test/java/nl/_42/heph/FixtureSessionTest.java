@@ -0,0 +1,101 @@
+package nl._42.heph;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import nl._42.heph.builder.OrganizationFixtures;
+import nl._42.heph.builder.PersonFixtures;
+import nl._42.heph.builder.WorkspaceFixtures;
+import nl._42.heph.domain.Organization;
+import nl._42.heph.domain.OrganizationRepository;
+import nl._42.heph.domain.Person;
+import nl._42.heph.domain.PersonRepository;
+import nl._42.heph.domain.Workspace;
+import nl._42.heph.domain.WorkspaceRepository;
+import nl._42.heph.shared.AbstractSpringTest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class FixtureSessionTest extends AbstractSpringTest {
+
+    @Autowired
+    private WorkspaceFixtures workspaceFixtures;
+    @Autowired
+    private OrganizationFixtures organizationFixtures;
+    @Autowired
+    private PersonFixtures personFixtures;
+    @Autowired
+    private WorkspaceRepository workspaceRepository;
+    @Autowired
+    private OrganizationRepository organizationRepository;
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Test
+    public void create_shouldSaveWhenSessionCloses() {
+        Workspace workspace;
+        try (FixtureSession session = FixtureSession.open()) {
+            workspace = workspaceFixtures.my_workspace();
+
+            assertNull(workspace.getId());
+            assertEquals(1, session.getPendingCount());
+            assertEquals(0, workspaceRepository.count());
+        }
+
+        assertNotNull(workspace.getId());
+        assertEquals(1, workspaceRepository.count());
+        assertNull(FixtureSession.current());
+    }
+
+    @Test
+    public void create_withSameKey_shouldReturnPendingEntity() {
+        try (FixtureSession session = FixtureSession.open()) {
+            Organization first = organizationFixtures._42();
+            Organization second = organizationFixtures._42();
+            Organization apple = organizationFixtures.apple();
+
+            assertSame(first, second);
+            assertEquals(2, session.getPendingCount());
+
+            session.flush();
+
+            assertNotNull(first.getId());
+            assertNotNull(apple.getId());
+            assertEquals(1, session.getFlushCount());
+        }
+
+        assertEquals(List.of("42BV", "Apple"), organizationRepository.findAll().stream().map(Organization::getName).sorted().toList());
+    }
+
+    @Test
+    public void create_withEntityIdReference_shouldFlushReferencedEntity() {
+        Person person;
+        try (FixtureSession session = FixtureSession.open()) {
+            person = personFixtures.sjaak();
+
+            // The id of the workspace had to be known, so the workspace has been saved already
+            assertEquals(1, session.getFlushCount());
+            assertNotNull(person.getWorkspaceId());
+            assertNull(person.getId());
+        }
+
+        assertNotNull(person.getOrganization().getId());
+
+        Person saved = personRepository.findById(person.getId()).orElseThrow();
+        assertEquals(person.getOrganization().getId(), saved.getOrganization().getId());
+    }
+
+    @Test
+    public void open_twice_shouldFail() {
+        try (FixtureSession ignored = FixtureSession.open()) {
+            IllegalStateException exception = assertThrows(IllegalStateException.class, FixtureSession::open);
+            assertEquals("A FixtureSession is already open on the current thread", exception.getMessage());
+        }
+    }
+}
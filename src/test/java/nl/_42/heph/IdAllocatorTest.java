@@ -0,0 +1,125 @@
+package nl._42.heph;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import jakarta.persistence.Id;
+
+import nl._42.heph.domain.Ticket;
+import nl._42.heph.domain.Workspace;
+import nl._42.heph.shared.AbstractSpringTest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Persistable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class IdAllocatorTest extends AbstractSpringTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void nextId_sequence_shouldReserveBlocks() {
+        jdbcTemplate.execute("DROP SEQUENCE IF EXISTS ticket_seq");
+        jdbcTemplate.execute("CREATE SEQUENCE ticket_seq START WITH 1 INCREMENT BY 3");
+        SequenceIdAllocator allocator = new SequenceIdAllocator(jdbcTemplate, entityClass -> entityClass.getSimpleName().toLowerCase() + "_seq", 3);
+
+        for (long expected = 1; expected <= 7; expected++) {
+            assertEquals(expected, allocator.nextId(Ticket.class));
+        }
+        // Three blocks have been reserved: 1-3, 4-6 and 7-9
+        assertEquals(10L, jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR ticket_seq", Long.class));
+    }
+
+    @Test
+    public void nextId_range_shouldCountPerEntityClass() {
+        RangeIdAllocator allocator = new RangeIdAllocator(100, 102);
+
+        assertEquals(100, allocator.nextId(Ticket.class));
+        assertEquals(100, allocator.nextId(Workspace.class));
+        assertEquals(101, allocator.nextId(Ticket.class));
+        assertThrows(IllegalStateException.class, () -> allocator.nextId(Ticket.class));
+    }
+
+    @Test
+    public void assign_entityNoLongerNew_shouldFail() {
+        IdAssignment idAssignment = new IdAssignment(new RangeIdAllocator(1, 10), Workspace.class);
+
+        // Workspace is new as long as it has no identifier, so it would be merged instead of inserted
+        assertThrows(IllegalStateException.class, () -> idAssignment.assign(new Workspace()));
+    }
+
+    @Test
+    public void assign_entityWithId_shouldKeepId() {
+        IdAssignment idAssignment = new IdAssignment(new RangeIdAllocator(1, 10), Ticket.class);
+        Ticket ticket = new Ticket();
+        ticket.setId(42L);
+
+        idAssignment.assign(ticket);
+
+        assertEquals(42L, ticket.getId());
+    }
+
+    @Test
+    public void assign_annotatedIdField_shouldAssignThatField() {
+        IdAssignment idAssignment = new IdAssignment(new RangeIdAllocator(5, 10), Label.class);
+        Label label = new Label();
+
+        idAssignment.assign(label);
+
+        assertEquals(5, label.getId());
+        assertNull(label.id);
+    }
+
+    @Test
+    public void assign_primitiveIdField_shouldAssignWhenZero() {
+        IdAssignment idAssignment = new IdAssignment(new RangeIdAllocator(5, 10), Counter.class);
+        Counter counter = new Counter();
+
+        idAssignment.assign(counter);
+        assertEquals(5L, counter.getId());
+
+        // An identifier other than 0 has been assigned already
+        idAssignment.assign(counter);
+        assertEquals(5L, counter.getId());
+    }
+
+    public static class Counter implements Persistable<Long> {
+
+        @Id
+        private long id;
+
+        private boolean persisted;
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public boolean isNew() {
+            return !persisted;
+        }
+    }
+
+    public static class Label implements Persistable<Integer> {
+
+        @Id
+        private Integer labelId;
+
+        /** Not the identifier, despite its name: it must be left untouched */
+        private Integer id;
+
+        @Override
+        public Integer getId() {
+            return labelId;
+        }
+
+        @Override
+        public boolean isNew() {
+            return id == null;
+        }
+    }
+}
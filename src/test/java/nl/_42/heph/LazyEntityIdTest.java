@@ -6,6 +6,7 @@ import java.util.function.Supplier;
 
 import nl._42.heph.domain.Organization;
 import nl._42.heph.domain.Person;
+import nl._42.heph.generation.PropertyAccessor;
 import nl._42.heph.lazy.LazyEntityId;
 
 import org.junit.jupiter.api.Test;
@@ -29,4 +30,17 @@ public class LazyEntityIdTest {
         assertEquals(expectedId, person.getOrganizationId());
     }
 
+    @Test
+    public void accessor_setId() {
+        final Long expectedId = 42L;
+        Organization organization = new Organization();
+        organization.setId(expectedId);
+
+        Person person = new Person();
+        LazyEntityId lazyEntityId = new LazyEntityId<>(person, PropertyAccessor.forProperty(Person.class, "organizationId"), () -> organization);
+
+        lazyEntityId.resolve();
+        assertEquals(expectedId, person.getOrganizationId());
+    }
+
 }
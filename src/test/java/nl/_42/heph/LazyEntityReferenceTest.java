@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import nl._42.heph.builder.OrganizationFixtures;
 import nl._42.heph.domain.Person;
+import nl._42.heph.generation.PropertyAccessor;
 import nl._42.heph.lazy.LazyEntityReference;
 
 import org.junit.jupiter.api.Test;
@@ -66,4 +67,24 @@ public class LazyEntityReferenceTest {
         assertEquals(organizationFixtures._42().getName(), person.getOrganization().getName());
     }
 
+
+    @Test
+    public void accessor_setReference() {
+        Person person = new Person();
+        LazyEntityReference lazyEntityReference = new LazyEntityReference<>(person, PropertyAccessor.forProperty(Person.class, "organization"), organizationFixtures::_42);
+
+        lazyEntityReference.resolve();
+        assertEquals(organizationFixtures._42().getName(), person.getOrganization().getName());
+    }
+
+    @Test
+    public void accessor_valueAlreadySet_mayNotBeOverwritten() {
+        Person person = new Person();
+        person.setOrganization(organizationFixtures._42());
+
+        LazyEntityReference lazyEntityReference = new LazyEntityReference<>(person, PropertyAccessor.forProperty(Person.class, "organization"), organizationFixtures::apple);
+
+        lazyEntityReference.resolve();
+        assertEquals(organizationFixtures._42().getName(), person.getOrganization().getName());
+    }
 }
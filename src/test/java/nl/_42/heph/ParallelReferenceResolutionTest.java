@@ -0,0 +1,124 @@
+package nl._42.heph;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import nl._42.heph.builder.PersonFixtures;
+import nl._42.heph.domain.Organization;
+import nl._42.heph.domain.Person;
+import nl._42.heph.domain.Workspace;
+import nl._42.heph.lazy.LazyEntity;
+import nl._42.heph.lazy.LazyEntityReference;
+
+import org.junit.jupiter.api.Test;
+
+public class ParallelReferenceResolutionTest {
+
+    @Test
+    public void resolve_shouldCallReferencesConcurrently() {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Thread caller = Thread.currentThread();
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+
+        PersonFixtures personFixtures = new PersonFixtures() {
+            @Override
+            protected int getReferenceParallelism() {
+                return 2;
+            }
+        };
+
+        // Both suppliers wait for each other, so they only complete if they are called at the same time
+        Organization organization = new Organization();
+        Workspace workspace = new Workspace();
+        workspace.setId(42L);
+        Person person = personFixtures.blank()
+                .withOrganization(() -> await(barrier, threads, organization))
+                .withWorkspace(() -> await(barrier, threads, workspace))
+                .construct();
+
+        assertSame(organization, person.getOrganization());
+        assertEquals(42L, person.getWorkspaceId());
+        assertEquals(2, threads.size());
+        threads.forEach(thread -> assertNotSame(caller, thread));
+    }
+
+    @Test
+    public void resolve_shouldApplyValuesInOrder() {
+        List<String> applied = new ArrayList<>();
+        List<LazyEntity> references = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String name = "Reference " + i;
+            int delay = 10 - i;
+            references.add(new LazyEntityReference<>(() -> null, value -> applied.add(name), () -> {
+                sleep(delay);
+                return new Person();
+            }));
+        }
+
+        new ParallelReferenceResolution(4).resolve(references);
+
+        assertEquals(10, applied.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Reference " + i, applied.get(i));
+        }
+    }
+
+    @Test
+    public void resolve_whenReferenceFails_shouldRethrow() {
+        List<Person> applied = new ArrayList<>();
+        AtomicBoolean slowReferenceFinished = new AtomicBoolean();
+        List<LazyEntity> references = List.of(
+                new LazyEntityReference<>(() -> null, applied::add, Person::new),
+                new LazyEntityReference<Person>(() -> null, applied::add, () -> {
+                    throw new IllegalArgumentException("Failed");
+                }),
+                new LazyEntityReference<Person>(() -> null, applied::add, () -> {
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException e) {
+                        return null;
+                    }
+                    slowReferenceFinished.set(true);
+                    return new Person();
+                }));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> new ParallelReferenceResolution(3).resolve(references));
+
+        assertEquals("Failed", exception.getMessage());
+        assertEquals(1, applied.size());
+
+        // The slow reference is cancelled rather than left running in the background
+        sleep(1000);
+        assertFalse(slowReferenceFinished.get());
+    }
+
+    private static <V> V await(CyclicBarrier barrier, List<Thread> threads, V value) {
+        threads.add(Thread.currentThread());
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+            throw new IllegalStateException("The references have not been resolved concurrently", e);
+        }
+        return value;
+    }
+
+    private static void sleep(int millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
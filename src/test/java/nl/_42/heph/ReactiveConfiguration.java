@@ -0,0 +1,29 @@
+package nl._42.heph;
+
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import nl._42.heph.domain.TeamRepository;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+
+/**
+ * Enables the reactive repositories of the test domain. They use the same in-memory database as JPA, so they find the tables created by Hibernate.
+ */
+@Configuration
+@EnableR2dbcRepositories(basePackageClasses = TeamRepository.class)
+public class ReactiveConfiguration {
+
+    @Bean
+    public R2dbcEntityTemplate r2dbcEntityTemplate() {
+        // The connection factory is not declared as a bean, because Spring Boot would then no longer configure the DataSource of JPA
+        H2ConnectionFactory connectionFactory = new H2ConnectionFactory(H2ConnectionConfiguration.builder()
+                .inMemory("testdb")
+                .username("sa")
+                .password("password")
+                .build());
+        return new R2dbcEntityTemplate(connectionFactory);
+    }
+}
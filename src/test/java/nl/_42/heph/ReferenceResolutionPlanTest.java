@@ -0,0 +1,176 @@
+package nl._42.heph;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import nl._42.heph.builder.OrganizationFixtures;
+import nl._42.heph.builder.PersonFixtures;
+import nl._42.heph.domain.Organization;
+import nl._42.heph.domain.Person;
+import nl._42.heph.domain.Workspace;
+import nl._42.heph.lazy.LazyEntityReference;
+import nl._42.heph.lazy.ReferenceResolutionPlan;
+
+import org.junit.jupiter.api.Test;
+
+public class ReferenceResolutionPlanTest {
+
+    private final OrganizationFixtures organizationFixtures = new OrganizationFixtures();
+    private final PersonFixtures personFixtures = new PersonFixtures();
+
+    @Test
+    public void resolve_sharedReference_shouldBeCalledOnceWithinChain() {
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<Organization> organization = () -> {
+            calls.incrementAndGet();
+            return organizationFixtures._42();
+        };
+
+        Person first = new Person();
+        Person second = new Person();
+        ReferenceResolutionPlan.execute(() -> {
+            new LazyEntityReference<>(first::getOrganization, first::setOrganization, organization).resolve();
+            new LazyEntityReference<>(second::getOrganization, second::setOrganization, organization).resolve();
+            return null;
+        });
+
+        assertEquals(1, calls.get());
+        assertSame(first.getOrganization(), second.getOrganization());
+    }
+
+    @Test
+    public void resolve_outsideChain_shouldCallReferenceEveryTime() {
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<Organization> organization = () -> {
+            calls.incrementAndGet();
+            return organizationFixtures._42();
+        };
+
+        Person first = new Person();
+        Person second = new Person();
+        new LazyEntityReference<>(first::getOrganization, first::setOrganization, organization).resolve();
+        new LazyEntityReference<>(second::getOrganization, second::setOrganization, organization).resolve();
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void construct_sharedReferenceInNestedBuilders_shouldBeCalledOnce() {
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<Organization> employer = () -> {
+            calls.incrementAndGet();
+            return organizationFixtures.blank().withName("Employer").construct();
+        };
+
+        Organization organization = organizationFixtures.blank()
+                .withName("Chain")
+                .withOwner(() -> personFixtures.blank().withName("Owner").withOrganization(employer).construct())
+                .withContactPersons(() -> Set.of(personFixtures.blank().withName("Contact").withOrganization(employer).construct()))
+                .construct();
+
+        assertEquals(1, calls.get());
+        Person contactPerson = organization.getContactPersons().iterator().next();
+        assertSame(organization.getOwner().getOrganization(), contactPerson.getOrganization());
+
+        // A new chain calls the reference again
+        personFixtures.blank().withOrganization(employer).construct();
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void createAll_singletonSupplier_shouldBeCalledPerBuildCommand() {
+        // A constructor reference which captures nothing is a single instance, so within one chain all persons would share its organization
+        List<Person> persons = personFixtures.createAll(3, buildCommand -> buildCommand.withOrganization(Organization::new));
+
+        assertEquals(3, persons.stream().map(Person::getOrganization).distinct().count());
+    }
+
+    @Test
+    public void construct_referenceDependingOnItself_shouldFail() {
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<Organization>[] organization = new Supplier[1];
+        organization[0] = () -> {
+            calls.incrementAndGet();
+            return organizationFixtures.blank()
+                    .withName("Cycle")
+                    .withOwner(() -> personFixtures.blank().withOrganization(organization[0]).construct())
+                    .construct();
+        };
+
+        assertThrows(IllegalStateException.class, () -> personFixtures.blank().withOrganization(organization[0]).construct());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void construct_referenceDependingOnItselfOnOtherThread_shouldFail() {
+        PersonFixtures parallelPersonFixtures = new PersonFixtures() {
+            @Override
+            protected int getReferenceParallelism() {
+                return 2;
+            }
+        };
+
+        // The references of the member are resolved on other threads, which join the chain of the organization supplier that is still running
+        Supplier<Organization>[] organization = new Supplier[1];
+        organization[0] = () -> {
+            parallelPersonFixtures.blank().withName("Member").withOrganization(organization[0]).withWorkspace(Workspace::new).construct();
+            return new Organization();
+        };
+
+        IllegalStateException exception = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(IllegalStateException.class, () -> personFixtures.blank().withOrganization(organization[0]).construct()));
+        assertTrue(exception.getMessage().startsWith("Reference depends on itself"));
+    }
+
+    @Test
+    public void construct_referencesDependingOnEachOtherOnOtherThreads_shouldFail() {
+        PersonFixtures parallelPersonFixtures = new PersonFixtures() {
+            @Override
+            protected int getReferenceParallelism() {
+                return 2;
+            }
+        };
+
+        // Both references are called on threads of their own, after which each needs the entity of the other
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Supplier<Organization>[] organization = new Supplier[1];
+        Supplier<Workspace>[] workspace = new Supplier[1];
+        organization[0] = () -> {
+            await(barrier);
+            return organizationFixtures.blank()
+                    .withName("Cycle")
+                    .withOwner(() -> personFixtures.blank().withWorkspace(workspace[0]).construct())
+                    .construct();
+        };
+        workspace[0] = () -> {
+            await(barrier);
+            personFixtures.blank().withOrganization(organization[0]).construct();
+            return new Workspace();
+        };
+
+        IllegalStateException exception = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(IllegalStateException.class,
+                () -> parallelPersonFixtures.blank().withOrganization(organization[0]).withWorkspace(workspace[0]).construct()));
+        assertTrue(exception.getMessage().startsWith("Reference depends on itself"));
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+            throw new IllegalStateException("The references have not been resolved concurrently", e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package nl._42.heph.builder;
+
+import java.util.function.Supplier;
+
+import nl._42.heph.AbstractBuildCommand;
+import nl._42.heph.JdbcBatchBeanSaver;
+import nl._42.heph.domain.Organization;
+import nl._42.heph.domain.Person;
+
+public interface BulkPersonBuildCommand extends AbstractBuildCommand<Person, JdbcBatchBeanSaver<Person>> {
+
+    @Override
+    default Person findEntity(Person entity) {
+        return null;
+    }
+
+    BulkPersonBuildCommand withName(String name);
+
+    BulkPersonBuildCommand withOrganization(Supplier<Organization> organizationReference);
+}
@@ -0,0 +1,26 @@
+package nl._42.heph.builder;
+
+import nl._42.heph.AbstractBuilder;
+import nl._42.heph.domain.Person;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class BulkPersonFixtures extends AbstractBuilder<Person, BulkPersonBuildCommand> {
+
+    @Autowired
+    private OrganizationFixtures organizationFixtures;
+
+    @Override
+    public BulkPersonBuildCommand base() {
+        return blank()
+                .withName(PersonFixtures.EXPECTED_NAME)
+                .withOrganization(organizationFixtures::_42);
+    }
+
+    @Override
+    protected int getJdbcBatchSize() {
+        return 2;
+    }
+}
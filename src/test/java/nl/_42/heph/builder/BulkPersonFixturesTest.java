@@ -0,0 +1,138 @@
+package nl._42.heph.builder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.EntityManagerFactory;
+import nl._42.heph.JdbcBatchBeanSaver;
+import nl._42.heph.domain.Invoice;
+import nl._42.heph.domain.Organization;
+import nl._42.heph.domain.Person;
+import nl._42.heph.domain.PersonRepository;
+import nl._42.heph.shared.AbstractSpringTest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class BulkPersonFixturesTest extends AbstractSpringTest {
+
+    @Autowired
+    private BulkPersonFixtures bulkPersonFixtures;
+    @Autowired
+    private OrganizationFixtures organizationFixtures;
+    @Autowired
+    private PersonRepository personRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void create_shouldInsertWithGeneratedId() {
+        Person person = bulkPersonFixtures.base().create();
+
+        assertNotNull(person.getId());
+        Person found = personRepository.findById(person.getId()).orElseThrow();
+        assertEquals(PersonFixtures.EXPECTED_NAME, found.getName());
+        assertEquals(person.getOrganization().getId(), found.getOrganization().getId());
+    }
+
+    @Test
+    public void createAll_shouldInsertAllEntities() {
+        List<Person> persons = bulkPersonFixtures.createAll(5, command -> command.withName("Bulk"));
+
+        assertEquals(5, persons.size());
+        assertEquals(5, persons.stream().map(Person::getId).distinct().count());
+        assertEquals(5, personRepository.count());
+        for (Person person : persons) {
+            assertEquals("Bulk", personRepository.findById(person.getId()).orElseThrow().getName());
+        }
+    }
+
+    @Test
+    public void saveAll_shouldSendBatchesOfBatchSize() {
+        Organization organization = organizationFixtures._42();
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Person person = new Person();
+            person.setName("Batched " + i);
+            person.setOrganization(organization);
+            persons.add(person);
+        }
+
+        List<Integer> batchSizes = new ArrayList<>();
+        JdbcTemplate countingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public int[] batchUpdate(PreparedStatementCreator creator, BatchPreparedStatementSetter setter, KeyHolder keyHolder) {
+                batchSizes.add(setter.getBatchSize());
+                return super.batchUpdate(creator, setter, keyHolder);
+            }
+        };
+        new JdbcBatchBeanSaver<>(Person.class, countingJdbcTemplate, entityManagerFactory, 2).saveAll(persons);
+
+        assertEquals(List.of(2, 2, 1), batchSizes);
+        assertEquals(5, persons.stream().map(Person::getId).distinct().count());
+        assertEquals(5, personRepository.count());
+    }
+
+    @Test
+    public void createAll_shouldContinueAfterJpaInserts() {
+        Person person = bulkPersonFixtures.base().create();
+        Person other = personRepository.save(new Person());
+
+        List<Person> persons = bulkPersonFixtures.createAll(2, command -> command.withName("Bulk"));
+
+        assertTrue(other.getId() > person.getId());
+        assertTrue(persons.get(0).getId() > other.getId());
+    }
+
+    @Test
+    public void update_existingEntity_shouldBeRejected() {
+        Person person = bulkPersonFixtures.base().create();
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> bulkPersonFixtures.update(person).withName("Updated").create());
+
+        assertEquals("Entity [nl._42.heph.domain.Person] with id [" + person.getId() + "] already exists. JdbcBatchBeanSaver can only insert new entities, not update them",
+                exception.getMessage());
+        assertEquals(1, personRepository.count());
+        assertEquals(PersonFixtures.EXPECTED_NAME, personRepository.findById(person.getId()).orElseThrow().getName());
+    }
+
+    @Test
+    public void save_versionedEntity_shouldSeedVersion() {
+        Invoice invoice = new Invoice();
+        invoice.setNumber("2024-001");
+
+        new JdbcBatchBeanSaver<>(Invoice.class, jdbcTemplate, entityManagerFactory, 50).save(invoice);
+
+        assertEquals(0L, invoice.getVersion());
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT version FROM Invoice WHERE id = ?", Long.class, invoice.getId()));
+
+        // The row can be updated through JPA, whose optimistic locking compares the version
+        transactionTemplate.executeWithoutResult(status ->
+                EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory).find(Invoice.class, invoice.getId()).setNumber("2024-002"));
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT version FROM Invoice WHERE id = ?", Long.class, invoice.getId()));
+    }
+
+    @Test
+    public void constructor_shouldRejectCollectionTables() {
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> new JdbcBatchBeanSaver<>(Organization.class, jdbcTemplate, entityManagerFactory, 50));
+
+        assertEquals("Property [legalIdentityNumbers] of entity [nl._42.heph.domain.Organization] is a collection with its own table, which is not supported by JdbcBatchBeanSaver",
+                exception.getMessage());
+    }
+}
@@ -1,8 +1,12 @@
 package nl._42.heph.builder;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import nl._42.heph.AbstractBuildCommand;
 import nl._42.heph.domain.Organization;
@@ -18,6 +22,18 @@ public interface OrganizationBuildCommand extends AbstractBuildCommand<Organizat
         return getRepository().findByName(entity.getName());
     }
 
+    @Override
+    default List<Organization> findEntities(List<Organization> entities) {
+        Map<String, Organization> organizationsByName = getRepository().findByNameIn(entities.stream().map(Organization::getName).toList()).stream()
+                .collect(Collectors.toMap(Organization::getName, Function.identity()));
+        return entities.stream().map(entity -> organizationsByName.get(entity.getName())).toList();
+    }
+
+    @Override
+    default Object findEntityKey(Organization entity) {
+        return entity.getName();
+    }
+
     OrganizationBuildCommand withId(Long id);
 
     OrganizationBuildCommand withName(String name);
@@ -39,6 +39,19 @@ public class OrganizationFixturesTest extends AbstractSpringTest {
         assertEquals(organization.getName(), organizations.getFirst().getName());
     }
 
+    @Test
+    public void createAll_shouldFindExistingOrganizationsAtOnce() {
+        Organization apple = organizationFixtures.apple();
+
+        List<Organization> organizations = organizationFixtures.createAll(List.of(
+                organizationFixtures.base().withName("Pear"),
+                organizationFixtures.base().withName("Apple")));
+
+        assertEquals("Pear", organizations.get(0).getName());
+        assertEquals(apple.getId(), organizations.get(1).getId());
+        assertEquals(2, organizationRepository.count());
+    }
+
     @Test
     public void collectionMappings_shouldAddProperlyToCollectionsAndAppendIfNeeded() {
         Organization banana = organizationFixtures.banana();
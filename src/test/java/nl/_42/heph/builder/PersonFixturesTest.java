@@ -1,8 +1,11 @@
 package nl._42.heph.builder;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
@@ -61,6 +64,55 @@ public class PersonFixturesTest extends AbstractSpringTest {
         assertEquals("aName #1", aPerson.getName());
     }
 
+    @Test
+    public void createAll() {
+        AtomicInteger counter = new AtomicInteger(0);
+
+        List<Person> persons = personFixtures.createAll(3, (buildCommand) -> buildCommand.withName("Person " + counter.incrementAndGet()));
+
+        assertEquals(List.of("Person 1", "Person 2", "Person 3"), persons.stream().map(Person::getName).toList());
+        persons.forEach(person -> assertNotNull(person.getId()));
+        assertEquals(3, personRepository.count());
+        // The lazy organization is created once and found for the other persons
+        assertEquals(1, organizationRepository.count());
+    }
+
+    @Test
+    public void createAllWithExistingEntity() {
+        Person sjaak = new Person();
+        sjaak.setName(PersonFixtures.EXPECTED_NAME);
+        personRepository.save(sjaak);
+
+        List<Person> persons = personFixtures.createAll(List.of(personFixtures.base(), personFixtures.base().withName("Henk")));
+
+        assertEquals(sjaak.getId(), persons.get(0).getId());
+        assertEquals("Henk", persons.get(1).getName());
+        assertEquals(2, personRepository.count());
+    }
+
+    @Test
+    public void createAllPostProcessesSavedEntities() {
+        List<Long> postProcessedIds = new ArrayList<>();
+
+        List<Person> persons = personFixtures.createAll(List.of(
+                personFixtures.base().withName("A").withCallbackFunction(person -> postProcessedIds.add(person.getId())),
+                personFixtures.base().withName("B").withCallbackFunction(person -> postProcessedIds.add(person.getId()))));
+
+        assertEquals(persons.stream().map(Person::getId).toList(), postProcessedIds);
+        postProcessedIds.forEach(id -> assertNotNull(id));
+    }
+
+    @Test
+    public void createAllWithoutSpringContext() {
+        List<Person> persons = new PersonFixtures().createAll(2, (buildCommand) -> { });
+
+        assertEquals(2, persons.size());
+        persons.forEach(person -> {
+            assertEquals(PersonFixtures.EXPECTED_NAME, person.getName());
+            assertNull(person.getId());
+        });
+    }
+
     @Test
     public void createWithoutSpringContext() {
         assertCreationWithoutSpringContext(new PersonFixtures().base()::create);
@@ -0,0 +1,30 @@
+package nl._42.heph.builder;
+
+import java.util.function.Supplier;
+
+import nl._42.heph.ReactiveBuildCommand;
+import nl._42.heph.domain.Player;
+import nl._42.heph.domain.PlayerRepository;
+import nl._42.heph.domain.Team;
+import nl._42.heph.lazy.EntityField;
+import nl._42.heph.lazy.EntityId;
+import nl._42.heph.lazy.Resolve;
+import nl._42.heph.lazy.ResolveStrategy;
+
+import reactor.core.publisher.Mono;
+
+public interface PlayerBuildCommand extends ReactiveBuildCommand<Player, PlayerRepository> {
+
+    @Override
+    default Mono<Player> findEntityMono(Player entity) {
+        return getRepository().findByNameAndTeamId(entity.getName(), entity.getTeamId());
+    }
+
+    PlayerBuildCommand withName(String name);
+
+    @EntityField("teamId")
+    @EntityId
+    @Resolve(ResolveStrategy.BEFORE_FIND)
+    PlayerBuildCommand withTeam(Supplier<Team> teamReference);
+
+}
@@ -0,0 +1,30 @@
+package nl._42.heph.builder;
+
+import nl._42.heph.AbstractBuilder;
+import nl._42.heph.domain.Player;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import reactor.core.publisher.Mono;
+
+@Component
+public class PlayerFixtures extends AbstractBuilder<Player, PlayerBuildCommand> {
+
+    public static final String EXPECTED_NAME = "Cruijff";
+
+    @Autowired
+    private TeamFixtures teamFixtures;
+
+    @Override
+    public PlayerBuildCommand base() {
+        return blank()
+                .withName(EXPECTED_NAME)
+                .withTeam(teamFixtures::ajax);
+    }
+
+    public Mono<Player> cruijff() {
+        return base()
+                .createMono();
+    }
+}
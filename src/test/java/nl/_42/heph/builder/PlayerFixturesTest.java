@@ -0,0 +1,97 @@
+package nl._42.heph.builder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import nl._42.heph.domain.Player;
+import nl._42.heph.domain.PlayerRepository;
+import nl._42.heph.domain.Team;
+import nl._42.heph.domain.TeamRepository;
+import nl._42.heph.shared.AbstractSpringTest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class PlayerFixturesTest extends AbstractSpringTest {
+
+    @Autowired
+    private PlayerFixtures playerFixtures;
+
+    @Autowired
+    private TeamFixtures teamFixtures;
+
+    @Autowired
+    private PlayerRepository playerRepository;
+
+    @Autowired
+    private TeamRepository teamRepository;
+
+    @Test
+    public void createMono_shouldSaveEntityAndReferences() {
+        Player player = playerFixtures.cruijff().block();
+
+        assertNotNull(player.getId());
+        assertEquals(PlayerFixtures.EXPECTED_NAME, player.getName());
+        Team team = teamRepository.findById(player.getTeamId()).block();
+        assertEquals(TeamFixtures.EXPECTED_NAME, team.getName());
+    }
+
+    @Test
+    public void createMono_twice_shouldFindPreExistingEntity() {
+        Player first = playerFixtures.cruijff().block();
+        Player second = playerFixtures.cruijff().block();
+
+        assertEquals(first.getId(), second.getId());
+        assertEquals(1L, playerRepository.count().block());
+        assertEquals(1L, teamRepository.count().block());
+    }
+
+    @Test
+    public void createMono_shouldNotCreateBeforeSubscription() {
+        playerFixtures.cruijff();
+
+        assertEquals(0L, playerRepository.count().block());
+        assertEquals(0L, teamRepository.count().block());
+    }
+
+    @Test
+    public void createMono_shouldResolveReferencesOffCallingThread() {
+        AtomicReference<Thread> resolver = new AtomicReference<>();
+        playerFixtures.base()
+                .withTeam(() -> {
+                    resolver.set(Thread.currentThread());
+                    return teamFixtures.ajax();
+                })
+                .createMono()
+                .block();
+
+        assertNotEquals(Thread.currentThread(), resolver.get());
+        assertTrue(resolver.get().getName().startsWith("boundedElastic"));
+    }
+
+    @Test
+    public void create_shouldWaitForReactiveRepository() {
+        Team team = teamFixtures.ajax();
+
+        assertNotNull(team.getId());
+        assertEquals(team.getId(), teamFixtures.ajax().getId());
+        assertEquals(1L, teamRepository.count().block());
+    }
+
+    @Test
+    public void createMono_failingReference_shouldSignalError() {
+        assertThrows(IllegalStateException.class, () -> playerFixtures.base()
+                .withName("Van Basten")
+                .withTeam(() -> {
+                    throw new IllegalStateException("No team");
+                })
+                .createMono()
+                .block());
+        assertEquals(0L, playerRepository.count().block());
+    }
+}
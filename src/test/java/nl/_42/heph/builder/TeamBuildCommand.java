@@ -0,0 +1,14 @@
+package nl._42.heph.builder;
+
+import nl._42.heph.FixtureKey;
+import nl._42.heph.ReactiveBuildCommand;
+import nl._42.heph.domain.Team;
+import nl._42.heph.domain.TeamRepository;
+
+public interface TeamBuildCommand extends ReactiveBuildCommand<Team, TeamRepository> {
+
+    // No findEntityMono: teams are found by their name
+    @FixtureKey
+    TeamBuildCommand withName(String name);
+
+}
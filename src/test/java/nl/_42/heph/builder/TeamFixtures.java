@@ -0,0 +1,23 @@
+package nl._42.heph.builder;
+
+import nl._42.heph.AbstractBuilder;
+import nl._42.heph.domain.Team;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class TeamFixtures extends AbstractBuilder<Team, TeamBuildCommand> {
+
+    public static final String EXPECTED_NAME = "Ajax";
+
+    @Override
+    public TeamBuildCommand base() {
+        return blank()
+                .withName(EXPECTED_NAME);
+    }
+
+    public Team ajax() {
+        return base()
+                .create();
+    }
+}
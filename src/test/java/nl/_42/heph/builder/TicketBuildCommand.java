@@ -0,0 +1,15 @@
+package nl._42.heph.builder;
+
+import nl._42.heph.AbstractBuildCommand;
+import nl._42.heph.FixtureKey;
+import nl._42.heph.domain.Ticket;
+import nl._42.heph.domain.TicketRepository;
+
+public interface TicketBuildCommand extends AbstractBuildCommand<Ticket, TicketRepository> {
+
+    @FixtureKey
+    TicketBuildCommand withCode(String code);
+
+    TicketBuildCommand withId(Long id);
+
+}
@@ -0,0 +1,32 @@
+package nl._42.heph.builder;
+
+import nl._42.heph.AbstractBuilder;
+import nl._42.heph.IdAllocator;
+import nl._42.heph.RangeIdAllocator;
+import nl._42.heph.domain.Ticket;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class TicketFixtures extends AbstractBuilder<Ticket, TicketBuildCommand> {
+
+    public static final long FIRST_ID = 1_000;
+
+    private final RangeIdAllocator idAllocator = new RangeIdAllocator(FIRST_ID, 2_000);
+
+    @Override
+    protected IdAllocator getIdAllocator() {
+        return idAllocator;
+    }
+
+    @Override
+    public TicketBuildCommand base() {
+        return blank()
+                .withCode("T-1");
+    }
+
+    public Ticket first() {
+        return base()
+                .create();
+    }
+}
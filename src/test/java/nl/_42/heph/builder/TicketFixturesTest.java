@@ -0,0 +1,107 @@
+package nl._42.heph.builder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import nl._42.heph.domain.Ticket;
+import nl._42.heph.domain.TicketRepository;
+import nl._42.heph.shared.AbstractSpringTest;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class TicketFixturesTest extends AbstractSpringTest {
+
+    @Autowired
+    private TicketFixtures ticketFixtures;
+    @Autowired
+    private TicketRepository ticketRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void create_withIdAllocator_shouldInsertWithAllocatedId() {
+        Ticket ticket = ticketFixtures.first();
+        Ticket other = ticketFixtures.base().withCode("T-2").create();
+
+        assertEquals(other.getId(), ticket.getId() + 1);
+        assertTrue(ticket.getId() >= TicketFixtures.FIRST_ID);
+        assertFalse(ticket.isNew());
+        assertEquals("T-1", ticketRepository.findById(ticket.getId()).orElseThrow().getCode());
+        assertEquals(2, ticketRepository.count());
+    }
+
+    @Test
+    public void create_existingEntity_shouldNotAllocateId() {
+        Ticket first = ticketFixtures.first();
+        Ticket found = ticketFixtures.first();
+        Ticket next = ticketFixtures.base().withCode("T-2").create();
+
+        assertEquals(first.getId(), found.getId());
+        assertEquals(first.getId() + 1, next.getId());
+    }
+
+    @Test
+    public void createAll_withIdAllocator_shouldAssignConsecutiveIds() {
+        List<Ticket> tickets = ticketFixtures.createAll(List.of(
+                ticketFixtures.base().withCode("A"),
+                ticketFixtures.base().withCode("B"),
+                ticketFixtures.base().withCode("C")));
+
+        assertEquals(tickets.get(0).getId() + 1, tickets.get(1).getId());
+        assertEquals(tickets.get(1).getId() + 1, tickets.get(2).getId());
+        assertEquals(3, ticketRepository.count());
+    }
+
+    @Test
+    public void createAll_shouldBatchInserts() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            statistics.clear();
+            AtomicInteger counter = new AtomicInteger();
+            ticketFixtures.createAll(5, buildCommand -> buildCommand.withCode("Batched " + counter.incrementAndGet()));
+            long batchedStatements = statistics.getPrepareStatementCount();
+            assertEquals(5, statistics.getEntityInsertCount());
+
+            statistics.clear();
+            for (int i = 0; i < 5; i++) {
+                ticketFixtures.base().withCode("Single " + i).create();
+            }
+            long singleStatements = statistics.getPrepareStatementCount();
+            assertEquals(5, statistics.getEntityInsertCount());
+
+            // Each separate create prepares its own insert, a batch shares one prepared insert for all entities
+            assertTrue(batchedStatements < singleStatements,
+                    "Expected fewer prepared statements when batching, got " + batchedStatements + " against " + singleStatements);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    public void copy_persistedEntity_shouldCreateNewEntity() {
+        Ticket ticket = ticketFixtures.first();
+
+        Ticket copy = ticketFixtures.copy(ticket).withCode("T-2").create();
+
+        assertEquals(ticket.getId() + 1, copy.getId());
+        assertEquals(2, ticketRepository.count());
+    }
+
+    @Test
+    public void create_withGivenId_shouldKeepId() {
+        Ticket ticket = ticketFixtures.base().withId(42L).create();
+
+        assertEquals(42L, ticket.getId());
+        assertTrue(ticketRepository.existsById(42L));
+    }
+}
@@ -0,0 +1,48 @@
+package nl._42.heph.builder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import nl._42.heph.FindEntityCache;
+import nl._42.heph.domain.Workspace;
+import nl._42.heph.domain.WorkspaceRepository;
+import nl._42.heph.shared.AbstractSpringTest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class WorkspaceFixturesTest extends AbstractSpringTest {
+
+    @Autowired
+    private WorkspaceFixtures workspaceFixtures;
+    @Autowired
+    private WorkspaceRepository workspaceRepository;
+    @Autowired
+    private FindEntityCache findEntityCache;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void create_withFixtureKey_shouldFindExistingEntityByKey() {
+        Workspace first = workspaceFixtures.my_workspace();
+        Workspace second = workspaceFixtures.my_workspace();
+        Workspace other = workspaceFixtures.base().withName("Other workspace").create();
+
+        assertEquals(first.getId(), second.getId());
+        assertNotEquals(first.getId(), other.getId());
+        assertEquals(2, workspaceRepository.count());
+    }
+
+    @Test
+    public void create_withFixtureKeyInTransaction_shouldUseFindEntityCache() {
+        findEntityCache.resetCounters();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> assertSame(workspaceFixtures.my_workspace(), workspaceFixtures.my_workspace()));
+
+        assertEquals(1, findEntityCache.getMisses());
+        assertEquals(1, findEntityCache.getHits());
+    }
+}
@@ -0,0 +1,27 @@
+package nl._42.heph.domain;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Version;
+import nl._42.heph.shared.AbstractEntity;
+
+@Entity
+public class Invoice extends AbstractEntity {
+
+    private String number;
+
+    @Version
+    private Long version;
+
+    public String getNumber() {
+        return number;
+    }
+
+    public void setNumber(String number) {
+        this.number = number;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+}
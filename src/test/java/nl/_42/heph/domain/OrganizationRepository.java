@@ -1,9 +1,14 @@
 package nl._42.heph.domain;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 
 public interface OrganizationRepository extends JpaRepository<Organization, Long> {
 
     Organization findByName(String name);
 
+    List<Organization> findByNameIn(Collection<String> names);
+
 }
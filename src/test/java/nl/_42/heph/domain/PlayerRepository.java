@@ -0,0 +1,10 @@
+package nl._42.heph.domain;
+
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+
+import reactor.core.publisher.Mono;
+
+public interface PlayerRepository extends R2dbcRepository<Player, Long> {
+
+    Mono<Player> findByNameAndTeamId(String name, Long teamId);
+}
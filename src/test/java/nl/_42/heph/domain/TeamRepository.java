@@ -0,0 +1,6 @@
+package nl._42.heph.domain;
+
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+
+public interface TeamRepository extends R2dbcRepository<Team, Long> {
+}
@@ -0,0 +1,52 @@
+package nl._42.heph.domain;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Entity with an assigned identifier: it is new until it has been persisted, regardless of its identifier.
+ */
+@Entity
+public class Ticket implements Persistable<Long> {
+
+    @Id
+    private Long id;
+
+    private String code;
+
+    @Transient
+    private boolean persisted;
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        this.persisted = true;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+}
@@ -0,0 +1,6 @@
+package nl._42.heph.domain;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface TicketRepository extends JpaRepository<Ticket, Long> {
+}
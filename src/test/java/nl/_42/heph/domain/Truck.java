@@ -0,0 +1,18 @@
+package nl._42.heph.domain;
+
+import jakarta.persistence.Entity;
+
+@Entity
+public class Truck extends Vehicle {
+
+    private Integer axles;
+
+    public Integer getAxles() {
+        return axles;
+    }
+
+    public void setAxles(Integer axles) {
+        this.axles = axles;
+    }
+
+}
@@ -0,0 +1,19 @@
+package nl._42.heph.domain;
+
+import jakarta.persistence.Entity;
+import nl._42.heph.shared.AbstractEntity;
+
+@Entity
+public class Vehicle extends AbstractEntity {
+
+    private String brand;
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public void setBrand(String brand) {
+        this.brand = brand;
+    }
+
+}
@@ -0,0 +1,66 @@
+package nl._42.heph.generation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nl._42.heph.NoOpBeanSaver;
+import nl._42.heph.builder.PersonBuildCommand;
+import nl._42.heph.builder.UnsavableEntity;
+import nl._42.heph.builder.UnsavableEntityBuildCommand;
+import nl._42.heph.domain.Person;
+
+import org.junit.jupiter.api.Test;
+
+public class BuildCommandProxyFactoryTest {
+
+    @Test
+    public void forInterface_calledTwice_shouldReturnSameFactory() {
+        assertSame(BuildCommandProxyFactory.forInterface(UnsavableEntityBuildCommand.class), BuildCommandProxyFactory.forInterface(UnsavableEntityBuildCommand.class));
+    }
+
+    @Test
+    public void newBuildCommand_shouldWrapOwnEntity() {
+        BuildCommandProxyFactory<UnsavableEntityBuildCommand> factory = BuildCommandProxyFactory.forInterface(UnsavableEntityBuildCommand.class);
+
+        UnsavableEntity first = new UnsavableEntity();
+        UnsavableEntity second = new UnsavableEntity();
+        UnsavableEntityBuildCommand firstBuildCommand = factory.newBuildCommand(first, () -> null);
+        UnsavableEntityBuildCommand secondBuildCommand = factory.newBuildCommand(second, () -> null);
+
+        assertNotSame(firstBuildCommand, secondBuildCommand);
+        assertSame(firstBuildCommand, firstBuildCommand.withVersion("1"));
+        assertSame(secondBuildCommand, secondBuildCommand.withVersion("2"));
+
+        assertSame(first, firstBuildCommand.create());
+        assertEquals("1", first.getVersion());
+        assertSame(second, secondBuildCommand.create());
+        assertEquals("2", second.getVersion());
+    }
+
+    @Test
+    public void newBuildCommand_defaultMethods_shouldBeCalledOnProxy() {
+        Person person = new Person();
+        AtomicInteger callbacks = new AtomicInteger();
+        PersonBuildCommand buildCommand = BuildCommandProxyFactory.forInterface(PersonBuildCommand.class).newBuildCommand(person, () -> null);
+
+        for (int i = 0; i < 3; i++) {
+            assertSame(buildCommand, buildCommand.withCallbackFunction((p) -> callbacks.incrementAndGet()));
+            buildCommand.postProcess(person);
+        }
+
+        assertEquals(3, callbacks.get());
+    }
+
+    @Test
+    public void newBuildCommand_internalCallToOverriddenMethod_shouldBeRedirectedToDefaultMethod() {
+        UnsavableEntityBuildCommand buildCommand = BuildCommandProxyFactory.forInterface(UnsavableEntityBuildCommand.class)
+                .newBuildCommand(new UnsavableEntity(), NoOpBeanSaver::new);
+
+        // DefaultBuildCommand.findEntity throws, the default method of UnsavableEntityBuildCommand returns null.
+        assertNull(buildCommand.find());
+    }
+}
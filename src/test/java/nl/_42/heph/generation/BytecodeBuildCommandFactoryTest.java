@@ -0,0 +1,133 @@
+package nl._42.heph.generation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import nl._42.heph.AbstractBuildCommand;
+import nl._42.heph.DefaultBuildCommand;
+import nl._42.heph.NoOpBeanSaver;
+import nl._42.heph.builder.AncientTribeBuildCommand;
+import nl._42.heph.builder.UnsavableEntity;
+import nl._42.heph.builder.UnsavableEntityBuildCommand;
+import nl._42.heph.domain.AncientTribe;
+import nl._42.heph.lazy.EntityField;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Persistable;
+
+public class BytecodeBuildCommandFactoryTest {
+
+    @Test
+    public void forInterface_calledTwice_shouldReturnSameFactory() {
+        assertSame(BytecodeBuildCommandFactory.forInterface(UnsavableEntityBuildCommand.class), BytecodeBuildCommandFactory.forInterface(UnsavableEntityBuildCommand.class));
+    }
+
+    @Test
+    public void newBuildCommand_shouldBeSingleGeneratedClass() {
+        UnsavableEntityBuildCommand buildCommand = BytecodeBuildCommandFactory.forInterface(UnsavableEntityBuildCommand.class).newBuildCommand(new UnsavableEntity(), () -> null);
+
+        assertFalse(Proxy.isProxyClass(buildCommand.getClass()));
+        assertTrue(buildCommand instanceof DefaultBuildCommand);
+        assertEquals(UnsavableEntityBuildCommand.class.getPackage(), buildCommand.getClass().getPackage());
+    }
+
+    @Test
+    public void newBuildCommand_directSetter_shouldApplyValueAndCallDefaultMethods() {
+        UnsavableEntity entity = new UnsavableEntity();
+        UnsavableEntityBuildCommand buildCommand = BytecodeBuildCommandFactory.forInterface(UnsavableEntityBuildCommand.class).newBuildCommand(entity, () -> null);
+
+        assertSame(buildCommand, buildCommand.withVersion("1"));
+        assertNull(buildCommand.findEntity(entity));
+        assertSame(entity, buildCommand.create());
+        assertEquals("1", entity.getVersion());
+    }
+
+    @Test
+    public void newBuildCommand_arraysAndCollections_shouldBeMappedByDefaultBuildCommand() {
+        AncientTribeBuildCommand buildCommand = BytecodeBuildCommandFactory.forInterface(AncientTribeBuildCommand.class).newBuildCommand(new AncientTribe(), () -> null);
+
+        AncientTribe tribe = buildCommand
+                .withInhabitantAges(new int[] { 29, 14 })
+                .withInhabitantNames(List.of("Simba"))
+                .withInhabitantNames(List.of("Nala"))
+                .withInhabitantsHaveBeenResearched(new boolean[] { true, false })
+                .create();
+
+        assertArrayEquals(new int[] { 29, 14 }, tribe.getInhabitantAges());
+        assertArrayEquals(new String[] { "Simba", "Nala" }, tribe.getInhabitantNames());
+        assertEquals(List.of(true, false), List.copyOf(tribe.getInhabitantsHaveBeenResearched()));
+    }
+
+    @Test
+    public void newBuildCommand_withMethods_shouldWriteFieldsLikeProxy() {
+        Label generated = BytecodeBuildCommandFactory.forInterface(LabelBuildCommand.class).newBuildCommand(new Label(), () -> null)
+                .withName("name").withCode("code").withCount(3).withTitle("title").construct();
+        Label proxied = BuildCommandProxyFactory.forInterface(LabelBuildCommand.class).newBuildCommand(new Label(), () -> null)
+                .withName("name").withCode("code").withCount(3).withTitle("title").construct();
+
+        // The setters of the entity are not called
+        assertEquals("name", generated.name);
+        assertEquals("code", generated.code);
+        assertEquals(3, generated.count);
+        assertEquals("title", generated.title);
+        assertEquals(List.of(proxied.name, proxied.code, proxied.count, proxied.title), List.of(generated.name, generated.code, generated.count, generated.title));
+    }
+
+    public static class Label implements Persistable<Long> {
+
+        private String name;
+        public String code;
+        private int count;
+        private String title;
+
+        public void setName(String name) {
+            this.name = name.toUpperCase();
+        }
+
+        public void setCode(String code) {
+            this.code = "setter";
+        }
+
+        public void setCount(int count) {
+            this.count = -1;
+        }
+
+        public void setTitle(String title) {
+            this.name = title;
+        }
+
+        @Override
+        public Long getId() {
+            return null;
+        }
+
+        @Override
+        public boolean isNew() {
+            return true;
+        }
+    }
+
+    public interface LabelBuildCommand extends AbstractBuildCommand<Label, NoOpBeanSaver> {
+
+        @Override
+        default Label findEntity(Label entity) {
+            return null;
+        }
+
+        LabelBuildCommand withName(String name);
+
+        LabelBuildCommand withCode(String code);
+
+        LabelBuildCommand withCount(Integer count);
+
+        @EntityField("title")
+        LabelBuildCommand withTitle(String title);
+    }
+}
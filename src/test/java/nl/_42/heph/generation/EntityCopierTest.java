@@ -0,0 +1,112 @@
+package nl._42.heph.generation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import nl._42.heph.domain.Organization;
+import nl._42.heph.domain.Person;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+
+public class EntityCopierTest {
+
+    @Test
+    public void copy_entity_shouldCopyAllFieldsExceptId() {
+        Organization organization = new Organization();
+        Person person = new Person();
+        person.setId(42L);
+        person.setName("Sjaak");
+        person.setOrganization(organization);
+
+        EntityCopier copier = EntityCopier.forClass(Person.class);
+        Person copy = new Person();
+        copier.copy(person, copy, CopyDepth.COLLECTIONS);
+
+        assertEquals("id", copier.getIdField().getName());
+        assertNull(copy.getId());
+        assertEquals("Sjaak", copy.getName());
+        assertSame(organization, copy.getOrganization());
+    }
+
+    @Test
+    public void copy_collections_shouldCopyCollectionsAndArrays() {
+        Organization organization = new Organization();
+        organization.setLegalIdentityNumbers(List.of("42", "24"));
+        organization.setLegalContract(new byte[] { 42 });
+
+        Organization copy = new Organization();
+        EntityCopier.forClass(Organization.class).copy(organization, copy, CopyDepth.COLLECTIONS);
+
+        assertNotSame(organization.getLegalIdentityNumbers(), copy.getLegalIdentityNumbers());
+        assertEquals(organization.getLegalIdentityNumbers(), copy.getLegalIdentityNumbers());
+        // The copy of an immutable list can be changed
+        copy.getLegalIdentityNumbers().add("44");
+        assertNotSame(organization.getLegalContract(), copy.getLegalContract());
+        assertArrayEquals(organization.getLegalContract(), copy.getLegalContract());
+    }
+
+    @Test
+    public void copy_shallow_shouldShareCollectionsAndArrays() {
+        Organization organization = new Organization();
+        organization.setLegalIdentityNumbers(List.of("42", "24"));
+        organization.setLegalContract(new byte[] { 42 });
+
+        Organization copy = new Organization();
+        EntityCopier.forClass(Organization.class).copy(organization, copy, CopyDepth.SHALLOW);
+
+        assertSame(organization.getLegalIdentityNumbers(), copy.getLegalIdentityNumbers());
+        assertSame(organization.getLegalContract(), copy.getLegalContract());
+    }
+
+    @Test
+    public void copy_annotatedIdVersionAndTransient_shouldNotBeCopied() {
+        Document document = new Document();
+        document.key = "doc-1";
+        document.version = 3;
+        document.title = "Title";
+        document.tags.add("a");
+        document.scores.put("b", 1);
+        document.cached = "cached";
+
+        EntityCopier copier = EntityCopier.forClass(Document.class);
+        Document copy = new Document();
+        copier.copy(document, copy, CopyDepth.COLLECTIONS);
+
+        assertEquals("key", copier.getIdField().getName());
+        assertNull(copy.key);
+        assertEquals(0, copy.version);
+        assertNull(copy.cached);
+        assertEquals("Title", copy.title);
+        assertEquals(LinkedList.class, copy.tags.getClass());
+        assertEquals(List.of("a"), copy.tags);
+        assertEquals(TreeMap.class, copy.scores.getClass());
+        assertEquals(Map.of("b", 1), copy.scores);
+    }
+
+    static class Document {
+
+        @Id
+        private String key;
+
+        @Version
+        private long version;
+
+        private String title;
+
+        private final LinkedList<String> tags = new LinkedList<>();
+
+        private Map<String, Integer> scores = new TreeMap<>();
+
+        private transient String cached;
+    }
+}
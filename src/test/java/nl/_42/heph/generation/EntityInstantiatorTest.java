@@ -0,0 +1,66 @@
+package nl._42.heph.generation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.function.Supplier;
+
+import nl._42.heph.domain.Person;
+import nl._42.heph.shared.AbstractEntity;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanInstantiationException;
+
+public class EntityInstantiatorTest {
+
+    @Test
+    public void forClass_publicConstructor_shouldCreateNewInstances() {
+        Supplier<Person> supplier = EntityInstantiator.forClass(Person.class);
+
+        Person first = supplier.get();
+        Person second = supplier.get();
+
+        assertEquals(Person.class, first.getClass());
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void forClass_protectedConstructor_shouldCompileConstructor() {
+        Supplier<ProtectedEntity> supplier = EntityInstantiator.forClass(ProtectedEntity.class);
+
+        // Compiled by the LambdaMetafactory, rather than falling back to a reflective or method handle based supplier.
+        assertTrue(supplier.getClass().isHidden());
+        assertEquals("protected", supplier.get().createdBy);
+    }
+
+    @Test
+    public void forClass_abstractClass_shouldFailOnInstantiation() {
+        Supplier<AbstractEntity> supplier = EntityInstantiator.forClass(AbstractEntity.class);
+
+        assertThrows(BeanInstantiationException.class, supplier::get);
+    }
+
+    @Test
+    public void forClass_noNoArgsConstructor_shouldFailOnInstantiation() {
+        Supplier<WithoutNoArgsConstructor> supplier = EntityInstantiator.forClass(WithoutNoArgsConstructor.class);
+
+        assertThrows(BeanInstantiationException.class, supplier::get);
+    }
+
+    public static class ProtectedEntity {
+
+        private final String createdBy;
+
+        protected ProtectedEntity() {
+            this.createdBy = "protected";
+        }
+    }
+
+    public static class WithoutNoArgsConstructor {
+
+        public WithoutNoArgsConstructor(String name) {
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package nl._42.heph.generation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import nl._42.heph.domain.Organization;
+import nl._42.heph.domain.Person;
+
+import org.junit.jupiter.api.Test;
+
+public class FieldAccessorTest {
+
+    @Test
+    public void forField_calledTwice_shouldReturnSameAccessor() {
+        assertSame(FieldAccessor.forField(Person.class, "name"), FieldAccessor.forField(Person.class, "name"));
+    }
+
+    @Test
+    public void forField_unknownField_shouldReturnNull() {
+        assertNull(FieldAccessor.forField(Person.class, "unknown"));
+    }
+
+    @Test
+    public void setAndGet_privateFieldInSuperclass_shouldAccessField() {
+        FieldAccessor accessor = FieldAccessor.forField(Organization.class, "id");
+        Organization organization = new Organization();
+
+        accessor.set(organization, 42L);
+
+        assertEquals(42L, organization.getId());
+        assertEquals(42L, accessor.get(organization));
+    }
+
+    @Test
+    public void set_valueOfWrongType_shouldThrowIllegalArgumentException() {
+        FieldAccessor accessor = FieldAccessor.forField(Person.class, "name");
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> accessor.set(new Person(), 42L));
+        assertEquals("Failed to apply value to field [name] of [nl._42.heph.domain.Person]", exception.getMessage());
+    }
+}
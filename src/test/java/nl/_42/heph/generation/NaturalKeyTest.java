@@ -0,0 +1,82 @@
+package nl._42.heph.generation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import nl._42.heph.AbstractBuildCommand;
+import nl._42.heph.FixtureKey;
+import nl._42.heph.NoOpBeanSaver;
+import nl._42.heph.builder.PersonBuildCommand;
+import nl._42.heph.builder.WorkspaceBuildCommand;
+import nl._42.heph.domain.Workspace;
+import nl._42.heph.shared.AbstractEntity;
+
+import org.junit.jupiter.api.Test;
+
+public class NaturalKeyTest {
+
+    @Test
+    public void forBuildCommand_calledTwice_shouldReturnSameKey() {
+        assertSame(NaturalKey.forBuildCommand(WorkspaceBuildCommand.class), NaturalKey.forBuildCommand(WorkspaceBuildCommand.class));
+    }
+
+    @Test
+    public void forBuildCommand_annotatedWithMethod_shouldUseField() {
+        NaturalKey naturalKey = NaturalKey.forBuildCommand(WorkspaceBuildCommand.class);
+        Workspace workspace = new Workspace();
+        workspace.setName("Home");
+
+        assertEquals(List.of("name"), naturalKey.getFieldNames());
+        assertEquals("Home", naturalKey.valueOf(workspace));
+    }
+
+    @Test
+    public void forBuildCommand_withoutAnnotations_shouldBeEmpty() {
+        assertTrue(NaturalKey.forBuildCommand(PersonBuildCommand.class).isEmpty());
+    }
+
+    @Test
+    public void forBuildCommand_annotatedMethodAndField_shouldCombineFieldsByName() {
+        NaturalKey naturalKey = NaturalKey.forBuildCommand(KeyedEntityBuildCommand.class);
+        KeyedEntity entity = new KeyedEntity();
+        entity.code = "A";
+
+        assertEquals(List.of("code", "version"), naturalKey.getFieldNames());
+        assertEquals(Arrays.asList("A", null), naturalKey.valueOf(entity));
+    }
+
+    @Test
+    public void forBuildCommand_annotatedMethodWithoutField_shouldThrow() {
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> NaturalKey.forBuildCommand(UnknownFieldBuildCommand.class));
+
+        assertEquals("Method [withColor] of buildCommand [nl._42.heph.generation.NaturalKeyTest$UnknownFieldBuildCommand] is annotated with @FixtureKey, "
+                + "but field [color] is not present in the entity class or its superclasses", exception.getMessage());
+    }
+
+    static class KeyedEntity extends AbstractEntity {
+
+        @FixtureKey
+        private String code;
+        private String version;
+        private String description;
+    }
+
+    interface KeyedEntityBuildCommand extends AbstractBuildCommand<KeyedEntity, NoOpBeanSaver> {
+
+        @FixtureKey
+        KeyedEntityBuildCommand withVersion(String version);
+
+        KeyedEntityBuildCommand withDescription(String description);
+    }
+
+    interface UnknownFieldBuildCommand extends AbstractBuildCommand<KeyedEntity, NoOpBeanSaver> {
+
+        @FixtureKey
+        UnknownFieldBuildCommand withColor(String color);
+    }
+}
@@ -0,0 +1,55 @@
+package nl._42.heph.generation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+import nl._42.heph.builder.OrganizationBuildCommand;
+import nl._42.heph.builder.PersonBuildCommand;
+import nl._42.heph.domain.Person;
+import nl._42.heph.lazy.ResolveStrategy;
+import nl._42.heph.shared.AbstractEntity;
+
+import org.junit.jupiter.api.Test;
+
+public class WithMethodDescriptorTest {
+
+    @Test
+    public void forMethod_calledTwice_shouldReturnSameDescriptor() throws NoSuchMethodException {
+        Method method = PersonBuildCommand.class.getMethod("withName", String.class);
+
+        assertSame(WithMethodDescriptor.forMethod(PersonBuildCommand.class, method), WithMethodDescriptor.forMethod(PersonBuildCommand.class, method));
+    }
+
+    @Test
+    public void forMethod_withoutAnnotations_shouldDeriveFieldFromMethodName() throws NoSuchMethodException {
+        WithMethodDescriptor descriptor = WithMethodDescriptor.forMethod(PersonBuildCommand.class, PersonBuildCommand.class.getMethod("withName", String.class));
+
+        assertEquals("name", descriptor.getFieldName());
+        assertEquals(Person.class, descriptor.getAccessor().getField().getDeclaringClass());
+        assertEquals(ResolveStrategy.BEFORE_CREATE, descriptor.getResolveStrategy());
+        assertFalse(descriptor.isEntityId());
+    }
+
+    @Test
+    public void forMethod_withAnnotations_shouldApplyAnnotations() throws NoSuchMethodException {
+        WithMethodDescriptor workspace = WithMethodDescriptor.forMethod(PersonBuildCommand.class, PersonBuildCommand.class.getMethod("withWorkspace", Supplier.class));
+        assertEquals("workspaceId", workspace.getFieldName());
+        assertTrue(workspace.isEntityId());
+
+        WithMethodDescriptor owner = WithMethodDescriptor.forMethod(OrganizationBuildCommand.class, OrganizationBuildCommand.class.getMethod("withOwner", Supplier.class));
+        assertEquals("owner", owner.getFieldName());
+        assertEquals(ResolveStrategy.BEFORE_FIND, owner.getResolveStrategy());
+    }
+
+    @Test
+    public void forMethod_fieldInSuperclass_shouldResolveField() throws NoSuchMethodException {
+        WithMethodDescriptor descriptor = WithMethodDescriptor.forMethod(OrganizationBuildCommand.class, OrganizationBuildCommand.class.getMethod("withId", Long.class));
+
+        assertEquals(AbstractEntity.class, descriptor.getAccessor().getField().getDeclaringClass());
+    }
+}
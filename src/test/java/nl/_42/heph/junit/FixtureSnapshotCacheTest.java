@@ -0,0 +1,116 @@
+package nl._42.heph.junit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import nl._42.database.truncator.DatabaseTruncator;
+import nl._42.heph.IdAllocatorTest;
+import nl._42.heph.builder.OrganizationFixtures;
+import nl._42.heph.domain.Organization;
+import nl._42.heph.domain.OrganizationRepository;
+import nl._42.heph.domain.PersonRepository;
+import nl._42.heph.shared.AbstractEntity;
+import nl._42.heph.shared.AbstractSpringTest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class FixtureSnapshotCacheTest extends AbstractSpringTest {
+
+    @TempDir
+    private Path directory;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private DatabaseTruncator databaseTruncator;
+    @Autowired
+    private OrganizationFixtures organizationFixtures;
+    @Autowired
+    private OrganizationRepository organizationRepository;
+    @Autowired
+    private PersonRepository personRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void load_storedSnapshot_shouldRestoreRowsOfPreviousRun() throws Exception {
+        FixtureSnapshotCache cache = new FixtureSnapshotCache(directory);
+        String fingerprint = cache.fingerprint(getClass(), applicationContext, dataSource);
+        Long[] bananaId = new Long[1];
+        cache.store(getClass(), fingerprint, DatasetSnapshot.take(dataSource, () -> bananaId[0] = organizationFixtures.banana().getId()));
+        databaseTruncator.truncate();
+
+        // A later run only has the file
+        new FixtureSnapshotCache(directory).load(getClass(), fingerprint, dataSource).restore(dataSource);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Organization banana = organizationRepository.findById(bananaId[0]).orElseThrow();
+            assertEquals("Banana", banana.getName());
+            assertArrayEquals(new byte[] { 42, 24 }, banana.getLegalContract());
+            assertEquals(2, banana.getLegalIdentityNumbers().size());
+        });
+        assertEquals(2, personRepository.count());
+        assertEquals(bananaId[0], organizationFixtures.banana().getId());
+
+        // The identity columns have been moved past the restored ids, although the file contains no statements to do so
+        assertTrue(organizationFixtures.apple().getId() > bananaId[0]);
+    }
+
+    @Test
+    public void load_otherFingerprint_shouldReturnNull() throws Exception {
+        FixtureSnapshotCache cache = new FixtureSnapshotCache(directory);
+        cache.store(getClass(), "old", DatasetSnapshot.take(dataSource, organizationFixtures::banana));
+
+        assertNull(cache.load(getClass(), "new", dataSource));
+
+        // Storing the snapshot of the new fingerprint replaces the old one
+        cache.store(getClass(), "new", DatasetSnapshot.take(dataSource, () -> { }));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+        assertNull(cache.load(getClass(), "old", dataSource));
+    }
+
+    @Test
+    public void readClasses_shouldIncludeEntitiesAndNestedClasses() throws Exception {
+        Map<String, byte[]> classes = new FixtureSnapshotCache(directory).readClasses(IdAllocatorTest.class, applicationContext);
+
+        assertTrue(classes.containsKey(IdAllocatorTest.Label.class.getName()));
+        assertTrue(classes.containsKey(Organization.class.getName()));
+        assertTrue(classes.containsKey(AbstractEntity.class.getName()));
+        assertTrue(classes.containsKey(OrganizationFixtures.class.getName()));
+    }
+
+    @Test
+    public void fingerprint_changedSchema_shouldChange() throws Exception {
+        FixtureSnapshotCache cache = new FixtureSnapshotCache(directory);
+        String fingerprint = cache.fingerprint(getClass(), applicationContext, dataSource);
+        assertEquals(fingerprint, cache.fingerprint(getClass(), applicationContext, dataSource));
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("ALTER TABLE workspace ADD COLUMN description VARCHAR(255)");
+        try {
+            assertNotEquals(fingerprint, cache.fingerprint(getClass(), applicationContext, dataSource));
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE workspace DROP COLUMN description");
+        }
+        assertNotEquals(fingerprint, cache.fingerprint(FixtureSnapshotExtensionTest.class, applicationContext, dataSource));
+    }
+}
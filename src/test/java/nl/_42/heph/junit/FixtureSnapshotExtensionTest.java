@@ -0,0 +1,75 @@
+package nl._42.heph.junit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nl._42.heph.builder.OrganizationFixtures;
+import nl._42.heph.builder.PersonFixtures;
+import nl._42.heph.domain.Organization;
+import nl._42.heph.domain.OrganizationRepository;
+import nl._42.heph.domain.Person;
+import nl._42.heph.domain.PersonRepository;
+import nl._42.heph.shared.AbstractSpringTest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+@ExtendWith(FixtureSnapshotExtension.class)
+public class FixtureSnapshotExtensionTest extends AbstractSpringTest {
+
+    private static final AtomicInteger BUILDS = new AtomicInteger();
+    private static Long bananaId;
+
+    @Autowired
+    private OrganizationFixtures organizationFixtures;
+    @Autowired
+    private PersonFixtures personFixtures;
+    @Autowired
+    private OrganizationRepository organizationRepository;
+    @Autowired
+    private PersonRepository personRepository;
+
+    @FixtureSnapshot
+    public void fixtures() {
+        BUILDS.incrementAndGet();
+        bananaId = organizationFixtures.banana().getId();
+    }
+
+    @Test
+    @Transactional
+    public void fixturesAreBuiltOnceAndRestored() {
+        assertEquals(1, BUILDS.get());
+
+        Organization banana = organizationRepository.findById(bananaId).orElseThrow();
+        assertEquals("Banana", banana.getName());
+        assertEquals(2, personRepository.count());
+        assertArrayEquals(new byte[] { 42, 24 }, banana.getLegalContract());
+        assertEquals(2, banana.getLegalIdentityNumbers().size());
+    }
+
+    @Test
+    public void restoredEntitiesAreFound() {
+        long organizations = organizationRepository.count();
+
+        Organization banana = organizationFixtures.banana();
+
+        assertEquals(1, BUILDS.get());
+        assertEquals(bananaId, banana.getId());
+        assertEquals(organizations, organizationRepository.count());
+    }
+
+    @Test
+    public void entitiesCanBeCreatedAfterRestore() {
+        long maxId = personRepository.findAll().stream().mapToLong(Person::getId).max().orElse(0);
+
+        Person person = personFixtures.base().withName("Z").create();
+
+        assertEquals(1, BUILDS.get());
+        assertTrue(person.getId() > maxId);
+    }
+}